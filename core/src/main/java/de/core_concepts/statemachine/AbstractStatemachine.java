@@ -5,8 +5,18 @@ import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static de.core_concepts.statemachine.LifecycleEvent.*;
@@ -34,14 +44,41 @@ import static java.lang.String.format;
 public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
 
 
+    /**
+     * The default for the maximum number of transitions a single dispatch may traverse, see {@link #getMaxStepsPerDispatch()}.
+     */
+    public static final int DEFAULT_MAX_STEPS_PER_DISPATCH = 1000;
+
+    /**
+     * The default for the number of objects of a batch processed per transaction, see {@link #getBatchTransactionSize()}.
+     */
+    public static final int DEFAULT_BATCH_TRANSACTION_SIZE = 1000;
+
+    /* How many of the last steps of a dispatch are remembered in order to report a cycle. */
+    private static final int RECORDED_PATH_LENGTH = 32;
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     protected final Class<S> stateType;
     protected final Class<E> eventType;
     protected final ThreadLocal<Context<O>> context = new ThreadLocal<>();
+    private final ThreadLocal<DispatchState<O>> dispatchState = ThreadLocal.withInitial(DispatchState::new);
     private final Class<O> objectType;
-    private final Map<S, State<S, E, O>> states = new HashMap<>();
-    private Map<LifecycleEvent<?>, Action<O>> genericActions = new HashMap<>();
+    private StatemachineDefinition<S, E, O> definition;
+    private Dispatcher<S, E, O> dispatcher;
+    /* Null unless dispatches are serialized per object */
+    private LockStripes lockStripes;
+    /* Null unless duplicate events are discarded */
+    private DeduplicationCache deduplicationCache;
+    /* Null unless events and state changes are journaled */
+    private EventJournal journal;
+    @SuppressWarnings("unchecked")
+    private volatile LifecycleListener<O>[] lifecycleListeners = new LifecycleListener[0];
+    /* The states transitions which only change the state lead to, by the ordinal of the from state and of the event, see
+       getStateOnlyTarget. Null if there is no such fast path. */
+    private int[][] stateOnlyTargets;
 
     /**
      * @param stateType  The class object for the state type S.
@@ -79,17 +116,350 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
     }
 
     /**
-     * Must be called by implementor to trigger the initialisation of the state machine.
+     * Must be called by implementor to trigger the initialisation of the state machine. Builds an immutable StatemachineDefinition from
+     * the hook methods defineStates, defineTransitions and defineGenericActions.
      */
     protected final void initStateMachine() {
         S initialState = getInitialState();
         S finalState = getFinalState();
+        Map<S, State<S, E, O>> states = new HashMap<>();
+        Map<LifecycleEvent<?>, Action<O>> genericActions = new HashMap<>();
         states.put(initialState, new State<>(initialState, Optional.empty(), Optional.empty()));
         states.put(finalState, new State<>(finalState, Optional.empty(), Optional.empty()));
 
         defineStates(new StateConfigurer<>(states));
         defineTransitions(new TransitionConfigurer<>(states, initialState, finalState));
         defineGenericActions(new GenericActionConfigurer<>(genericActions));
+
+        definition = new StatemachineDefinition<>(stateType, eventType, objectType, initialState, finalState, states, genericActions);
+        dispatcher = createDispatcher(definition);
+        lockStripes = createLockStripes();
+        deduplicationCache = createDeduplicationCache();
+        journal = createJournal();
+        stateOnlyTargets = tabulateStateOnlyTargets();
+    }
+
+    /**
+     * Can be called by implementor instead of {@link #initStateMachine()} to initialise the state machine with a definition built by
+     * another statemachine instance, e.g. when running many instances of the same statemachine. The definition is shared, not copied.
+     * The hook methods defineStates, defineTransitions and defineGenericActions are not called in this case.
+     *
+     * @param definition The definition to use. Must have been created for the same state, event and object types.
+     */
+    protected final void initStateMachine(StatemachineDefinition<S, E, O> definition) {
+        Validate.notNull(definition, "definition can not be null.");
+        Validate.isTrue(definition.isCompatibleWith(stateType, eventType, objectType), "The definition was created for a statemachine of "
+                + "different types.");
+        this.definition = definition;
+        this.dispatcher = createDispatcher(definition);
+        this.lockStripes = createLockStripes();
+        this.deduplicationCache = createDeduplicationCache();
+        this.journal = createJournal();
+        this.stateOnlyTargets = tabulateStateOnlyTargets();
+    }
+
+    /**
+     * Hook method which determines whether a class dedicated to this statemachine's definition is generated at initialisation time, which
+     * invokes guards and actions through call sites of their own. This keeps guards and actions inlineable by the JIT compiler when many
+     * statemachines run in the same JVM. Requires the state and event types to be enums and ASM to be on the classpath, otherwise the
+     * statemachine falls back to the regular dispatch. Disabled by default.
+     *
+     * @return True if a dispatcher class should be generated.
+     */
+    protected boolean isDispatcherCompilationEnabled() {
+        return false;
+    }
+
+    private Dispatcher<S, E, O> createDispatcher(StatemachineDefinition<S, E, O> definition) {
+        return isDispatcherCompilationEnabled() ? definition.getCompiledDispatcher() : new InterpretingDispatcher<>(definition);
+    }
+
+    Dispatcher<S, E, O> getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Determines for each state and event whether a dispatch does nothing but change the state, respectively does nothing at all, so
+     * that it can be carried out without a Context, see {@link StateTableStatemachine#sendEvent(long, Enum)}. This is the case if the
+     * event leads to a single transition without a guard and an action, the from state has no exit validator, the to state has
+     * neither an onEntryAction nor automatic transitions, and there are no generic actions, no journal and no deduplication.
+     *
+     * @return The ordinals of the states the dispatches lead to, -1 where a regular dispatch is required, or null if no dispatch can be
+     * carried out without one.
+     */
+    private int[][] tabulateStateOnlyTargets() {
+        if (!definition.hasEnumTypes() || journal != null || deduplicationCache != null
+                || Arrays.stream(definition.getGenericActions()).anyMatch(Objects::nonNull)) {
+            return null;
+        }
+        S[] stateIds = stateType.getEnumConstants();
+        E[] events = eventType.getEnumConstants();
+        int[][] targets = new int[stateIds.length][events.length];
+        for (int s = 0; s < stateIds.length; s++) {
+            State<S, E, O> fromState = definition.getState(stateIds[s]);
+            for (int e = 0; e < events.length; e++) {
+                targets[s][e] = fromState == null ? -1 : stateOnlyTarget(fromState, dispatcher.getTransitions(stateIds[s], events[e]));
+            }
+        }
+        return targets;
+    }
+
+    private int stateOnlyTarget(State<S, E, O> fromState, Transition<S, E, O>[] transitions) {
+        if (transitions.length == 0) {
+            // An unknown event, without generic actions nothing happens
+            return ((Enum<?>) fromState.getId()).ordinal();
+        }
+        Transition<S, E, O> transition = transitions[0];
+        State<S, E, O> toState = transition.toState;
+        if (transitions.length > 1 || fromState.exitValidator != null || !transition.isUnguarded() || transition.action != null
+                || toState.getAutomaticTransitions().length > 0 || (toState != fromState && toState.onEntryAction != null)) {
+            return -1;
+        }
+        return ((Enum<?>) toState.getId()).ordinal();
+    }
+
+    /**
+     * Looks up the state a dispatch of the event leads to, if it does nothing but change the state. Requires a regular dispatch if
+     * lifecycle listeners are registered or the thread is dispatching already, as the event has to be queued then.
+     *
+     * @return The ordinal of the state the dispatch leads to, or -1 if a regular dispatch is required.
+     */
+    int getStateOnlyTarget(int fromState, int event) {
+        int[][] targets = stateOnlyTargets;
+        if (targets == null || lifecycleListeners.length > 0 || dispatchState.get().dispatching) {
+            return -1;
+        }
+        return targets[fromState][event];
+    }
+
+    /**
+     * Locks the stripe of the given hash of an object's key, if lock striping is enabled.
+     *
+     * @return The lock to be unlocked, or null.
+     */
+    ReentrantLock lockStripe(int keyHash) {
+        return lockStripes != null ? lockStripes.lock(keyHash) : null;
+    }
+
+    /**
+     * Hook method which enables serializing concurrent dispatches for the same object by a fixed number of locks. The key of an object,
+     * see {@link #getObjectKey(Object)}, determines its lock, so dispatches for objects whose keys share a lock are serialized as well.
+     * The more stripes, the less contention between different objects. All synchronous dispatches are serialized, i.e. sendEvent,
+     * proceed, sendEvents and those of a BulkProcessor, but not the non-blocking ones of sendEventAsync and proceedAsync. Disabled by
+     * default, so that the caller is responsible for not sending concurrent events for the same object.
+     *
+     * @return The number of lock stripes, or 0 in order not to lock.
+     */
+    protected int getLockStripeCount() {
+        return 0;
+    }
+
+    /**
+     * Hook method which determines the key of an object, e.g. its id, if several instances may represent the same entity. Keys must
+     * implement equals and hashCode, which must not change while the object is dispatched. Only used if lock striping is enabled.
+     *
+     * @return The key of the object. Defaults to the object itself, which is compared by identity then.
+     */
+    protected Object getObjectKey(O object) {
+        return object;
+    }
+
+    /**
+     * @return The contention on each lock stripe since the statemachine was initialised, or null if lock striping is disabled.
+     */
+    public LockStripeStatistics getLockStripeStatistics() {
+        return lockStripes != null ? lockStripes.getStatistics() : null;
+    }
+
+    private LockStripes createLockStripes() {
+        int stripeCount = getLockStripeCount();
+        Validate.isTrue(stripeCount >= 0, "The lock stripe count must not be negative.");
+        return stripeCount > 0 ? new LockStripes(stripeCount) : null;
+    }
+
+    /**
+     * Locks the stripe of the object, if lock striping is enabled.
+     *
+     * @return The lock to be unlocked once the dispatch completed, or null.
+     */
+    private ReentrantLock lockObject(O object) {
+        if (lockStripes == null) {
+            return null;
+        }
+        return lockStripes.lock(getObjectKeyHash(object));
+    }
+
+    /**
+     * @return The hash of the object's key, which determines its lock stripe. A key which is the object itself is hashed by identity.
+     */
+    int getObjectKeyHash(O object) {
+        Object key = getObjectKey(object);
+        return key == object ? System.identityHashCode(object) : Objects.hashCode(key);
+    }
+
+    /**
+     * Hook method which enables discarding events which were delivered more than once, e.g. by a message broker with at-least-once
+     * semantics. The ids of recently processed events, see {@link #getEventId(Object, Object, Object)}, are kept in a bounded cache. An
+     * event whose id is in the cache raises the lifecycle event DUPLICATE_EVENT instead of being processed. Events whose processing
+     * threw an exception are removed from the cache, so that they are processed when delivered again. Disabled by default.
+     *
+     * @return The maximum number of event ids kept, or 0 in order not to discard duplicates.
+     */
+    protected int getDeduplicationCacheSize() {
+        return 0;
+    }
+
+    /**
+     * Hook method which determines how long the id of an event is kept in the deduplication cache at most. It should exceed the time
+     * within which duplicates are redelivered. Only used if deduplication is enabled.
+     *
+     * @return The time to live of an event id. Defaults to 10 minutes.
+     */
+    protected Duration getDeduplicationTimeToLive() {
+        return Duration.ofMinutes(10);
+    }
+
+    /**
+     * Hook method which extracts the id of an event, e.g. the id of the message it was received with, which usually is part of the
+     * event data. Events are duplicates if their ids are equal, so ids must implement equals and hashCode. Only used if deduplication is
+     * enabled.
+     *
+     * @return The id of the event, or null if the event is never discarded. Defaults to null.
+     */
+    protected Object getEventId(E event, O object, Object eventData) {
+        return null;
+    }
+
+    /**
+     * @return The number of events discarded as duplicates since the statemachine was initialised.
+     */
+    public long getDuplicateEventCount() {
+        return deduplicationCache != null ? deduplicationCache.getDuplicateCount() : 0;
+    }
+
+    private DeduplicationCache createDeduplicationCache() {
+        int cacheSize = getDeduplicationCacheSize();
+        Validate.isTrue(cacheSize >= 0, "The deduplication cache size must not be negative.");
+        if (cacheSize == 0) {
+            return null;
+        }
+        Duration timeToLive = getDeduplicationTimeToLive();
+        Validate.isTrue(timeToLive != null && !timeToLive.isNegative() && !timeToLive.isZero(), "The deduplication time to live must be "
+                + "positive.");
+        return new DeduplicationCache(cacheSize, timeToLive.toNanos(), System::nanoTime);
+    }
+
+    /**
+     * @return The id of the event, which is to be forgotten if the event fails, or null if it has none or deduplication is disabled.
+     */
+    private Object getDeduplicationId(E event, O object, Object eventData) {
+        return deduplicationCache == null ? null : getEventId(event, object, eventData);
+    }
+
+    /**
+     * Registers the id of the event in the deduplication cache, if it has one.
+     *
+     * @return False if the event was already processed.
+     */
+    private boolean registerEvent(E event, Object eventId) {
+        if (eventId == null || deduplicationCache.register(eventId)) {
+            return true;
+        }
+        if (log.isInfoEnabled()) {
+            log.info("Discarding duplicate event {} with id {}", event, eventId);
+        }
+        return false;
+    }
+
+    private void forgetEvent(Object eventId) {
+        if (eventId != null) {
+            deduplicationCache.forget(eventId);
+        }
+    }
+
+    private void raiseDuplicateEvent(Context<O> currentContext, Object eventId) {
+        currentContext.setDataFor(LifecycleEvent.DUPLICATE_EVENT, eventId);
+        executeGenericAction(currentContext, LifecycleEvent.DUPLICATE_EVENT);
+        currentContext.clearData();
+    }
+
+    /**
+     * Hook method which provides a journal recording every event the statemachine accepted and every state change, e.g. in order to
+     * audit them or to recover the states after a crash. Events are recorded when the dispatch starts, i.e. also if processing them
+     * fails, except duplicates which were discarded. A synchronous dispatch waits for its records to be forced to the disk at its end, if
+     * the fsync policy of the journal is ALWAYS. The items of a batch wait only once per transaction chunk. The journal identifies events
+     * and states by their ordinals, so they must be enums. Called once at initialisation.
+     *
+     * @return The journal, or null in order not to journal. Defaults to null.
+     */
+    protected EventJournal getEventJournal() {
+        return null;
+    }
+
+    /**
+     * Hook method which provides the id of an object in the journal. Only used if journaling is enabled.
+     *
+     * @return The id of the object. Defaults to the key of the object, see {@link #getObjectKey(Object)}, which must be a number then.
+     */
+    protected long getJournalObjectId(O object) {
+        Object key = getObjectKey(object);
+        if (key instanceof Number) {
+            return ((Number) key).longValue();
+        }
+        throw new ConfigurationException("The key of " + object + " is not a number. Override getJournalObjectId in order to journal "
+                + "its events.");
+    }
+
+    private EventJournal createJournal() {
+        EventJournal eventJournal = getEventJournal();
+        if (eventJournal != null && !(stateType.isEnum() && eventType.isEnum())) {
+            throw new ConfigurationException("Journaling requires the state and event types to be enums.");
+        }
+        return eventJournal;
+    }
+
+    /**
+     * @return The sequence of the event's record, or -1 if journaling is disabled.
+     */
+    private long journalEvent(E event, O object) {
+        return journal != null ? journal.appendEvent(getJournalObjectId(object), ((Enum<?>) event).ordinal()) : -1;
+    }
+
+    /**
+     * Waits until the records of a dispatch are durable. Items of a batch leave it to the batch instead.
+     *
+     * @param sequence The last sequence recorded by the dispatch.
+     */
+    private void awaitJournal(long sequence) {
+        if (journal == null || sequence < 0) {
+            return;
+        }
+        DispatchState<O> state = dispatchState.get();
+        if (state.deferJournal) {
+            state.journalSequence = Math.max(state.journalSequence, sequence);
+        } else {
+            journal.awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Calls the hook stateChanged and records the state change in the journal, if journaling is enabled. The hook is called first, so
+     * that a StateStore holds every state change whose sequence was assigned, which JournalSnapshots relies on.
+     */
+    private void changeState(Context<O> currentContext, StateChange<S> stateChange) {
+        stateChanged(currentContext.getObject(), stateChange);
+        if (journal != null) {
+            currentContext.setJournalSequence(journal.appendStateChange(getJournalObjectId(currentContext.getObject()),
+                    ((Enum<?>) stateChange.getFromState()).ordinal(), ((Enum<?>) stateChange.getToState()).ordinal()));
+        }
+    }
+
+    /**
+     * @return The immutable definition of this statemachine, which can be shared with other instances. Null if the statemachine was not
+     * initialised yet.
+     */
+    public StatemachineDefinition<S, E, O> getDefinition() {
+        return definition;
     }
 
     Context<O> getContext() {
@@ -97,7 +467,7 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
     }
 
     protected State<S, E, O> getState(S state) {
-        State<S, E, O> theState = states.get(state);
+        State<S, E, O> theState = definition.getState(state);
         if (theState == null) {
             throw new IllegalStateException("The state " + state + " is not configured for Statemachine " + getClass().getSimpleName() + ". Either"
                     + " it was not defined, or the wrong Statemachine is handling the event.");
@@ -106,20 +476,201 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
     }
 
     private void validateObjectType(Object object) {
-        Validate.isTrue(objectType.isInstance(object), format("The object passed must be of type %s but was %s", objectType,
-                object.getClass()));
+        // The message is only formatted on failure, so that a valid call doesn't allocate.
+        if (!objectType.isInstance(object)) {
+            throw new IllegalArgumentException(format("The object passed must be of type %s but was %s", objectType, object.getClass()));
+        }
+    }
+
+    private void validateEventType(Object event) {
+        if (!eventType.isInstance(event)) {
+            throw new IllegalArgumentException(format("Expected Enum of type %s, but got %s", eventType, event.getClass()));
+        }
     }
 
     private void validateStateType(Object state) {
         Validate.isTrue(stateType.isInstance(state), format("Expected object of type %s, but got %s", stateType, state.getClass()));
     }
 
+    /**
+     * Hook method which determines whether the Context of a previous dispatch on the same thread is recycled for the next one. With
+     * context reuse enabled, and log level INFO disabled, a dispatch on a warmed up statemachine does not allocate any objects itself.
+     * Actions must not keep a reference to the Context beyond the dispatch in this mode, as it is reset for the next one. Disabled by
+     * default.
+     *
+     * @return True if contexts should be reused.
+     */
+    protected boolean isContextReuseEnabled() {
+        return false;
+    }
+
+    /**
+     * Hook method which determines whether the Context of a dispatch is bound to the current thread. In this mode, which is the default,
+     * the Context stays bound to the thread after the dispatch, so it references the last object of a dispatch until the next dispatch
+     * on the same thread.
+     * <p>
+     * If disabled, the Context is only passed explicitly through the statemachine and to the actions. Nothing references the object of a
+     * dispatch after it completed, even if context reuse is enabled. Use this mode on large thread pools, or if actions hand their
+     * Context over to other threads.
+     *
+     * @return True if the Context should be bound to the current thread.
+     */
+    protected boolean isThreadBoundContextEnabled() {
+        return true;
+    }
+
+    /**
+     * Hook method which is called when a synchronous dispatch starts with the given Context, e.g. in order to make it available to code
+     * which doesn't receive it as a parameter, if the Context is not bound to the thread. Does nothing by default.
+     */
+    protected void contextBound(Context<O> currentContext) {
+    }
+
+    /**
+     * Hook method which is called when the dispatch which used the given Context completed. Does nothing by default.
+     */
+    protected void contextReleased(Context<O> currentContext) {
+    }
+
+    /**
+     * Provides the Context for a dispatch on the given object. If context reuse is enabled and the thread's previous Context is not
+     * used by a dispatch anymore, it is reset instead of allocating a new one.
+     */
+    private Context<O> bindContext(O object) {
+        Context<O> currentContext;
+        if (isThreadBoundContextEnabled()) {
+            currentContext = context.get();
+            if (isContextReuseEnabled() && currentContext != null && !currentContext.isInUse()) {
+                currentContext.reset(object);
+            } else {
+                currentContext = new Context<>(object);
+                context.set(currentContext);
+            }
+        } else {
+            DispatchState<O> state = dispatchState.get();
+            currentContext = state.spareContext;
+            if (isContextReuseEnabled() && currentContext != null) {
+                state.spareContext = null;
+                currentContext.reset(object);
+            } else {
+                currentContext = new Context<>(object);
+            }
+        }
+        currentContext.setInUse(true);
+        contextBound(currentContext);
+        return currentContext;
+    }
+
+    /**
+     * Marks the Context of a completed dispatch as unused. If the Context is not bound to the thread and context reuse is enabled, it is
+     * reset and kept for the thread's next dispatch.
+     */
+    private void releaseContext(Context<O> currentContext) {
+        contextReleased(currentContext);
+        currentContext.setInUse(false);
+        if (!isThreadBoundContextEnabled() && isContextReuseEnabled()) {
+            currentContext.reset(null);
+            dispatchState.get().spareContext = currentContext;
+        }
+    }
+
+    /**
+     * Hook method which limits the number of transitions a single call to sendEvent or proceed may traverse, including all automatic
+     * and onError transitions that follow. If the limit is exceeded a TransitionException is thrown which names the cycle of states the
+     * dispatch got stuck in.
+     *
+     * @return The maximum number of transitions per dispatch. Defaults to {@link #DEFAULT_MAX_STEPS_PER_DISPATCH}.
+     */
+    protected int getMaxStepsPerDispatch() {
+        return DEFAULT_MAX_STEPS_PER_DISPATCH;
+    }
+
+    /**
+     * Hook method which determines how the guards of the transitions exiting a state on the same trigger are evaluated. By default all
+     * guards are evaluated, as it is a configuration error if more than one of them returns true. In first-match mode guards are
+     * evaluated by descending priority, see TransitionConfigurer#priority(int), and evaluation stops at the first guard which returns
+     * true. This saves the cost of the remaining guards, which matters if guards are expensive, e.g. because they query a repository.
+     * Disabled by default.
+     *
+     * @return True if evaluation should stop at the first passing guard.
+     */
+    protected boolean isFirstMatchGuardEvaluationEnabled() {
+        return false;
+    }
+
+    /**
+     * Hook method which determines the percentage of dispatches in first-match mode, for which all guards of the highest passing
+     * priority are evaluated nevertheless, to detect overlapping guards of equal priority. Return 100 to always verify, e.g. in tests,
+     * or a small percentage to sample in production. Has no effect unless first-match guard evaluation is enabled.
+     *
+     * @return A percentage between 0 and 100. Defaults to 0.
+     */
+    protected int getGuardVerificationPercentage() {
+        return 0;
+    }
+
+    /**
+     * Queues a dispatch requested while this thread already executes a dispatch of this statemachine, i.e. sendEvent or proceed was
+     * called from within an action. It is run after the current one completed, so that every dispatch runs to completion before the
+     * next one starts.
+     */
+    private void queueDispatch(DispatchState<O> state, Runnable dispatch) {
+        log.debug("Dispatch requested during another dispatch. Queueing it until the current one completed.");
+        state.pending.add(dispatch);
+    }
+
+    /**
+     * Runs all dispatches which were queued by actions during the dispatch that just completed. If one of them throws, the remaining
+     * ones are discarded. Afterwards the thread is not dispatching anymore.
+     */
+    private void runPendingDispatches(DispatchState<O> state) {
+        try {
+            Runnable pending;
+            while ((pending = state.pending.poll()) != null) {
+                pending.run();
+            }
+        } finally {
+            state.pending.clear();
+            state.dispatching = false;
+        }
+    }
+
     @Override
     public void proceed(Object object) {
         validateObjectType(object);
-        context.set(new Context<>((O) object));
-        State<S, E, O> currentState = getCurrentState();
-        executeTransition(currentState, getAllAutomaticTransitions(currentState), false);
+        O validObject = objectType.cast(object);
+        DispatchState<O> state = dispatchState.get();
+        if (state.dispatching) {
+            queueDispatch(state, () -> doProceed(validObject));
+        } else {
+            // Call directly, so that the common case doesn't allocate a Runnable
+            state.dispatching = true;
+            try {
+                doProceed(validObject);
+            } finally {
+                runPendingDispatches(state);
+            }
+        }
+    }
+
+    private void doProceed(O object) {
+        ReentrantLock objectLock = lockObject(object);
+        long journalSequence;
+        try {
+            Context<O> currentContext = bindContext(object);
+            try {
+                State<S, E, O> currentState = getCurrentState(currentContext);
+                executeTransition(currentContext, currentState, getAllAutomaticTransitions(currentState), false);
+            } finally {
+                journalSequence = currentContext.getJournalSequence();
+                releaseContext(currentContext);
+            }
+        } finally {
+            if (objectLock != null) {
+                objectLock.unlock();
+            }
+        }
+        awaitJournal(journalSequence);
     }
 
     @Override
@@ -140,71 +691,645 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
     @Override
     public void sendEvent(Object event, Object object, Object eventData) {
         validateObjectType(object);
-        log.info("Received event {}\nfor object {}\nwith eventData {}", event, object, eventData);
-        Validate.isTrue(eventType.isAssignableFrom(event.getClass()),
-                format("Expected Enum of type %s, but got %s", eventType, event.getClass()));
+        if (log.isInfoEnabled()) {
+            log.info("Received event {}\nfor object {}\nwith eventData {}", event, object, eventData);
+        }
+        validateEventType(event);
         E validEvent = eventType.cast(event);
+        O validObject = objectType.cast(object);
 
-        context.set(new Context<>((O) object));
+        DispatchState<O> state = dispatchState.get();
+        if (state.dispatching) {
+            queueDispatch(state, () -> doSendEvent(validEvent, validObject, eventData));
+        } else {
+            // Call directly, so that the common case doesn't allocate a Runnable
+            state.dispatching = true;
+            try {
+                doSendEvent(validEvent, validObject, eventData);
+            } finally {
+                runPendingDispatches(state);
+            }
+        }
+    }
 
-        createTransaction();
+    private void doSendEvent(E event, O object, Object eventData) {
+        // Checked before locking, so that duplicates don't wait for the object
+        Object eventId = getDeduplicationId(event, object, eventData);
+        if (!registerEvent(event, eventId)) {
+            Context<O> currentContext = bindContext(object);
+            try {
+                raiseDuplicateEvent(currentContext, eventId);
+            } finally {
+                releaseContext(currentContext);
+            }
+            return;
+        }
+        // Queued dispatches run after this one unlocked, so a thread never holds more than one stripe
+        ReentrantLock objectLock = lockObject(object);
+        long journalSequence;
         try {
-            getContext().setDataFor(LifecycleEvent.EVENT_RECEIVED, eventData);
-            executeGenericAction(LifecycleEvent.EVENT_RECEIVED);
-            sendEvent(validEvent);
+            // Recorded while the object is locked, so that the records of an object are in the order of its dispatches
+            journalSequence = journalEvent(event, object);
+            Context<O> currentContext = bindContext(object);
+
+            createTransaction();
+            try {
+                currentContext.setDataFor(LifecycleEvent.EVENT_RECEIVED, eventData);
+                executeGenericAction(currentContext, LifecycleEvent.EVENT_RECEIVED);
+                processEvent(currentContext, event);
+            } catch (RuntimeException e) {
+                Transition<S, E, O>[] errorTransitions = handleException(currentContext, e, null);
+                if (errorTransitions.length > 0) {
+                    executeTransition(currentContext, getCurrentState(currentContext), errorTransitions, true);
+                }
+            } finally {
+                closeTransaction(false);
+                journalSequence = Math.max(journalSequence, currentContext.getJournalSequence());
+                releaseContext(currentContext);
+            }
         } catch (RuntimeException e) {
-            handleException(e, null);
+            forgetEvent(eventId);
+            throw e;
         } finally {
+            if (objectLock != null) {
+                objectLock.unlock();
+            }
+        }
+        awaitJournal(journalSequence);
+    }
+
+    @Override
+    public BatchResult sendEvents(Object event, Collection<?> objects) {
+        validateEventType(event);
+        E validEvent = eventType.cast(event);
+        return processBatch(objects, object -> object, object -> {
+            validateObjectType(object);
+            doSendEvent(validEvent, objectType.cast(object), null);
+        });
+    }
+
+    @Override
+    public BatchResult sendEvents(Collection<BatchEvent> events) {
+        return processBatch(events, BatchEvent::getObject, this::sendBatchEvent);
+    }
+
+    private void sendBatchEvent(BatchEvent batchEvent) {
+        validateObjectType(batchEvent.getObject());
+        validateEventType(batchEvent.getEvent());
+        doSendEvent(eventType.cast(batchEvent.getEvent()), objectType.cast(batchEvent.getObject()), batchEvent.getEventData());
+    }
+
+    /**
+     * Sends a single event like sendEvent, but reports exceptions instead of throwing them, including those handled by onError
+     * transitions. Used by BulkProcessor.
+     *
+     * @return The first exception which occurred while processing the event, or null if there was none.
+     */
+    RuntimeException sendEventAndReportError(BatchEvent batchEvent) {
+        DispatchState<O> state = dispatchState.get();
+        if (state.dispatching) {
+            throw new IllegalStateException("The statemachine is already dispatching on this thread.");
+        }
+        return dispatchBatchItem(state, batchEvent, this::sendBatchEvent);
+    }
+
+    @Override
+    public CompletableFuture<StateChange<?>> sendEventAsync(Object event, Object object) {
+        return sendEventAsync(event, object, null);
+    }
+
+    @Override
+    public CompletableFuture<StateChange<?>> sendEventAsync(Object event, Object object, Object eventData) {
+        validateObjectType(object);
+        if (log.isInfoEnabled()) {
+            log.info("Received asynchronous event {}\nfor object {}\nwith eventData {}", event, object, eventData);
+        }
+        validateEventType(event);
+        E validEvent = eventType.cast(event);
+        O validObject = objectType.cast(object);
+        return dispatchAsync(validObject, () -> doSendEvent(validEvent, validObject, eventData),
+                run -> doSendEventAsync(run, validEvent, validObject, eventData));
+    }
+
+    @Override
+    public CompletableFuture<StateChange<?>> proceedAsync(Object object) {
+        validateObjectType(object);
+        O validObject = objectType.cast(object);
+        return dispatchAsync(validObject, () -> doProceed(validObject), run -> doProceedAsync(run, validObject));
+    }
+
+    /**
+     * Hook method which provides the executor processing events sent by sendEventAsync and proceedAsync. As all state of a dispatch is
+     * bound to the thread executing it, any executor may be used.
+     *
+     * @return The executor for asynchronous dispatches. Defaults to the common ForkJoinPool.
+     */
+    protected Executor getAsyncExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Hook method which determines whether sendEventAsync and proceedAsync continue a dispatch when the stage of an AsyncAction or
+     * AsyncGuard completed, instead of blocking the executor's thread until then. Disable it if blocking is cheap, e.g. on virtual
+     * threads, so that the whole dispatch runs on one thread like sendEvent, including its transaction. Enabled by default.
+     *
+     * @return True if asynchronous dispatches shouldn't block on AsyncActions and AsyncGuards.
+     */
+    protected boolean isNonBlockingDispatchEnabled() {
+        return true;
+    }
+
+    /**
+     * Starts the dispatch on the async executor, or queues it if this thread is already dispatching, i.e. it was requested by an action.
+     * A queued dispatch runs after the current one like a dispatch requested by sendEvent, and blocks on AsyncActions and AsyncGuards.
+     *
+     * @param dispatch      The dispatch to be queued.
+     * @param asyncDispatch The dispatch to be run on the async executor.
+     */
+    private CompletableFuture<StateChange<?>> dispatchAsync(O object, Runnable dispatch,
+                                                            Function<AsyncDispatch<S>, CompletableFuture<Void>> asyncDispatch) {
+        CompletableFuture<StateChange<?>> future = new CompletableFuture<>();
+        DispatchState<O> state = dispatchState.get();
+        if (state.dispatching) {
+            queueDispatch(state, () -> dispatchAndComplete(future, object, dispatch));
+        } else if (!isNonBlockingDispatchEnabled()) {
+            getAsyncExecutor().execute(() -> {
+                DispatchState<O> executorState = dispatchState.get();
+                executorState.dispatching = true;
+                try {
+                    dispatchAndComplete(future, object, dispatch);
+                } finally {
+                    runPendingDispatches(executorState);
+                }
+            });
+        } else {
+            getAsyncExecutor().execute(() -> {
+                try {
+                    Object fromState = getCurrentState(object);
+                    AsyncDispatch<S> run = new AsyncDispatch<>();
+                    asyncDispatch.apply(run).whenComplete((ignored, error) -> completeAsyncDispatch(run, () -> {
+                        if (error != null) {
+                            future.completeExceptionally(unwrap(error));
+                        } else {
+                            future.complete(new StateChange<>(fromState, getCurrentState(object)));
+                        }
+                    }, future));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                } catch (java.lang.Error e) {
+                    future.completeExceptionally(e);
+                    throw e;
+                }
+            });
+        }
+        return future;
+    }
+
+    private void dispatchAndComplete(CompletableFuture<StateChange<?>> future, O object, Runnable dispatch) {
+        try {
+            Object fromState = getCurrentState(object);
+            dispatch.run();
+            future.complete(new StateChange<>(fromState, getCurrentState(object)));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        } catch (java.lang.Error e) {
+            // Callers waiting for the future must not hang, the Error is passed on to the executor nonetheless
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the dispatches actions requested during an asynchronous dispatch, like runPendingDispatches does for a synchronous one, and
+     * completes the dispatch's future afterwards. If this thread is dispatching itself, they are handed over to its dispatch instead.
+     */
+    private void completeAsyncDispatch(AsyncDispatch<S> run, Runnable complete, CompletableFuture<?> future) {
+        DispatchState<O> state = dispatchState.get();
+        if (state.dispatching) {
+            state.pending.addAll(run.pending);
+            complete.run();
+            return;
+        }
+        state.dispatching = true;
+        state.pending.addAll(run.pending);
+        try {
+            runPendingDispatches(state);
+            complete.run();
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * The asynchronous counterpart of doSendEvent. It doesn't block on AsyncActions and AsyncGuards, see executeTransitionAsync.
+     */
+    private CompletableFuture<Void> doSendEventAsync(AsyncDispatch<S> run, E event, O object, Object eventData) {
+        // Not bound to the thread, as the dispatch may continue on other threads
+        Context<O> currentContext = new Context<>(object);
+        Object eventId = getDeduplicationId(event, object, eventData);
+        if (!registerEvent(event, eventId)) {
+            return inSegment(run, () -> {
+                raiseDuplicateEvent(currentContext, eventId);
+                return DONE;
+            });
+        }
+        return inSegment(run, () -> {
+            currentContext.setJournalSequence(journalEvent(event, object));
+            createTransaction();
+            currentContext.setDataFor(LifecycleEvent.EVENT_RECEIVED, eventData);
+            executeGenericAction(currentContext, LifecycleEvent.EVENT_RECEIVED);
+            State<S, E, O> currentState = getCurrentState(currentContext);
+            Transition<S, E, O>[] allTransitionsForEvent = getAllTransitionsForEvent(currentContext, currentState, event);
+            return executeTransitionAsync(run, currentContext, currentState, allTransitionsForEvent, false);
+        }).handle((ignored, error) -> error == null ? DONE : inSegment(run, () -> {
+            Transition<S, E, O>[] errorTransitions = handleException(currentContext, toRuntimeException(error), null);
+            return errorTransitions.length > 0
+                    ? executeTransitionAsync(run, currentContext, getCurrentState(currentContext), errorTransitions, true)
+                    : DONE;
+        })).thenCompose(Function.identity()).whenComplete((ignored, error) -> {
             closeTransaction(false);
+            if (error != null) {
+                forgetEvent(eventId);
+            }
+        }).thenRun(() -> awaitJournal(currentContext.getJournalSequence()));
+    }
+
+    /**
+     * The asynchronous counterpart of doProceed.
+     */
+    private CompletableFuture<Void> doProceedAsync(AsyncDispatch<S> run, O object) {
+        Context<O> currentContext = new Context<>(object);
+        return inSegment(run, () -> {
+            State<S, E, O> currentState = getCurrentState(currentContext);
+            return executeTransitionAsync(run, currentContext, currentState, getAllAutomaticTransitions(currentState), false);
+        }).thenRun(() -> awaitJournal(currentContext.getJournalSequence()));
+    }
+
+    /**
+     * The asynchronous counterpart of executeTransition. Exit validator, guards, transition action, onEntryAction and the generic action
+     * of SUCCESSFUL_STATE_CHANGE are chained, so that the dispatch continues as soon as an AsyncAction or AsyncGuard completed instead of
+     * blocking a thread until then. Other generic actions are executed synchronously. Exceptions are handled like in executeTransition.
+     * <p>
+     * The hooks createTransaction and closeTransaction are called at the same points as by executeTransition, but possibly by different
+     * threads. Transaction management which is bound to the thread, like the one of StatemachineBean, doesn't work with AsyncActions.
+     */
+    private CompletableFuture<Void> executeTransitionAsync(AsyncDispatch<S> run, Context<O> currentContext, State<S, E, O> currentState,
+                                                           Transition<S, E, O>[] validTransitions, boolean isErrorTransition) {
+        if (validTransitions.length == 0) {
+            return DONE;
+        }
+        run.steps++;
+        int maxSteps = getMaxStepsPerDispatch();
+        if (run.steps > maxSteps - RECORDED_PATH_LENGTH) {
+            run.recordedPath = recordStep(run.recordedPath, currentState.getId());
+            if (run.steps > maxSteps) {
+                throw new TransitionException(format("Exceeded the maximum of %d transitions per dispatch. The transitions seem to form "
+                        + "a cycle: %s", maxSteps, describeCycle(run.recordedPath)));
+            }
+        }
+
+        createTransaction();
+        // The transition being executed, if one passed its guard
+        List<Transition<S, E, O>> executed = new ArrayList<>(1);
+        // If an onError-Transition is to be traversed don't execute the exitValidator again.
+        CompletableFuture<Void> exitValidation = isErrorTransition ? DONE : executeExitValidatorAsync(run, currentContext, currentState);
+        CompletableFuture<State<S, E, O>> step = exitValidation
+                .thenCompose(ignored -> inSegment(run, () -> selectTransitionAsync(run, currentContext, validTransitions, 0, null)))
+                .thenCompose(transitionToBeExecuted -> inSegment(run, () -> {
+                    if (transitionToBeExecuted == null) {
+                        closeTransaction(false);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    executed.add(transitionToBeExecuted);
+                    log.info("Executing transition {}", transitionToBeExecuted);
+                    return executeAsync(dispatcher.actions[transitionToBeExecuted.index], currentContext)
+                            .thenCompose(ignored -> inSegment(run, () -> enterState(run, currentContext, transitionToBeExecuted)));
+                }));
+
+        return step.handle((toState, error) -> inSegment(run, () -> {
+            if (error != null) {
+                Transition<S, E, O> transitionToBeExecuted = executed.isEmpty() ? null : executed.get(0);
+                Transition<S, E, O>[] errorTransitions = handleException(currentContext, toRuntimeException(error), transitionToBeExecuted);
+                return errorTransitions.length > 0
+                        ? executeTransitionAsync(run, currentContext, getCurrentState(currentContext), errorTransitions, true)
+                        : DONE;
+            } else if (toState == null) {
+                return DONE;
+            }
+            // Automatically execute next transition if applicable
+            return executeTransitionAsync(run, currentContext, toState, getAllAutomaticTransitions(toState), false);
+        })).thenCompose(Function.identity());
+    }
+
+    /**
+     * Executes onEntryAction and SUCCESSFUL_STATE_CHANGE for a transition whose action completed and closes the step's transaction.
+     *
+     * @return A future completed with the state the transition led to.
+     */
+    private CompletableFuture<State<S, E, O>> enterState(AsyncDispatch<S> run, Context<O> currentContext,
+                                                         Transition<S, E, O> transitionToBeExecuted) {
+        // Remember fromState because after SUCCESSFUL_STATE_CHANGE it has most likely changed.
+        State<S, E, O> fromState = getCurrentState(currentContext);
+        State<S, E, O> toState = transitionToBeExecuted.toState;
+
+        CompletableFuture<Void> entered = DONE;
+        if (!isReflexiveTransition(fromState, toState)) {
+            entered = executeAsync(dispatcher.onEntryActions[toState.index], currentContext)
+                    .thenCompose(ignored -> inSegment(run, () -> {
+                        StateChange<S> stateChange = transitionToBeExecuted.getStateChange(fromState.getId());
+                        changeState(currentContext, stateChange);
+                        currentContext.setDataFor(SUCCESSFUL_STATE_CHANGE, stateChange);
+                        notifyLifecycleListeners(currentContext, SUCCESSFUL_STATE_CHANGE);
+                        int ordinal = SUCCESSFUL_STATE_CHANGE.getOrdinal();
+                        return ordinal < dispatcher.genericActions.length
+                                ? executeAsync(dispatcher.genericActions[ordinal], currentContext)
+                                : DONE;
+                    }));
+        }
+        return entered.thenApply(ignored -> {
+            // Clean up all shared data between transitions
+            currentContext.clearData();
+            closeTransaction(false);
+            return toState;
+        });
+    }
+
+    private CompletableFuture<Void> executeExitValidatorAsync(AsyncDispatch<S> run, Context<O> currentContext, State<S, E, O> currentState) {
+        log.info("Executing ExitValidator of state {}", currentState.getId());
+        return inSegment(run, () -> executeAsync(dispatcher.exitValidators[currentState.index], currentContext))
+                .handle((ignored, error) -> {
+                    if (error == null) {
+                        return null;
+                    }
+                    RuntimeException cause = toRuntimeException(error);
+                    if (!(cause instanceof ValidationException)) {
+                        throw cause;
+                    }
+                    inSegment(run, () -> {
+                        handleExitValidatorException(currentContext, (ValidationException) cause);
+                        return DONE;
+                    });
+                    return null;
+                });
+    }
+
+    /**
+     * The asynchronous counterpart of getTransitionWhichPassesGuard. Evaluates the guards of the transitions, starting at the given
+     * position, one after another.
+     *
+     * @param passingTransition The transition which passed its guard so far.
+     */
+    private CompletableFuture<Transition<S, E, O>> selectTransitionAsync(AsyncDispatch<S> run, Context<O> currentContext,
+                                                                        Transition<S, E, O>[] transitions, int position,
+                                                                        Transition<S, E, O> passingTransition) {
+        boolean firstMatch = isFirstMatchGuardEvaluationEnabled();
+        boolean verify = !firstMatch || (run.verifyGuards != null ? run.verifyGuards : (run.verifyGuards = isGuardVerificationDue()));
+        Transition<S, E, O> passing = passingTransition;
+        for (int i = position; i < transitions.length; i++) {
+            Transition<S, E, O> transition = transitions[i];
+            if (passing != null && (!verify || transition.priority < passing.priority)) {
+                break;
+            }
+            Predicate<Context<O>> guard = dispatcher.guards[transition.index];
+            if (guard instanceof AsyncGuard) {
+                int next = i + 1;
+                Transition<S, E, O> passedSoFar = passing;
+                return ((AsyncGuard<O>) guard).testAsync(currentContext).toCompletableFuture()
+                        .thenCompose(passed -> inSegment(run, () -> selectTransitionAsync(run, currentContext, transitions, next,
+                                pass(currentContext, passedSoFar, passed ? transition : null, firstMatch))));
+            }
+            passing = pass(currentContext, passing, dispatcher.testGuard(transition.index, currentContext) ? transition : null, firstMatch);
+        }
+        run.verifyGuards = null;
+        if (passing == null) {
+            log.debug("Trying to transit from {}. No transition guard returned true, thus no transition is taking place.",
+                    getCurrentState(currentContext).getId());
+        }
+        return CompletableFuture.completedFuture(passing);
+    }
+
+    private Transition<S, E, O> pass(Context<O> currentContext, Transition<S, E, O> passing, Transition<S, E, O> passed, boolean firstMatch) {
+        if (passed == null) {
+            return passing;
+        } else if (passing != null) {
+            throw new TransitionException("There are multiple possible transitions from " + getCurrentState(currentContext).getId() +
+                    (firstMatch ? ". Only one guard per priority must return true." : ". Only one guard must return true."));
+        }
+        return passed;
+    }
+
+    /**
+     * Executes the action without blocking if it is an AsyncAction.
+     */
+    private CompletableFuture<Void> executeAsync(Action<O> action, Context<O> currentContext) {
+        if (action instanceof AsyncAction) {
+            return ((AsyncAction<O>) action).executeAsync(currentContext).toCompletableFuture();
+        } else if (action != null) {
+            action.execute(currentContext);
         }
+        return DONE;
     }
 
-    private void handleException(RuntimeException e, Transition<S, E, O> transitionToBeExecuted) {
+    /**
+     * Runs a synchronous part of an asynchronous dispatch. Like a synchronous dispatch, the thread is marked as dispatching meanwhile, so
+     * that events sent by actions are queued. They are run when the whole dispatch completed, see completeAsyncDispatch.
+     *
+     * @return The future returned by segment, or a future completed exceptionally with the RuntimeException segment threw.
+     */
+    private <T> CompletableFuture<T> inSegment(AsyncDispatch<S> run, Supplier<CompletableFuture<T>> segment) {
+        DispatchState<O> state = dispatchState.get();
+        boolean wasDispatching = state.dispatching;
+        int pendingBefore = state.pending.size();
+        state.dispatching = true;
+        try {
+            return segment.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        } finally {
+            // Take over the dispatches queued by this segment
+            while (state.pending.size() > pendingBefore) {
+                run.pending.addFirst(state.pending.removeLast());
+            }
+            state.dispatching = wasDispatching;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * @return The exception a stage completed with. Errors are rethrown, checked exceptions are wrapped into a CompletionException.
+     */
+    private static RuntimeException toRuntimeException(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof java.lang.Error) {
+            throw (java.lang.Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+    /**
+     * Hook method which determines how many objects of a batch are processed within a single transaction, see
+     * {@link #createBatchTransaction()}. A larger size means less commits, but more work to be redone if a commit fails.
+     *
+     * @return The number of objects per transaction. Defaults to {@link #DEFAULT_BATCH_TRANSACTION_SIZE}.
+     */
+    protected int getBatchTransactionSize() {
+        return DEFAULT_BATCH_TRANSACTION_SIZE;
+    }
+
+    /**
+     * Processes a batch in chunks of getBatchTransactionSize() items, each within a batch transaction. Every item is dispatched like a
+     * single call to sendEvent, i.e. it runs to completion including all dispatches queued by its actions. Exceptions of an item are
+     * recorded in the result instead of being thrown, so that the remaining items are processed nevertheless.
+     */
+    private <T> BatchResult processBatch(Collection<T> items, Function<T, Object> objectOf, Consumer<T> dispatch) {
+        Validate.notNull(items, "The batch can not be null.");
+        int transactionSize = getBatchTransactionSize();
+        Validate.isTrue(transactionSize > 0, "The batch transaction size must be positive.");
+        DispatchState<O> state = dispatchState.get();
+        if (state.dispatching) {
+            throw new IllegalStateException("A batch can not be sent while the statemachine is dispatching, e.g. from within an action.");
+        }
+        log.info("Received batch of {} events.", items.size());
+
+        long start = System.nanoTime();
+        BatchResult result = new BatchResult();
+        Iterator<T> iterator = items.iterator();
+        int index = 0;
+        while (iterator.hasNext()) {
+            createBatchTransaction();
+            state.deferJournal = true;
+            boolean processed = false;
+            try {
+                for (int i = 0; i < transactionSize && iterator.hasNext(); i++, index++) {
+                    T item = iterator.next();
+                    RuntimeException error = dispatchBatchItem(state, item, dispatch);
+                    if (error == null) {
+                        result.succeeded(index, objectOf.apply(item));
+                    } else {
+                        result.failed(index, objectOf.apply(item), error);
+                    }
+                }
+                processed = true;
+            } finally {
+                state.deferJournal = false;
+                if (!processed) {
+                    state.journalSequence = -1;
+                    closeBatchTransaction(true);
+                }
+            }
+            try {
+                awaitBatchJournal(state);
+                closeBatchTransaction(false);
+                result.chunkCommitted();
+            } catch (RuntimeException e) {
+                log.error("Failed to commit batch transaction.", e);
+                result.chunkFailed(e);
+            }
+        }
+        result.finished(System.nanoTime() - start);
+        log.info("Processed batch: {}", result);
+        return result;
+    }
+
+    /**
+     * Waits until the records of a transaction chunk are durable.
+     */
+    private void awaitBatchJournal(DispatchState<O> state) {
+        long sequence = state.journalSequence;
+        state.journalSequence = -1;
+        awaitJournal(sequence);
+    }
+
+    /**
+     * @return The first exception which occurred while dispatching the item, or null if there was none.
+     */
+    private <T> RuntimeException dispatchBatchItem(DispatchState<O> state, T item, Consumer<T> dispatch) {
+        state.dispatching = true;
+        state.batching = true;
+        try {
+            try {
+                dispatch.accept(item);
+            } finally {
+                runPendingDispatches(state);
+            }
+            return state.batchError;
+        } catch (RuntimeException e) {
+            return state.batchError != null ? state.batchError : e;
+        } finally {
+            state.batching = false;
+            state.batchError = null;
+        }
+    }
+
+    /**
+     * Rolls back the current transaction and determines how to go on after an exception occurred.
+     *
+     * @return The onError transitions which should be traversed next. Empty if there are none or if the failed transition already was an
+     * onError transition.
+     * @throws TransitionException If e is a TransitionException, as this indicates a configuration error.
+     */
+    private Transition<S, E, O>[] handleException(Context<O> currentContext, RuntimeException e,
+                                                  Transition<S, E, O> transitionToBeExecuted) {
         log.error("Exception during statemachine transition.", e);
         closeTransaction(true);
+        DispatchState<O> state = dispatchState.get();
+        if (state.batching && state.batchError == null) {
+            state.batchError = e;
+        }
 
         // Clear data potentially written during the transition that caused the exception
-        getContext().clearData();
+        currentContext.clearData();
         if (e instanceof TransitionException) {
             // Configuration exception, so we rethrow it.
             throw e;
         } else if (transitionToBeExecuted != null && transitionToBeExecuted.isErrorTransition()) {
             log.error("An exception occurred while executing onError transition. Stopping transition in order to avoid recursion loop", e);
-            raiseProcessingErrorEvent();
+            raiseProcessingErrorEvent(currentContext);
         } else {
-            if (getAllTransitionsForException(getCurrentState(), e.getClass()).size() > 0) {
-                handleTechnicalException(e);
+            State<S, E, O> currentState = getCurrentState(currentContext);
+            Transition<S, E, O>[] errorTransitions = getAllTransitionsForException(currentState, e.getClass());
+            if (errorTransitions.length > 0) {
+                log.error("An exception occurred while executing transition action or onEntryAction. Trying to transit to error state.", e);
+                log.info("Trying to traverse error transition for state {} and exception {}", currentState, e.getClass());
+                return errorTransitions;
             } else {
                 log.warn("No error state defined.");
-                raiseProcessingErrorEvent();
+                raiseProcessingErrorEvent(currentContext);
             }
         }
+        return Transition.none();
     }
 
-    private void raiseProcessingErrorEvent() {
-        executeGenericAction(LifecycleEvent.PROCESSING_ERROR);
-        getContext().clearData();
+    private void raiseProcessingErrorEvent(Context<O> currentContext) {
+        executeGenericAction(currentContext, LifecycleEvent.PROCESSING_ERROR);
+        currentContext.clearData();
     }
 
 
     @Override
     public List<Object> getPossibleEventsForState(Object state) {
         validateStateType(state);
-        State<S, E, O> stateObject = states.get(state);
+        State<S, E, O> stateObject = definition.getState((S) state);
         if (stateObject == null) {
             return Collections.emptyList();
         }
         return stateObject.getTransitions().stream()
-                .filter(transition -> transition.getEvent().isPresent())
-                .map(transition -> transition.getEvent().get())
+                .filter(transition -> transition.event != null)
+                .map(transition -> transition.event)
                 .collect(Collectors.toList());
     }
 
     @Override
     public boolean hasAutomaticTransitions(Object state) {
         validateStateType(state);
-        return getState((S) state).getTransitions().stream()
-                .anyMatch(Transition::isAutomaticTransition);
+        return getState((S) state).getAutomaticTransitions().length > 0;
     }
 
     /**
@@ -220,12 +1345,12 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
      *
      * @param event The event
      */
-    private void sendEvent(E event) {
-        State<S, E, O> currentState = getCurrentState();
+    private void processEvent(Context<O> currentContext, E event) {
+        State<S, E, O> currentState = getCurrentState(currentContext);
 
-        List<Transition<S, E, O>> allTransitionsForEvent = getAllTransitionsForEvent(currentState, event);
+        Transition<S, E, O>[] allTransitionsForEvent = getAllTransitionsForEvent(currentContext, currentState, event);
 
-        executeTransition(currentState, allTransitionsForEvent, false);
+        executeTransition(currentContext, currentState, allTransitionsForEvent, false);
     }
 
     /**
@@ -233,12 +1358,12 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
      *
      * @param currentState The state whose ExitValidator is called
      */
-    private void executeExitValidator(State<S, E, O> currentState) {
+    private void executeExitValidator(Context<O> currentContext, State<S, E, O> currentState) {
         log.info("Executing ExitValidator of state {}", currentState.getId());
         try {
-            currentState.getExitValidator().ifPresent(exitValidator -> exitValidator.execute(getContext()));
+            dispatcher.executeExitValidator(currentState.index, currentContext);
         } catch (ValidationException e) {
-            handleExitValidatorException(e);
+            handleExitValidatorException(currentContext, e);
         }
     }
 
@@ -247,7 +1372,7 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
      * and executes genericActions registered with the LifecycleEvent VALIDATION_ERROR. If the exception is a ValidationException (or
      * subclass), it uses the error object within the ValidationException. For all other cases it uses the exception message.
      */
-    private void handleExitValidatorException(ValidationException e) {
+    private void handleExitValidatorException(Context<O> currentContext, ValidationException e) {
         Error error = e.getError();
         // If the ValidationException has a causing exception we log an error with the cause, otherwise we log info with only the error
         String logMessage = format("A validation exception occurred while executing exit validation. Error: %s", error);
@@ -256,79 +1381,121 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
         } else {
             log.info(logMessage);
         }
-        getContext().setDataFor(VALIDATION_ERROR, error);
-        executeGenericAction(VALIDATION_ERROR);
-    }
-
-    private void handleTechnicalException(RuntimeException e) {
-        log.error("An exception occurred while executing transition action or onEntryAction. Trying to transit to error state.", e);
-        traverseErrorTransition(e);
+        currentContext.setDataFor(VALIDATION_ERROR, error);
+        executeGenericAction(currentContext, VALIDATION_ERROR);
     }
 
     /**
-     * This is the heart of the statemachine. This method determines which transition should be executed and executes it. Due to automatic
-     * transitions following an event triggered transition this method is recursive.
+     * This is the heart of the statemachine. This method determines which transition should be executed and executes it. Afterwards it
+     * goes on with automatic transitions following the executed one, respectively with onError transitions if an exception occurred,
+     * until no further transition can be executed. This is done iteratively, so that long chains of transitions don't grow the stack.
      *
-     * @param currentState      The current state the statemachine is in. This is the 'from' state for potentially following transition.
-     * @param validTransitions  A list of transitions that may be executed. Can be empty. The guard (when-clause) determines which transition
-     *                          can be executed.
-     * @param isErrorTransition A boolean that determines if the trigger for a transition is an exception during a previous transition. In
-     *                          this case, the exitValidations are not called a second time.
+     * @param currentContext    The Context of the dispatch.
+     * @param startState        The current state the statemachine is in. This is the 'from' state for potentially following transition.
+     * @param startTransitions  An array of transitions that may be executed. Can be empty. The guard (when-clause) determines which
+     *                          transition can be executed.
+     * @param startsWithErrorTransition A boolean that determines if the trigger for a transition is an exception during a previous
+     *                                  transition. In this case, the exitValidations are not called a second time.
+     * @throws TransitionException If more than {@link #getMaxStepsPerDispatch()} transitions were executed.
      */
-    private void executeTransition(State<S, E, O> currentState, List<Transition<S, E, O>> validTransitions,
-                                   boolean isErrorTransition) { //NOSONAR squid:UnusedPrivateMethod , Aufruf in sendEvent mit Lambda Expression
-
-        if (validTransitions.isEmpty()) {
-            return;
-        }
+    private void executeTransition(Context<O> currentContext, State<S, E, O> startState, Transition<S, E, O>[] startTransitions,
+                                   boolean startsWithErrorTransition) {
+
+        State<S, E, O> currentState = startState;
+        Transition<S, E, O>[] validTransitions = startTransitions;
+        boolean isErrorTransition = startsWithErrorTransition;
+        int maxSteps = getMaxStepsPerDispatch();
+        int steps = 0;
+        // Only the last steps before the budget is exhausted are recorded, so that a regular dispatch doesn't allocate.
+        Deque<S> recordedPath = null;
+
+        while (validTransitions.length > 0) {
+            steps++;
+            if (steps > maxSteps - RECORDED_PATH_LENGTH) {
+                recordedPath = recordStep(recordedPath, currentState.getId());
+                if (steps > maxSteps) {
+                    throw new TransitionException(format("Exceeded the maximum of %d transitions per dispatch. The transitions seem to form "
+                            + "a cycle: %s", maxSteps, describeCycle(recordedPath)));
+                }
+            }
 
-        Transition<S, E, O> transitionToBeExecuted = null;
+            Transition<S, E, O> transitionToBeExecuted = null;
 
-        createTransaction();
+            createTransaction();
 
-        try {
-            // If an onError-Transition is to be traversed don't execute the exitValidator again.
-            if (!isErrorTransition) {
-                executeExitValidator(currentState);
-            }
+            try {
+                // If an onError-Transition is to be traversed don't execute the exitValidator again.
+                if (!isErrorTransition) {
+                    executeExitValidator(currentContext, currentState);
+                }
 
-            Optional<Transition<S, E, O>> transitionWhichPassesGuard = getTransitionWhichPassesGuard(validTransitions);
-            if (!transitionWhichPassesGuard.isPresent()) {
-                closeTransaction(false);
-            } else {
-                transitionToBeExecuted = transitionWhichPassesGuard.get();
+                transitionToBeExecuted = getTransitionWhichPassesGuard(currentContext, validTransitions);
+                if (transitionToBeExecuted == null) {
+                    closeTransaction(false);
+                    return;
+                }
 
                 log.info("Executing transition {}", transitionToBeExecuted);
 
                 // Execute transition action
-                transitionToBeExecuted.getAction().ifPresent(action -> action.execute(getContext()));
+                dispatcher.executeAction(transitionToBeExecuted.index, currentContext);
 
                 // Remember fromState because after SUCCESSFUL_STATE_CHANGE it has most likely changed.
-                State<S, E, O> fromState = getCurrentState();
-                State<S, E, O> toState = transitionToBeExecuted.getToState();
+                State<S, E, O> fromState = getCurrentState(currentContext);
+                State<S, E, O> toState = transitionToBeExecuted.toState;
 
                 // Execute onEntryAction of to-State, execute successful state change action only if transition is not reflexive
                 if (!isReflexiveTransition(fromState, toState)) {
-                    toState.getOnEntryAction().ifPresent(onEntryAction -> onEntryAction.execute(getContext()));
+                    dispatcher.executeOnEntryAction(toState.index, currentContext);
 
                     // Call successful state change actions
-                    getContext().setDataFor(SUCCESSFUL_STATE_CHANGE, new StateChange<>(fromState.getId(), toState.getId()));
-                    executeGenericAction(SUCCESSFUL_STATE_CHANGE);
+                    StateChange<S> stateChange = transitionToBeExecuted.getStateChange(fromState.getId());
+                    changeState(currentContext, stateChange);
+                    currentContext.setDataFor(SUCCESSFUL_STATE_CHANGE, stateChange);
+                    executeGenericAction(currentContext, SUCCESSFUL_STATE_CHANGE);
                 }
 
                 // Clean up all shared data between transitions
-                getContext().clearData();
+                currentContext.clearData();
 
                 closeTransaction(false);
 
                 // Automatically execute next transition if applicable
-                executeTransition(toState, getAllAutomaticTransitions(toState), false);
+                currentState = toState;
+                validTransitions = getAllAutomaticTransitions(toState);
+                isErrorTransition = false;
+            } catch (RuntimeException e) {
+                validTransitions = handleException(currentContext, e, transitionToBeExecuted);
+                if (validTransitions.length > 0) {
+                    currentState = getCurrentState(currentContext);
+                    isErrorTransition = true;
+                }
             }
-        } catch (RuntimeException e) {
-            handleException(e, transitionToBeExecuted);
         }
     }
 
+    private Deque<S> recordStep(Deque<S> recordedPath, S state) {
+        Deque<S> path = recordedPath != null ? recordedPath : new ArrayDeque<>(RECORDED_PATH_LENGTH);
+        if (path.size() == RECORDED_PATH_LENGTH) {
+            path.removeFirst();
+        }
+        path.addLast(state);
+        return path;
+    }
+
+    /**
+     * @param recordedPath The states the last steps of a dispatch started from, in order.
+     * @return The states from the latest state's previous occurrence up to the latest state, or all recorded states if the latest
+     * state doesn't occur twice.
+     */
+    private String describeCycle(Deque<S> recordedPath) {
+        List<S> path = new ArrayList<>(recordedPath);
+        S latest = path.get(path.size() - 1);
+        int cycleStart = path.subList(0, path.size() - 1).lastIndexOf(latest);
+        List<S> cycle = cycleStart >= 0 ? path.subList(cycleStart, path.size()) : path;
+        return cycle.stream().map(String::valueOf).collect(Collectors.joining(" -> "));
+    }
+
     /**
      * This method is called when a new transaction should be created. It is first called right after invocation of sendEvent. For
      * consecutive automatic transitions, following the one triggered by sendEvent it is called before the exitValidators are executed. This
@@ -348,36 +1515,65 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
 
     }
 
+    /**
+     * This method is called when a batch sent by sendEvents starts a new transaction, which spans the next getBatchTransactionSize()
+     * objects of the batch. createTransaction and closeTransaction are called for each of these objects as usual. Implementations should
+     * make them create nested transactions, e.g. savepoints, in order to roll back the work of a failed object only.
+     */
+    protected void createBatchTransaction() {
+
+    }
+
+    /**
+     * This method is called when a transaction created by createBatchTransaction should be committed or rolled back. It is rolled back only
+     * if processing the batch was aborted by an Error. If committing throws a RuntimeException, all objects processed within the
+     * transaction are reported as failed.
+     */
+    protected void closeBatchTransaction(boolean rollback) {
+
+    }
+
     private boolean isReflexiveTransition(State<S, E, O> fromState, State<S, E, O> toState) {
         return fromState.equals(toState);
     }
 
-    private void executeGenericAction(LifecycleEvent<?> event) {
-        Action<O> action = genericActions.get(event);
-        if (action != null) {
-            action.execute(getContext());
+    private void executeGenericAction(Context<O> currentContext, LifecycleEvent<?> event) {
+        notifyLifecycleListeners(currentContext, event);
+        dispatcher.executeGenericAction(event.getOrdinal(), currentContext);
+    }
+
+    private void notifyLifecycleListeners(Context<O> currentContext, LifecycleEvent<?> event) {
+        for (LifecycleListener<O> listener : lifecycleListeners) {
+            listener.onLifecycleEvent(event, currentContext);
         }
     }
 
-    private void traverseErrorTransition(RuntimeException e) {
-        State<S, E, O> currentState = getCurrentState();
-        log.info("Trying to traverse error transition for state {} and exception {}", currentState, e.getClass());
-        executeTransition(currentState, getAllTransitionsForException(currentState, e.getClass()), true);
+    /**
+     * Registers a listener which is notified of the lifecycle events of all dispatches, on the dispatching thread. Listeners may be added
+     * and removed while the statemachine dispatches events.
+     */
+    public synchronized void addLifecycleListener(LifecycleListener<O> listener) {
+        Validate.notNull(listener, "listener can not be null.");
+        LifecycleListener<O>[] listeners = Arrays.copyOf(lifecycleListeners, lifecycleListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        lifecycleListeners = listeners;
     }
 
-    private List<Transition<S, E, O>> getAllTransitions(State<S, E, O> currentState) {
-        return currentState.getTransitions();
+    public synchronized void removeLifecycleListener(LifecycleListener<O> listener) {
+        List<LifecycleListener<O>> listeners = new ArrayList<>(Arrays.asList(lifecycleListeners));
+        if (listeners.remove(listener)) {
+            lifecycleListeners = listeners.toArray(Arrays.copyOf(lifecycleListeners, 0));
+        }
     }
 
-    private List<Transition<S, E, O>> getAllTransitionsForEvent(State<S, E, O> currentState, E event) {
-        Predicate<Transition<S, E, O>> predicate = t -> t.getEvent().map(e -> e.equals(event)).orElse(false);
-        List<Transition<S, E, O>> allTransitionsForEvent = getAllTransitionsForPredicate(currentState, predicate);
-        if (allTransitionsForEvent.isEmpty()) {
-            log.info("No transition from state " + currentState.getId() + " found for event " + event);
+    private Transition<S, E, O>[] getAllTransitionsForEvent(Context<O> currentContext, State<S, E, O> currentState, E event) {
+        Transition<S, E, O>[] allTransitionsForEvent = dispatcher.getTransitions(currentState.getId(), event);
+        if (allTransitionsForEvent.length == 0) {
+            log.info("No transition from state {} found for event {}", currentState.getId(), event);
 
             // Call UNKNOWN_EVENT actions
-            getContext().setDataFor(UNKNOWN_EVENT, event);
-            executeGenericAction(UNKNOWN_EVENT);
+            currentContext.setDataFor(UNKNOWN_EVENT, event);
+            executeGenericAction(currentContext, UNKNOWN_EVENT);
         }
         return allTransitionsForEvent;
     }
@@ -386,43 +1582,62 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
      * Gets all transitions from state which don't have an event (onEvent) or error (onError) set and thus are considered automatic
      * transitions.
      */
-    private List<Transition<S, E, O>> getAllAutomaticTransitions(State<S, E, O> state) {
-        Predicate<Transition<S, E, O>> predicate = Transition::isAutomaticTransition;
-        return getAllTransitionsForPredicate(state, predicate);
+    private Transition<S, E, O>[] getAllAutomaticTransitions(State<S, E, O> state) {
+        return state.getAutomaticTransitions();
     }
 
     /**
      * Gets all transitions from state which have an error property (onError) which is assignable from errorClass
      */
-    private List<Transition<S, E, O>> getAllTransitionsForException(State<S, E, O> state, Class<? extends RuntimeException> errorClass) {
-        Predicate<Transition<S, E, O>> predicate = t -> t.getError().map(e -> e.isAssignableFrom(errorClass)).orElse(false);
-        return getAllTransitionsForPredicate(state, predicate);
+    private Transition<S, E, O>[] getAllTransitionsForException(State<S, E, O> state, Class<? extends RuntimeException> errorClass) {
+        return state.getTransitionsForException(errorClass);
     }
 
-    private List<Transition<S, E, O>> getAllTransitionsForPredicate(State<S, E, O> state, Predicate<Transition<S, E, O>> predicate) {
-        return getAllTransitions(state).stream()
-                .filter(predicate)
-                .collect(Collectors.toList());
-    }
-
-    private Optional<Transition<S, E, O>> getTransitionWhichPassesGuard(List<Transition<S, E, O>> transitions) {
-        // Find all Transitions with guard that returns true
-        List<Transition<S, E, O>> passingTransitions = transitions.stream()
-                .filter(transition -> transition.getGuard().test(getContext()))
-                .collect(Collectors.toList());
+    /**
+     * @return The single transition whose guard returns true or null if no guard returned true. In first-match mode the first transition
+     * whose guard returns true.
+     * @throws TransitionException If more than one guard returned true, in first-match mode only if they are of equal priority and the
+     *                             dispatch is verified.
+     */
+    private Transition<S, E, O> getTransitionWhichPassesGuard(Context<O> currentContext, Transition<S, E, O>[] transitions) {
+        boolean firstMatch = isFirstMatchGuardEvaluationEnabled();
+        if (firstMatch && !isGuardVerificationDue()) {
+            for (Transition<S, E, O> transition : transitions) {
+                if (dispatcher.testGuard(transition.index, currentContext)) {
+                    return transition;
+                }
+            }
+            log.debug("Trying to transit from {}. No transition guard returned true, thus no transition is taking place.",
+                    getCurrentState(currentContext).getId());
+            return null;
+        }
 
-        if (passingTransitions.size() != 1) {
-            if (passingTransitions.isEmpty()) {
-                log.debug("Trying to transit from " + getCurrentState().getId()
-                        + ". No transition guard returned true, thus no transition is taking place.");
-                return Optional.empty();
-            } else {
-                throw new TransitionException("There are multiple possible transitions from " + getCurrentState().getId() +
-                        ". Only one guard must return true.");
+        // Evaluate all guards, as it is a configuration error if more than one of them returns true. In first-match mode only those of
+        // the same priority as the first passing one, as the transitions are ordered by descending priority.
+        Transition<S, E, O> passingTransition = null;
+        for (Transition<S, E, O> transition : transitions) {
+            if (firstMatch && passingTransition != null && transition.priority < passingTransition.priority) {
+                break;
             }
+            if (dispatcher.testGuard(transition.index, currentContext)) {
+                if (passingTransition != null) {
+                    throw new TransitionException("There are multiple possible transitions from " + getCurrentState(currentContext).getId() +
+                            (firstMatch ? ". Only one guard per priority must return true." : ". Only one guard must return true."));
+                }
+                passingTransition = transition;
+            }
+        }
+
+        if (passingTransition == null) {
+            log.debug("Trying to transit from {}. No transition guard returned true, thus no transition is taking place.",
+                    getCurrentState(currentContext).getId());
         }
+        return passingTransition;
+    }
 
-        return Optional.of(passingTransitions.get(0));
+    private boolean isGuardVerificationDue() {
+        int percentage = getGuardVerificationPercentage();
+        return percentage > 0 && (percentage >= 100 || ThreadLocalRandom.current().nextInt(100) < percentage);
     }
 
     /**
@@ -431,16 +1646,26 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
      * @return A set containing all states that were added to this statemachine.
      */
     protected Set<S> getStates() {
-        return states.keySet();
+        return definition.getStates();
     }
 
-    private State<S, E, O> getCurrentState() {
-        S currentState = (S) getCurrentState(getContext().getObject());
+    private State<S, E, O> getCurrentState(Context<O> currentContext) {
+        S currentState = (S) getCurrentState(currentContext.getObject());
         return getState(currentState);
     }
 
     protected abstract void setCurrentState(O object, S state);
 
+    /**
+     * Hook method which is called when a transition led the object to another state, after the onEntryAction of the to-state and before
+     * the generic action of SUCCESSFUL_STATE_CHANGE. It is not called for reflexive transitions. Does nothing by default.
+     *
+     * @param object      The object whose state changed.
+     * @param stateChange The state the object was in and the state the transition led to.
+     */
+    protected void stateChanged(O object, StateChange<S> stateChange) {
+    }
+
     /**
      * Hook method which should return an object which is considered the final state of the statemachine implementation.
      *
@@ -454,4 +1679,34 @@ public abstract class AbstractStatemachine<S, E, O> implements Statemachine {
      * @return The statemachines initial state.
      */
     protected abstract S getInitialState();
+
+    /**
+     * The bookkeeping of this statemachine's dispatches on a single thread. It doesn't reference the object of a dispatch after the
+     * dispatch completed.
+     */
+    private static final class DispatchState<O> {
+
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private boolean dispatching;
+        private Context<O> spareContext;
+        /* Whether an item of a batch is dispatched and the first exception which occurred while doing so */
+        private boolean batching;
+        private RuntimeException batchError;
+        /* Whether the items of a batch leave waiting for the journal to the batch, and the last sequence they recorded */
+        private boolean deferJournal;
+        private long journalSequence = -1;
+    }
+
+    /**
+     * The state of a dispatch started by sendEventAsync or proceedAsync, which may continue on several threads.
+     */
+    private static final class AsyncDispatch<S> {
+
+        /* Dispatches requested by actions, which are run once this dispatch completed */
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private int steps;
+        private Deque<S> recordedPath;
+        /* Whether the guards of the current step are verified in first-match mode, decided once per step */
+        private Boolean verifyGuards;
+    }
 }
@@ -0,0 +1,71 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * An Action which doesn't block the calling thread while it waits for a slow resource, e.g. a remote service. Instead it returns a
+ * CompletionStage which completes when the action is done, respectively completes exceptionally if it failed.
+ * <p>
+ * Events sent by {@link Statemachine#sendEventAsync(Object, Object, Object)} continue with the next step of the transition once the
+ * stage completed, without blocking a thread in the meantime. If an AsyncAction is executed by a synchronous dispatch, e.g. sendEvent,
+ * the dispatching thread waits for the stage to complete.
+ *
+ * @param <O> The object type residing on the Context on which the Action operates.
+ */
+public class AsyncAction<O> extends Action<O> {
+
+    private final Function<Context<O>, ? extends CompletionStage<Void>> asyncWorkPackage;
+
+    protected AsyncAction(Function<Context<O>, ? extends CompletionStage<Void>> asyncWorkPackage) {
+        Validate.notNull(asyncWorkPackage, "asyncWorkPackage can not be null.");
+        this.asyncWorkPackage = asyncWorkPackage;
+    }
+
+    /**
+     * Named differently from Action#of, so that lambdas returning a CompletionStage aren't ambiguous.
+     */
+    public static <O> AsyncAction<O> ofStage(Function<Context<O>, ? extends CompletionStage<Void>> asyncWorkPackage) {
+        return new AsyncAction<>(asyncWorkPackage);
+    }
+
+    /**
+     * Starts the action.
+     *
+     * @return A stage which completes when the action is done.
+     */
+    public CompletionStage<Void> executeAsync(Context<O> context) {
+        return asyncWorkPackage.apply(context);
+    }
+
+    /**
+     * Executes the action and blocks until it is done. An exception the stage completed with is rethrown as is, if it is a
+     * RuntimeException, so that onError transitions match it.
+     */
+    @Override
+    public void execute(Context<O> context) {
+        await(executeAsync(context));
+    }
+
+    /**
+     * Blocks until the stage completed and returns its result. Unwraps the exception the stage completed with, if it is a
+     * RuntimeException or an Error.
+     */
+    static <T> T await(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof java.lang.Error) {
+                throw (java.lang.Error) cause;
+            }
+            throw e;
+        }
+    }
+}
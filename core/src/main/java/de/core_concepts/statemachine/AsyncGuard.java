@@ -0,0 +1,32 @@
+package de.core_concepts.statemachine;
+
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Predicate;
+
+/**
+ * A guard which doesn't block the calling thread while it waits for a slow resource. It can be used wherever a guard Predicate is
+ * expected, see TransitionConfigurer#when(Predicate) and TransitionConfigurer#whenAsync(AsyncGuard).
+ * <p>
+ * Events sent by {@link Statemachine#sendEventAsync(Object, Object, Object)} go on evaluating the remaining guards once the stage
+ * completed, without blocking a thread in the meantime. If the guard is evaluated by a synchronous dispatch, e.g. sendEvent, the
+ * dispatching thread waits for the stage to complete.
+ *
+ * @param <O> The object type residing on the Context on which the guard operates.
+ */
+@FunctionalInterface
+public interface AsyncGuard<O> extends Predicate<Context<O>> {
+
+    /**
+     * @return A stage which completes with true if the transition may be traversed.
+     */
+    CompletionStage<Boolean> testAsync(Context<O> context);
+
+    /**
+     * Evaluates the guard and blocks until its result is available.
+     */
+    @Override
+    default boolean test(Context<O> context) {
+        return AsyncAction.await(testAsync(context));
+    }
+}
@@ -0,0 +1,45 @@
+package de.core_concepts.statemachine;
+
+
+/**
+ * An event for a single object of a batch sent by {@link Statemachine#sendEvents(java.util.Collection)}, i.e. the arguments of a single
+ * call to {@link Statemachine#sendEvent(Object, Object, Object)}.
+ */
+public final class BatchEvent {
+
+    private final Object event;
+    private final Object object;
+    private final Object eventData;
+
+    /**
+     * @param event     The event to be sent. Must be of the same type as generic type parameter E of AbstractStatemachine
+     * @param object    The object on which the Statemachine will be based
+     * @param eventData Additional data of the event which is passed to the context of the Statemachine. Optional
+     */
+    public BatchEvent(Object event, Object object, Object eventData) {
+        this.event = event;
+        this.object = object;
+        this.eventData = eventData;
+    }
+
+    public BatchEvent(Object event, Object object) {
+        this(event, object, null);
+    }
+
+    public Object getEvent() {
+        return event;
+    }
+
+    public Object getObject() {
+        return object;
+    }
+
+    public Object getEventData() {
+        return eventData;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchEvent(event=" + event + ", object=" + object + ", eventData=" + eventData + ")";
+    }
+}
@@ -0,0 +1,154 @@
+package de.core_concepts.statemachine;
+
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a batch sent by {@link Statemachine#sendEvents(Object, java.util.Collection)},
+ * {@link Statemachine#sendEvents(java.util.Collection)} or processed by a BulkProcessor. Only failures are recorded individually, every
+ * other object of the batch succeeded.
+ * <p>
+ * An object failed if an exception occurred while processing its event, even if the statemachine handled it by an onError transition,
+ * or if the transaction of the part of the batch it belonged to couldn't be committed.
+ */
+public final class BatchResult {
+
+    private final List<Failure> failures = new ArrayList<>();
+    /* Objects of the current chunk which succeeded so far. They fail as well, if the chunk's transaction can't be committed. */
+    private final List<Succeeded> pending = new ArrayList<>();
+    private int succeededCount;
+    private long durationNanos;
+
+    BatchResult() {
+    }
+
+    /**
+     * Creates the result of a batch whose outcomes were collected elsewhere.
+     */
+    BatchResult(int succeededCount, List<Failure> failures, long durationNanos) {
+        this.succeededCount = succeededCount;
+        this.failures.addAll(failures);
+        this.failures.sort((a, b) -> Integer.compare(a.index, b.index));
+        this.durationNanos = durationNanos;
+    }
+
+    void succeeded(int index, Object object) {
+        pending.add(new Succeeded(index, object));
+    }
+
+    void failed(int index, Object object, RuntimeException error) {
+        failures.add(new Failure(index, object, error));
+    }
+
+    void chunkCommitted() {
+        succeededCount += pending.size();
+        pending.clear();
+    }
+
+    void chunkFailed(RuntimeException error) {
+        pending.forEach(succeeded -> failures.add(new Failure(succeeded.index, succeeded.object, error)));
+        pending.clear();
+        failures.sort((a, b) -> Integer.compare(a.index, b.index));
+    }
+
+    void finished(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return True if all objects of the batch succeeded.
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    public int getSucceededCount() {
+        return succeededCount;
+    }
+
+    public int getFailedCount() {
+        return failures.size();
+    }
+
+    /**
+     * @return The time it took to process the batch.
+     */
+    public Duration getDuration() {
+        return Duration.ofNanos(durationNanos);
+    }
+
+    /**
+     * @return The number of objects processed per second, whether they succeeded or failed.
+     */
+    public double getThroughput() {
+        return durationNanos == 0 ? 0 : (succeededCount + failures.size()) * 1e9 / durationNanos;
+    }
+
+    /**
+     * @return An unmodifiable list of all objects which failed, ordered by their position in the batch.
+     */
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult(succeeded=" + succeededCount + ", failed=" + failures.size() + ", duration=" + getDuration() + ")";
+    }
+
+    /**
+     * A single object of the current chunk which succeeded, as long as the chunk isn't committed.
+     */
+    private static final class Succeeded {
+
+        private final int index;
+        private final Object object;
+
+        private Succeeded(int index, Object object) {
+            this.index = index;
+            this.object = object;
+        }
+    }
+
+    /**
+     * A single object of a batch which failed.
+     */
+    public static final class Failure {
+
+        private final int index;
+        private final Object object;
+        private final RuntimeException error;
+
+        Failure(int index, Object object, RuntimeException error) {
+            this.index = index;
+            this.object = object;
+            this.error = error;
+        }
+
+        /**
+         * @return The position of the object within the batch.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public Object getObject() {
+            return object;
+        }
+
+        /**
+         * @return The exception which occurred while processing the object or while committing its transaction.
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Failure(index=" + index + ", object=" + object + ", error=" + error + ")";
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Processes a stream of events in parallel on an Executor, each event with the semantics of a call to
+ * {@link Statemachine#sendEvent(Object, Object, Object)}, i.e. including lifecycle events and onError transitions.
+ * <p>
+ * Events for objects with the same key are processed in the order they appear in the stream and never concurrently, events for
+ * objects with different keys are processed in parallel. By default the key of an object is the one the statemachine determines by
+ * {@link AbstractStatemachine#getObjectKey(Object)}, i.e. the object itself compared by identity, unless the statemachine overrides
+ * it. If several instances may represent the same entity, e.g. because they were loaded separately, override the hook or configure a
+ * key like its id with {@link #withObjectKey(Function)}.
+ * <p>
+ * The statemachine can be shared with other threads, as all state of a dispatch is bound to the thread executing it. A BulkProcessor
+ * itself may be used for several, even concurrent, calls to process.
+ *
+ * @param <O> The object type of the statemachine.
+ */
+public class BulkProcessor<O> {
+
+    /**
+     * The default for the maximum number of events which are submitted but not yet processed, see {@link #withMaxInFlight(int)}.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10000;
+
+    private static final Logger log = LoggerFactory.getLogger(BulkProcessor.class);
+
+    private final AbstractStatemachine<?, ?, O> statemachine;
+    private final Executor executor;
+    private Function<? super O, ?> objectKey = this::getObjectKey;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    /**
+     * @param statemachine The statemachine to send the events to.
+     * @param executor     The executor which processes the events.
+     */
+    public BulkProcessor(AbstractStatemachine<?, ?, O> statemachine, Executor executor) {
+        Validate.notNull(statemachine, "statemachine can not be null.");
+        Validate.notNull(executor, "executor can not be null.");
+        this.statemachine = statemachine;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a BulkProcessor which processes events on the common ForkJoinPool.
+     */
+    public BulkProcessor(AbstractStatemachine<?, ?, O> statemachine) {
+        this(statemachine, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param objectKey Determines the key of an object instead of the statemachine. Events for objects with equal keys are processed in
+     *                  order and never concurrently. Keys must implement equals and hashCode and must not change while the events are
+     *                  processed.
+     */
+    public BulkProcessor<O> withObjectKey(Function<? super O, ?> objectKey) {
+        Validate.notNull(objectKey, "objectKey can not be null.");
+        this.objectKey = objectKey;
+        return this;
+    }
+
+    /**
+     * @param maxInFlight The maximum number of events which were taken from the stream but not yet processed. Reading the stream
+     *                    blocks if it is reached, which bounds memory consumption for large streams.
+     */
+    public BulkProcessor<O> withMaxInFlight(int maxInFlight) {
+        Validate.isTrue(maxInFlight > 0, "maxInFlight must be positive.");
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Sends the same event to each of the given objects.
+     *
+     * @see #process(Stream)
+     */
+    public BatchResult process(Object event, Stream<? extends O> objects) {
+        return process(objects.map(object -> new BatchEvent(event, object)));
+    }
+
+    /**
+     * Processes all events of the stream and blocks until they are processed.
+     *
+     * @param events The events to be processed, each along with its object and optional event data.
+     * @return The outcome of each event, where the index of a failure is the position of its event in the stream, along with the
+     * throughput.
+     * @throws IllegalStateException If the calling thread is interrupted while waiting. Events which were already submitted are
+     *                               processed nevertheless.
+     */
+    public BatchResult process(Stream<BatchEvent> events) {
+        long start = System.nanoTime();
+        Run run = new Run();
+        try {
+            Iterator<BatchEvent> iterator = events.iterator();
+            for (int index = 0; iterator.hasNext(); index++) {
+                run.permits.acquire();
+                submit(run, index, iterator.next());
+            }
+            // All permits are available again once all events are processed
+            run.permits.acquire(run.maxInFlight);
+            run.permits.release(run.maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing events.", e);
+        }
+        rethrowFatalError(run);
+
+        BatchResult result = new BatchResult(run.succeeded.get(), new ArrayList<>(run.failures), System.nanoTime() - start);
+        log.info("Processed events in parallel: {}, {} events per second", result, String.format("%.1f", result.getThroughput()));
+        return result;
+    }
+
+    /**
+     * Appends the event to the chain of its key. Every key, which has events in flight, maps to the future of its last event.
+     */
+    private void submit(Run run, int index, BatchEvent batchEvent) {
+        Object key = key(batchEvent.getObject());
+        CompletableFuture<Void> future = run.lastEventByKey.compute(key, (k, last) -> last == null
+                ? CompletableFuture.runAsync(() -> process(run, index, batchEvent), executor)
+                : last.thenRunAsync(() -> process(run, index, batchEvent), executor));
+        future.whenComplete((result, error) -> {
+            run.lastEventByKey.remove(key, future);
+            if (error != null) {
+                run.fatalError.compareAndSet(null, error);
+            }
+            run.permits.release();
+        });
+    }
+
+    private Object key(Object object) {
+        Class<O> objectType = statemachine.getDefinition().getObjectType();
+        // Objects of the wrong type are reported as failed by the statemachine
+        return objectType.isInstance(object) ? objectKey.apply(objectType.cast(object)) : new IdentityKey(object);
+    }
+
+    /**
+     * @return The key of the object according to the statemachine. A key which is the object itself is compared by identity.
+     */
+    private Object getObjectKey(O object) {
+        Object key = statemachine.getObjectKey(object);
+        return key == object ? new IdentityKey(object) : key;
+    }
+
+    private void process(Run run, int index, BatchEvent batchEvent) {
+        RuntimeException error;
+        try {
+            error = statemachine.sendEventAndReportError(batchEvent);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        if (error == null) {
+            run.succeeded.incrementAndGet();
+        } else {
+            run.failures.add(new BatchResult.Failure(index, batchEvent.getObject(), error));
+        }
+    }
+
+    private void rethrowFatalError(Run run) {
+        Throwable fatalError = run.fatalError.get();
+        if (fatalError != null) {
+            Throwable cause = fatalError.getCause() != null ? fatalError.getCause() : fatalError;
+            if (cause instanceof java.lang.Error) {
+                throw (java.lang.Error) cause;
+            }
+            throw new IllegalStateException("Processing events failed.", cause);
+        }
+    }
+
+    /**
+     * The bookkeeping of a single call to process.
+     */
+    private final class Run {
+
+        private final int maxInFlight = BulkProcessor.this.maxInFlight;
+        private final Semaphore permits = new Semaphore(maxInFlight);
+        private final ConcurrentMap<Object, CompletableFuture<Void>> lastEventByKey = new ConcurrentHashMap<>();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final Queue<BatchResult.Failure> failures = new ConcurrentLinkedQueue<>();
+        /* An Error, which terminated the chain of a key */
+        private final AtomicReference<Throwable> fatalError = new AtomicReference<>();
+    }
+
+    /**
+     * Compares objects by identity.
+     */
+    private static final class IdentityKey {
+
+        private final Object object;
+
+        private IdentityKey(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).object == object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+    }
+}
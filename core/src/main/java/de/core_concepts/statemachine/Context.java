@@ -5,8 +5,9 @@ import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 
 import java.beans.ConstructorProperties;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 
@@ -21,9 +22,24 @@ public class Context<O> {
 
     private static final Logger LOG = org.slf4j.LoggerFactory.getLogger(Context.class);
 
-    private final O object;
+    private O object;
 
-    private Map<LifecycleEvent, Object> lifecycleEventData = new HashMap<>();
+    /* The data of each LifecycleEvent, indexed by its ordinal. Grows if lifecycle events are created after this context. */
+    private Object[] lifecycleEventData = new Object[LifecycleEvent.getCount()];
+
+    /* The LifecycleEvent of each entry of lifecycleEventData, indexed by its ordinal as well */
+    private LifecycleEvent<?>[] lifecycleEvents = new LifecycleEvent<?>[lifecycleEventData.length];
+
+    /* The number of non-null entries in lifecycleEventData */
+    private int dataCount;
+
+    /* The event with the highest recency for which data was set, see LifecycleEvent.ORDERED_LIFECYCLE_EVENTS */
+    private LifecycleEvent<?> mostRecentEvent;
+
+    private boolean inUse;
+
+    /* The last sequence the dispatch recorded in the journal, or -1 */
+    private long journalSequence = -1;
 
     @ConstructorProperties({"object"})
     public Context(O object) {
@@ -35,12 +51,25 @@ public class Context<O> {
     }
 
     public boolean hasValidationError() {
-        return lifecycleEventData.get(LifecycleEvent.VALIDATION_ERROR) != null;
+        return getSlot(LifecycleEvent.VALIDATION_ERROR) != null;
     }
 
-    void setDataFor(LifecycleEvent event, Object data) {
-        if (data != null) {
-            lifecycleEventData.put(event, data);
+    <T> void setDataFor(LifecycleEvent<T> event, T data) {
+        if (data == null) {
+            return;
+        }
+        int ordinal = event.getOrdinal();
+        if (ordinal >= lifecycleEventData.length) {
+            lifecycleEventData = Arrays.copyOf(lifecycleEventData, LifecycleEvent.getCount());
+            lifecycleEvents = Arrays.copyOf(lifecycleEvents, lifecycleEventData.length);
+        }
+        if (lifecycleEventData[ordinal] == null) {
+            dataCount++;
+        }
+        lifecycleEvents[ordinal] = event;
+        lifecycleEventData[ordinal] = data;
+        if (event.getRecency() >= 0 && (mostRecentEvent == null || event.getRecency() > mostRecentEvent.getRecency())) {
+            mostRecentEvent = event;
         }
     }
 
@@ -60,26 +89,40 @@ public class Context<O> {
      * @return An Optional with the data of the given LifecycleEvent or Optional.empty() if there is none.
      */
     public <T> Optional<T> getDataFor(LifecycleEvent<T> event) {
-        Validate.notNull(event);
-        Object data = lifecycleEventData.get(event);
-        return castData(event.getType(), data);
+        return Optional.ofNullable(getData(event));
     }
 
     /**
-     * Tries to cast <code>data</code> to <code>type</code> and returns an Optional
+     * Like {@link #getDataFor(LifecycleEvent)}, but doesn't wrap the data in an Optional. Use this in guards and actions which are
+     * executed very often.
      *
-     * @param type The type to cast to. Mandatory.
-     * @param data The object to be cast. Optional.
-     * @param <T>  The type to cast to.
-     * @return If casting is successful an Optional containing the casted object, an empty Optional otherwise.
+     * @param event The LifecycleEvent for which the caller wants to get data for.
+     * @param <T>   The type of the data object returned.
+     * @return The data of the given LifecycleEvent or null if there is none.
      */
-    private <T> Optional<T> castData(Class<T> type, Object data) {
-        try {
-            return Optional.ofNullable(type.cast(data));
-        } catch (ClassCastException e) {
-            LOG.error(String.format("Failed to cast %s to type %s", data, type), e);
-            return Optional.empty();
+    public <T> T getData(LifecycleEvent<T> event) {
+        Validate.notNull(event);
+        return typed(event.getType(), getSlot(event));
+    }
+
+    private Object getSlot(LifecycleEvent<?> event) {
+        int ordinal = event.getOrdinal();
+        return ordinal < lifecycleEventData.length ? lifecycleEventData[ordinal] : null;
+    }
+
+    /**
+     * @param type The type the data is expected to be of. Mandatory.
+     * @param data The data. Optional.
+     * @param <T>  The expected type.
+     * @return The data if it is of the given type, null otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T typed(Class<T> type, Object data) {
+        if (data == null || type.isInstance(data)) {
+            return (T) data;
         }
+        LOG.error("Failed to cast {} to type {}", data, type);
+        return null;
     }
 
     /**
@@ -89,20 +132,10 @@ public class Context<O> {
      * Optional.empty() if no data at all, or of the given type was found.
      */
     public <T> Optional<T> getMostRecentData(Class<T> expectedClass) {
-        // If no event data has been saved just bail
-        if (!lifecycleEventData.isEmpty()) {
-
-            // Iterate in reverse object to most recent data
-            Iterator<LifecycleEvent<?>> descIterator = LifecycleEvent.ORDERED_LIFECYCLE_EVENTS.descendingIterator();
-            while (descIterator.hasNext()) {
-                LifecycleEvent event = descIterator.next();
-                Object data = lifecycleEventData.get(event);
-                if (data != null) {
-                    return castData(expectedClass, data);
-                }
-            }
+        if (mostRecentEvent == null) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        return Optional.ofNullable(typed(expectedClass, getSlot(mostRecentEvent)));
     }
 
     /**
@@ -116,14 +149,65 @@ public class Context<O> {
      * Clears all data set in the course of a state transition, so that no data spills over to a following state transition.
      */
     void clearData() {
-        lifecycleEventData.clear();
+        if (dataCount > 0) {
+            Arrays.fill(lifecycleEventData, null);
+            dataCount = 0;
+            mostRecentEvent = null;
+        }
+    }
+
+    /**
+     * Prepares this context to be reused for a dispatch on another object.
+     *
+     * @param object The object the next dispatch works on.
+     */
+    void reset(O object) {
+        this.object = object;
+        this.journalSequence = -1;
+        clearData();
+    }
+
+    /**
+     * @return True while a dispatch of a statemachine is working with this context.
+     */
+    boolean isInUse() {
+        return inUse;
+    }
+
+    void setInUse(boolean inUse) {
+        this.inUse = inUse;
+    }
+
+    long getJournalSequence() {
+        return journalSequence;
+    }
+
+    void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
     }
 
     public O getObject() {
         return this.object;
     }
 
+    /**
+     * @return An unmodifiable copy of the data set since the last call to clearData, by LifecycleEvent.
+     */
+    @SuppressWarnings("rawtypes")
     Map<LifecycleEvent, Object> getLifecycleEventData() {
-        return this.lifecycleEventData;
+        Map<LifecycleEvent, Object> data = new HashMap<>();
+        for (int ordinal = 0; ordinal < lifecycleEventData.length && data.size() < dataCount; ordinal++) {
+            if (lifecycleEventData[ordinal] != null) {
+                data.put(lifecycleEvents[ordinal], lifecycleEventData[ordinal]);
+            }
+        }
+        return Collections.unmodifiableMap(data);
+    }
+
+    /**
+     * @return True if data was set for any LifecycleEvent since the last call to clearData.
+     */
+    boolean hasData() {
+        return dataCount > 0;
     }
 }
@@ -0,0 +1,103 @@
+package de.core_concepts.statemachine;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The ids of the events a statemachine processed recently. Used by AbstractStatemachine in order to discard events which are delivered
+ * more than once. An id is forgotten once it is older than the time to live, or once more than the maximum number of ids were
+ * registered after it, whichever happens first.
+ * <p>
+ * Registering an id takes constant time: ids are evicted in the order they were registered, oldest first, which is the order of their
+ * expiry as well.
+ */
+final class DeduplicationCache {
+
+    private final int maxSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<Object, Entry> entries = new ConcurrentHashMap<>();
+    /* The entries in the order they were registered. May contain entries which were already forgotten. */
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder duplicates = new LongAdder();
+
+    DeduplicationCache(int maxSize, long timeToLiveNanos, LongSupplier nanoClock) {
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLiveNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Registers the id, unless it is already registered and not yet expired.
+     *
+     * @return False if the id is a duplicate.
+     */
+    boolean register(Object id) {
+        long now = nanoClock.getAsLong();
+        Entry entry = new Entry(id, now);
+        Entry existing = entries.putIfAbsent(id, entry);
+        while (existing != null) {
+            if (now - existing.registered < timeToLiveNanos) {
+                duplicates.increment();
+                return false;
+            }
+            // Expired, but not yet evicted
+            if (entries.replace(id, existing, entry)) {
+                size.decrementAndGet();
+                break;
+            }
+            existing = entries.putIfAbsent(id, entry);
+        }
+        order.add(entry);
+        size.incrementAndGet();
+        evict(now);
+        return true;
+    }
+
+    /**
+     * Forgets the id, e.g. because its event failed, so that it is processed when it is delivered again.
+     */
+    void forget(Object id) {
+        if (entries.remove(id) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the oldest entries while there are too many or they expired.
+     */
+    private void evict(long now) {
+        Entry oldest;
+        while ((oldest = order.peek()) != null && (size.get() > maxSize || now - oldest.registered >= timeToLiveNanos)) {
+            if (order.remove(oldest) && entries.remove(oldest.id, oldest)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    int getSize() {
+        return size.get();
+    }
+
+    long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    private static final class Entry {
+
+        private final Object id;
+        private final long registered;
+
+        private Entry(Object id, long registered) {
+            this.id = id;
+            this.registered = registered;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package de.core_concepts.statemachine;
+
+
+import java.util.*;
+
+/**
+ * A lookup table which resolves all transitions of a state that listen to a certain event. As the state graph does not change after
+ * AbstractStatemachine#initStateMachine, the table is built once and afterwards only read.
+ * <p>
+ * If both the state type and the event type are enums, the table is a two-dimensional array indexed by the state's and the event's
+ * ordinal. For all other types it falls back to nested hash maps. In both cases a lookup neither iterates over transitions nor allocates.
+ *
+ * @param <S> The type defining the states the Statemachine knows of.
+ * @param <E> The type defining the events the Statemachine listens to.
+ * @param <O> The object type which is put on the context for actions to work with.
+ */
+final class DispatchTable<S, E, O> {
+
+    private final Transition<S, E, O>[][][] byOrdinal;
+    private final Map<S, Map<E, Transition<S, E, O>[]>> byHash;
+
+    private DispatchTable(Transition<S, E, O>[][][] byOrdinal, Map<S, Map<E, Transition<S, E, O>[]>> byHash) {
+        this.byOrdinal = byOrdinal;
+        this.byHash = byHash;
+    }
+
+    /**
+     * Builds a dispatch table for the given states.
+     *
+     * @param stateType The class object for the state type S.
+     * @param eventType The class object for the event type E.
+     * @param states    All states known to the statemachine, including their transitions.
+     */
+    static <S, E, O> DispatchTable<S, E, O> build(Class<S> stateType, Class<E> eventType, Collection<State<S, E, O>> states) {
+        Map<S, Map<E, Transition<S, E, O>[]>> byHash = new HashMap<>();
+        for (State<S, E, O> state : states) {
+            Map<E, List<Transition<S, E, O>>> byEvent = new HashMap<>();
+            for (Transition<S, E, O> transition : state.getTransitions()) {
+                if (transition.event != null) {
+                    byEvent.computeIfAbsent(transition.event, e -> new ArrayList<>()).add(transition);
+                }
+            }
+            Map<E, Transition<S, E, O>[]> compacted = new HashMap<>();
+            byEvent.forEach((event, transitions) -> compacted.put(event, Transition.toArray(transitions)));
+            byHash.put(state.getId(), compacted);
+        }
+
+        if (!stateType.isEnum() || !eventType.isEnum()) {
+            return new DispatchTable<>(null, byHash);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Transition<S, E, O>[][][] byOrdinal = new Transition[stateType.getEnumConstants().length][eventType.getEnumConstants().length][];
+        for (Map.Entry<S, Map<E, Transition<S, E, O>[]>> stateEntry : byHash.entrySet()) {
+            Transition<S, E, O>[][] row = byOrdinal[ordinal(stateEntry.getKey())];
+            Arrays.fill(row, Transition.none());
+            stateEntry.getValue().forEach((event, transitions) -> row[ordinal(event)] = transitions);
+        }
+        return new DispatchTable<>(byOrdinal, null);
+    }
+
+    private static int ordinal(Object enumConstant) {
+        return ((Enum<?>) enumConstant).ordinal();
+    }
+
+    /**
+     * @param state The id of the state whose outgoing transitions are looked up.
+     * @param event The event the transitions have to listen to.
+     * @return All transitions exiting state on event by descending priority, then in the order they were configured. Empty if there are
+     * none. The returned array is shared and must not be modified.
+     */
+    Transition<S, E, O>[] getTransitions(S state, E event) {
+        if (byOrdinal != null) {
+            Transition<S, E, O>[] transitions = byOrdinal[ordinal(state)][ordinal(event)];
+            return transitions != null ? transitions : Transition.none();
+        }
+        Map<E, Transition<S, E, O>[]> byEvent = byHash.get(state);
+        if (byEvent == null) {
+            return Transition.none();
+        }
+        return byEvent.getOrDefault(event, Transition.none());
+    }
+}
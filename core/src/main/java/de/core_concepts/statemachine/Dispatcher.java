@@ -0,0 +1,95 @@
+package de.core_concepts.statemachine;
+
+
+import java.util.function.Predicate;
+
+/**
+ * Resolves transitions and invokes the guards and actions of a StatemachineDefinition on behalf of AbstractStatemachine. Transitions
+ * and states are addressed by their index within the definition, lifecycle events by their ordinal.
+ * <p>
+ * There are two implementations: InterpretingDispatcher, which looks everything up in arrays, and classes generated by
+ * DispatcherCompiler, which contain a switch with a separate call site for every guard and action. This class is only public, so that
+ * generated classes, which are defined by their own class loader, can extend it. It is not meant to be used by applications.
+ *
+ * @param <S> The type defining the states the Statemachine knows of.
+ * @param <E> The type defining the events the Statemachine listens to.
+ * @param <O> The object type which is put on the context for actions to work with.
+ */
+public abstract class Dispatcher<S, E, O> {
+
+    protected final Predicate<Context<O>>[] guards;
+    protected final Action<O>[] actions;
+    protected final Action<O>[] onEntryActions;
+    protected final Action<O>[] exitValidators;
+    protected final Action<O>[] genericActions;
+    /* Transitions indexed by the ordinal of the from state and of the event. Null, unless both S and E are enums. */
+    protected final Transition<S, E, O>[][][] transitionsByOrdinal;
+    protected final Transition<S, E, O>[] noTransitions = Transition.none();
+
+    final StatemachineDefinition<S, E, O> definition;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected Dispatcher(StatemachineDefinition<S, E, O> definition) {
+        this.definition = definition;
+        Transition<S, E, O>[] transitions = definition.getTransitionsByIndex();
+        guards = new Predicate[transitions.length];
+        actions = new Action[transitions.length];
+        for (Transition<S, E, O> transition : transitions) {
+            guards[transition.index] = transition.guard;
+            actions[transition.index] = transition.action;
+        }
+        State<S, E, O>[] states = definition.getStatesByIndex();
+        onEntryActions = new Action[states.length];
+        exitValidators = new Action[states.length];
+        for (State<S, E, O> state : states) {
+            onEntryActions[state.index] = state.onEntryAction;
+            exitValidators[state.index] = state.exitValidator;
+        }
+        genericActions = definition.getGenericActions().clone();
+        transitionsByOrdinal = definition.hasEnumTypes() ? tabulateTransitions(definition) : null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S, E, O> Transition<S, E, O>[][][] tabulateTransitions(StatemachineDefinition<S, E, O> definition) {
+        S[] stateIds = definition.getStateType().getEnumConstants();
+        E[] events = definition.getEventType().getEnumConstants();
+        Transition<S, E, O>[][][] table = new Transition[stateIds.length][events.length][];
+        for (int s = 0; s < stateIds.length; s++) {
+            for (int e = 0; e < events.length; e++) {
+                table[s][e] = definition.getTransitions(stateIds[s], events[e]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return All transitions exiting state on event by descending priority, then in the order they were configured. The returned array
+     * must not be modified.
+     */
+    protected abstract Transition<S, E, O>[] getTransitions(S state, E event);
+
+    /**
+     * @return The result of the guard of the transition with the given index.
+     */
+    protected abstract boolean testGuard(int transition, Context<O> context);
+
+    /**
+     * Executes the action of the transition with the given index, if it has one.
+     */
+    protected abstract void executeAction(int transition, Context<O> context);
+
+    /**
+     * Executes the onEntryAction of the state with the given index, if it has one.
+     */
+    protected abstract void executeOnEntryAction(int state, Context<O> context);
+
+    /**
+     * Executes the exitValidator of the state with the given index, if it has one.
+     */
+    protected abstract void executeExitValidator(int state, Context<O> context);
+
+    /**
+     * Executes the generic action registered for the LifecycleEvent with the given ordinal, if there is one.
+     */
+    protected abstract void executeGenericAction(int lifecycleEvent, Context<O> context);
+}
@@ -0,0 +1,282 @@
+package de.core_concepts.statemachine;
+
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates a Dispatcher class dedicated to a single StatemachineDefinition. The JVM profiles a call site across all receivers it
+ * encounters, so the few call sites of the generic engine, e.g. the one invoking all guards, become megamorphic as soon as a couple of
+ * statemachines with different guards and actions run in the same JVM, which prevents inlining.
+ * <p>
+ * The generated class resolves transitions with a switch on the ordinals of state and event and contains one call site per guard and
+ * action, so each call site only ever sees a single receiver. Plain Actions are unwrapped, i.e. their ContextConsumer is called
+ * directly, whereas subclasses of Action are called through Action#execute.
+ * <p>
+ * Only definitions whose state and event types are enums can be compiled. Requires ASM on the classpath.
+ */
+final class DispatcherCompiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DispatcherCompiler.class);
+    private static final AtomicInteger CLASS_COUNT = new AtomicInteger();
+
+    private static final String DISPATCHER = Type.getInternalName(Dispatcher.class);
+    private static final String ACTION = Type.getInternalName(Action.class);
+    private static final String CONTEXT_CONSUMER = Type.getInternalName(ContextConsumer.class);
+    private static final String PREDICATE = Type.getInternalName(Predicate.class);
+    private static final String ENUM = Type.getInternalName(Enum.class);
+    private static final String ACTIONS_DESCRIPTOR = Type.getDescriptor(Action[].class);
+    private static final String GUARDS_DESCRIPTOR = Type.getDescriptor(Predicate[].class);
+    private static final String TRANSITIONS_DESCRIPTOR = Type.getDescriptor(Transition[].class);
+    private static final String TRANSITION_TABLE_DESCRIPTOR = Type.getDescriptor(Transition[][][].class);
+    private static final String CALLBACK_DESCRIPTOR = "(I" + Type.getDescriptor(Context.class) + ")";
+
+    private DispatcherCompiler() {
+    }
+
+    /**
+     * @return A Dispatcher generated for the given definition, or null if the definition can't be compiled.
+     */
+    static <S, E, O> Dispatcher<S, E, O> compile(StatemachineDefinition<S, E, O> definition) {
+        if (!definition.hasEnumTypes()) {
+            LOG.info("Only statemachines with enum states and events can be compiled. Falling back to the interpreting dispatcher.");
+            return null;
+        }
+        // The template only provides the arrays the generated code is based on.
+        Dispatcher<S, E, O> template = new InterpretingDispatcher<>(definition);
+        String className = DISPATCHER + "$Compiled" + CLASS_COUNT.incrementAndGet();
+        try {
+            byte[] bytecode = generate(className, template);
+            Class<?> dispatcherClass = new DispatcherClassLoader(Dispatcher.class.getClassLoader())
+                    .define(className.replace('/', '.'), bytecode);
+            @SuppressWarnings("unchecked")
+            Dispatcher<S, E, O> dispatcher = (Dispatcher<S, E, O>) dispatcherClass
+                    .getConstructor(StatemachineDefinition.class)
+                    .newInstance(definition);
+            return dispatcher;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            LOG.error("Failed to compile the statemachine. Falling back to the interpreting dispatcher.", e);
+            return null;
+        }
+    }
+
+    private static byte[] generate(String className, Dispatcher<?, ?, ?> template) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // Frames are only merged at switch labels where the stack is empty, so this is never relevant.
+                return "java/lang/Object";
+            }
+        };
+        classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, DISPATCHER, null);
+
+        MethodVisitor constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>",
+                "(" + Type.getDescriptor(StatemachineDefinition.class) + ")V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitVarInsn(ALOAD, 1);
+        constructor.visitMethodInsn(INVOKESPECIAL, DISPATCHER, "<init>", "(" + Type.getDescriptor(StatemachineDefinition.class) + ")V",
+                false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        generateGetTransitions(classWriter, template.transitionsByOrdinal);
+        generateTestGuard(classWriter, template.guards);
+        generateExecute(classWriter, "executeAction", "actions", template.actions);
+        generateExecute(classWriter, "executeOnEntryAction", "onEntryActions", template.onEntryActions);
+        generateExecute(classWriter, "executeExitValidator", "exitValidators", template.exitValidators);
+        generateExecute(classWriter, "executeGenericAction", "genericActions", template.genericActions);
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * switch (state.ordinal()) { case s: switch (event.ordinal()) { case e: return transitionsByOrdinal[s][e]; } } return noTransitions;
+     * <p>
+     * Only combinations of state and event with transitions get a case.
+     */
+    private static void generateGetTransitions(ClassWriter classWriter, Transition<?, ?, ?>[][][] table) {
+        MethodVisitor method = classWriter.visitMethod(ACC_PROTECTED, "getTransitions",
+                "(Ljava/lang/Object;Ljava/lang/Object;)" + TRANSITIONS_DESCRIPTOR, null, null);
+        method.visitCode();
+        Label none = new Label();
+
+        Label[] stateLabels = new Label[table.length];
+        for (int s = 0; s < table.length; s++) {
+            stateLabels[s] = hasTransitions(table[s]) ? new Label() : none;
+        }
+        if (stateLabels.length > 0) {
+            pushOrdinal(method, 1);
+            method.visitTableSwitchInsn(0, stateLabels.length - 1, none, stateLabels);
+        }
+        for (int s = 0; s < table.length; s++) {
+            if (stateLabels[s] == none) {
+                continue;
+            }
+            method.visitLabel(stateLabels[s]);
+            Label[] eventLabels = new Label[table[s].length];
+            for (int e = 0; e < eventLabels.length; e++) {
+                eventLabels[e] = table[s][e].length > 0 ? new Label() : none;
+            }
+            pushOrdinal(method, 2);
+            method.visitTableSwitchInsn(0, eventLabels.length - 1, none, eventLabels);
+            for (int e = 0; e < eventLabels.length; e++) {
+                if (eventLabels[e] == none) {
+                    continue;
+                }
+                method.visitLabel(eventLabels[e]);
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, DISPATCHER, "transitionsByOrdinal", TRANSITION_TABLE_DESCRIPTOR);
+                pushInt(method, s);
+                method.visitInsn(AALOAD);
+                pushInt(method, e);
+                method.visitInsn(AALOAD);
+                method.visitInsn(ARETURN);
+            }
+        }
+        method.visitLabel(none);
+        method.visitVarInsn(ALOAD, 0);
+        method.visitFieldInsn(GETFIELD, DISPATCHER, "noTransitions", TRANSITIONS_DESCRIPTOR);
+        method.visitInsn(ARETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private static boolean hasTransitions(Transition<?, ?, ?>[][] byEvent) {
+        return Arrays.stream(byEvent).anyMatch(transitions -> transitions.length > 0);
+    }
+
+    private static void pushOrdinal(MethodVisitor method, int variable) {
+        method.visitVarInsn(ALOAD, variable);
+        method.visitTypeInsn(CHECKCAST, ENUM);
+        method.visitMethodInsn(INVOKEVIRTUAL, ENUM, "ordinal", "()I", false);
+    }
+
+    /**
+     * switch (transition) { case t: return guards[t].test(context); } return guards[transition].test(context);
+     */
+    private static void generateTestGuard(ClassWriter classWriter, Predicate<?>[] guards) {
+        MethodVisitor method = classWriter.visitMethod(ACC_PROTECTED, "testGuard", CALLBACK_DESCRIPTOR + "Z", null, null);
+        method.visitCode();
+        Label fallback = new Label();
+        Label[] labels = new Label[guards.length];
+        for (int t = 0; t < labels.length; t++) {
+            labels[t] = new Label();
+        }
+        if (labels.length > 0) {
+            method.visitVarInsn(ILOAD, 1);
+            method.visitTableSwitchInsn(0, labels.length - 1, fallback, labels);
+            for (int t = 0; t < labels.length; t++) {
+                method.visitLabel(labels[t]);
+                loadElement(method, "guards", GUARDS_DESCRIPTOR, t);
+                invokeGuard(method);
+            }
+        }
+        method.visitLabel(fallback);
+        method.visitVarInsn(ALOAD, 0);
+        method.visitFieldInsn(GETFIELD, DISPATCHER, "guards", GUARDS_DESCRIPTOR);
+        method.visitVarInsn(ILOAD, 1);
+        method.visitInsn(AALOAD);
+        invokeGuard(method);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private static void invokeGuard(MethodVisitor method) {
+        method.visitVarInsn(ALOAD, 2);
+        method.visitMethodInsn(INVOKEINTERFACE, PREDICATE, "test", "(Ljava/lang/Object;)Z", true);
+        method.visitInsn(IRETURN);
+    }
+
+    /**
+     * switch (index) { case i: actions[i].execute(context); return; } return;
+     * <p>
+     * Only existing actions get a case. For a plain Action, the case calls its ContextConsumer directly.
+     */
+    private static void generateExecute(ClassWriter classWriter, String methodName, String field, Action<?>[] actions) {
+        MethodVisitor method = classWriter.visitMethod(ACC_PROTECTED, methodName, CALLBACK_DESCRIPTOR + "V", null, null);
+        method.visitCode();
+        Label done = new Label();
+        Label[] labels = new Label[actions.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = actions[i] != null ? new Label() : done;
+        }
+        if (labels.length > 0) {
+            method.visitVarInsn(ILOAD, 1);
+            method.visitTableSwitchInsn(0, labels.length - 1, done, labels);
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == done) {
+                    continue;
+                }
+                method.visitLabel(labels[i]);
+                loadElement(method, field, ACTIONS_DESCRIPTOR, i);
+                if (actions[i].getClass() == Action.class) {
+                    // if ((consumer = action.getWorkPackage()) != null) consumer.accept(context)
+                    method.visitMethodInsn(INVOKEVIRTUAL, ACTION, "getWorkPackage", "()" + Type.getDescriptor(ContextConsumer.class),
+                            false);
+                    method.visitInsn(DUP);
+                    Label hasWorkPackage = new Label();
+                    method.visitJumpInsn(IFNONNULL, hasWorkPackage);
+                    method.visitInsn(POP);
+                    method.visitInsn(RETURN);
+                    method.visitLabel(hasWorkPackage);
+                    method.visitVarInsn(ALOAD, 2);
+                    method.visitMethodInsn(INVOKEINTERFACE, CONTEXT_CONSUMER, "accept", "(Ljava/lang/Object;)V", true);
+                } else {
+                    method.visitVarInsn(ALOAD, 2);
+                    method.visitMethodInsn(INVOKEVIRTUAL, ACTION, "execute", "(" + Type.getDescriptor(Context.class) + ")V", false);
+                }
+                method.visitInsn(RETURN);
+            }
+        }
+        method.visitLabel(done);
+        method.visitInsn(RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private static void loadElement(MethodVisitor method, String field, String descriptor, int index) {
+        method.visitVarInsn(ALOAD, 0);
+        method.visitFieldInsn(GETFIELD, DISPATCHER, field, descriptor);
+        pushInt(method, index);
+        method.visitInsn(AALOAD);
+    }
+
+    private static void pushInt(MethodVisitor method, int value) {
+        if (value <= 5) {
+            method.visitInsn(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            method.visitIntInsn(BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            method.visitIntInsn(SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * Defines each generated class in a class loader of its own, so that it can be unloaded together with its definition.
+     */
+    private static final class DispatcherClassLoader extends ClassLoader {
+
+        private DispatcherClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
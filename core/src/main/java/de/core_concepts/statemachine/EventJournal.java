@@ -0,0 +1,478 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import static de.core_concepts.statemachine.JournalReader.*;
+
+/**
+ * An append-only journal of the events a statemachine accepted and the state changes they caused, see
+ * {@link AbstractStatemachine#getEventJournal()}. Objects are identified by a long id, events and states, which must be enums, by their
+ * ordinals. Every record is assigned a sequence number, which increases by one per record.
+ * <p>
+ * Records are appended to a buffer in memory, which a writer thread writes to the current segment file as a frame once the previous
+ * frame was written, so that a single write and fsync covers the records of many dispatches ("group commit"). A frame consists of a
+ * header, i.e. the length of its records, their number, the sequence of the first one and a CRC32 of them, followed by the records.
+ * Records take 11 bytes per event and 13 bytes per state change. Segment files are named after the sequence of their first record.
+ * A new segment is started when the current one exceeds the segment size.
+ * <p>
+ * When a journal is opened on a directory which already contains segments, it continues the last one after its last complete frame.
+ * A frame torn by a crash is cut off. Sequences continue at least from the one of the latest snapshot in the directory, see
+ * {@link JournalSnapshots}: a snapshot may be taken before the records it covers were forced to the disk, so records a crash lost
+ * may precede it, and their sequences must not be assigned again, as replaying from the snapshot would skip them.
+ */
+public class EventJournal implements AutoCloseable {
+
+    /**
+     * The default for the size at which a new segment is started.
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Determines when records are forced to the disk.
+     */
+    public enum FsyncPolicy {
+        /**
+         * Every frame is forced to the disk before the dispatches whose records it contains return.
+         */
+        ALWAYS,
+        /**
+         * Frames are forced to the disk periodically. Dispatches don't wait for their records to be written, so records of the last
+         * interval may be lost by a crash of the operating system.
+         */
+        INTERVAL,
+        /**
+         * Frames are written, but forcing them to the disk is left to the operating system.
+         */
+        NEVER
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(EventJournal.class);
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsAppended = lock.newCondition();
+    private final Condition bufferFreed = lock.newCondition();
+    private final Condition frameCommitted = lock.newCondition();
+    /* Records appended since the last frame was taken by the writer, guarded by lock */
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    private int pendingCount;
+    private long nextSequence;
+    private boolean closed;
+    private Throwable writeError;
+    /* The last sequence which was written, respectively forced to the disk with the policy ALWAYS */
+    private volatile long committedSequence;
+
+    /* Owned by the writer thread */
+    private ByteBuffer writing = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+    private FileChannel segment;
+    private long segmentBytes;
+    private long lastFsync = System.nanoTime();
+    private boolean unforced;
+    private volatile long frameCount;
+    private final Thread writer;
+
+    /**
+     * Opens a journal which forces every frame to the disk.
+     *
+     * @param directory The directory of the segment files. Created if it doesn't exist.
+     */
+    public EventJournal(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, FsyncPolicy.ALWAYS, Duration.ZERO);
+    }
+
+    /**
+     * @param directory     The directory of the segment files. Created if it doesn't exist.
+     * @param segmentSize   The size in bytes at which a new segment is started.
+     * @param fsyncPolicy   Determines when records are forced to the disk.
+     * @param fsyncInterval The interval in which records are forced to the disk, if the policy is INTERVAL.
+     * @throws UncheckedIOException If the journal can't be opened.
+     */
+    public EventJournal(Path directory, long segmentSize, FsyncPolicy fsyncPolicy, Duration fsyncInterval) {
+        Validate.notNull(directory, "directory can not be null.");
+        Validate.isTrue(segmentSize > 0, "segmentSize must be positive.");
+        Validate.notNull(fsyncPolicy, "fsyncPolicy can not be null.");
+        Validate.isTrue(fsyncPolicy != FsyncPolicy.INTERVAL || fsyncInterval != null && !fsyncInterval.isNegative()
+                && !fsyncInterval.isZero(), "fsyncInterval must be positive.");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = fsyncPolicy == FsyncPolicy.INTERVAL ? fsyncInterval.toNanos() : 0;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Opening the journal in " + directory + " failed.", e);
+        }
+        committedSequence = nextSequence - 1;
+        writer = new Thread(this::write, "statemachine-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Continues the last segment after its last valid frame, and the sequences after its last record or the latest snapshot.
+     */
+    private void recover() throws IOException {
+        List<Path> snapshots = JournalSnapshots.snapshots(directory);
+        nextSequence = snapshots.isEmpty() ? 0 : JournalSnapshots.sequenceOf(snapshots.get(snapshots.size() - 1));
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        JournalReader reader = new JournalReader(map(last));
+        while (reader.nextFrame(null)) {
+            // Skip to the end of the valid frames
+        }
+        segment = FileChannel.open(last, StandardOpenOption.WRITE);
+        if (segment.size() > reader.getPosition()) {
+            log.warn("Cutting off {} bytes of an incomplete frame at the end of journal segment {}", segment.size() - reader.getPosition(),
+                    last);
+            segment.truncate(reader.getPosition());
+        }
+        segment.position(reader.getPosition());
+        segmentBytes = reader.getPosition();
+        nextSequence = Math.max(nextSequence, reader.getNextSequence() >= 0 ? reader.getNextSequence() : firstSequenceOf(last));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Appends the record of an accepted event.
+     *
+     * @return The sequence of the record.
+     */
+    public long appendEvent(long objectId, int event) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = reserve(EVENT_RECORD_SIZE);
+            buffer.put(EVENT).putLong(objectId).putShort((short) event);
+            return appended();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the record of a state change.
+     *
+     * @return The sequence of the record.
+     */
+    public long appendStateChange(long objectId, int fromState, int toState) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = reserve(STATE_CHANGE_RECORD_SIZE);
+            buffer.put(STATE_CHANGE).putLong(objectId).putShort((short) fromState).putShort((short) toState);
+            return appended();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the buffer has room for the record.
+     */
+    private ByteBuffer reserve(int recordSize) {
+        ensureWritable();
+        while (pending.remaining() < recordSize) {
+            bufferFreed.awaitUninterruptibly();
+            ensureWritable();
+        }
+        return pending;
+    }
+
+    private long appended() {
+        if (pendingCount++ == 0) {
+            recordsAppended.signal();
+        }
+        return nextSequence++;
+    }
+
+    private void ensureWritable() {
+        if (writeError != null) {
+            throw new IllegalStateException("Writing the journal failed.", writeError);
+        } else if (closed) {
+            throw new IllegalStateException("The journal is closed.");
+        }
+    }
+
+    /**
+     * Waits until the record was forced to the disk, if the fsync policy is ALWAYS. Returns immediately otherwise.
+     *
+     * @throws IllegalStateException If writing the journal failed.
+     */
+    public void awaitDurable(long sequence) {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            awaitCommitted(sequence);
+        }
+    }
+
+    /**
+     * Waits until the record was written, respectively forced to the disk if the fsync policy is ALWAYS.
+     *
+     * @throws IllegalStateException If writing the journal failed.
+     */
+    public void awaitCommitted(long sequence) {
+        if (committedSequence >= sequence) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (committedSequence < sequence) {
+                if (writeError != null) {
+                    throw new IllegalStateException("Writing the journal failed.", writeError);
+                }
+                frameCommitted.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The last sequence which was written, respectively forced to the disk if the fsync policy is ALWAYS. -1 if there is none.
+     */
+    public long getCommittedSequence() {
+        return committedSequence;
+    }
+
+    /**
+     * @return The sequence the next record will be assigned.
+     */
+    public long getNextSequence() {
+        lock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of frames written since the journal was opened. The fewer frames per record, the more dispatches shared a
+     * write.
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Deletes the segments which contain only records before the given sequence, e.g. as they are covered by a snapshot. The current
+     * segment is never deleted.
+     *
+     * @return The number of segments deleted.
+     * @throws UncheckedIOException If a segment can't be deleted.
+     */
+    public int deleteSegmentsBefore(long sequence) {
+        List<Path> segments = segments(directory);
+        int deleted = 0;
+        // A segment ends where the next one starts
+        for (int i = 0; i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= sequence; i++) {
+            try {
+                Files.delete(segments.get(i));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Deleting the journal segment " + segments.get(i) + " failed.", e);
+            }
+            deleted++;
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} journal segments before sequence {}", deleted, sequence);
+        }
+        return deleted;
+    }
+
+    /**
+     * Takes the pending records as a frame, writes it and forces it to the disk according to the fsync policy, until the journal is
+     * closed and all records are written.
+     */
+    private void write() {
+        try {
+            while (true) {
+                int recordCount;
+                long firstSequence;
+                lock.lock();
+                try {
+                    while (pendingCount == 0 && !closed) {
+                        if (unforced && fsyncPolicy == FsyncPolicy.INTERVAL) {
+                            long untilFsync = fsyncIntervalNanos - (System.nanoTime() - lastFsync);
+                            if (untilFsync <= 0) {
+                                break;
+                            }
+                            recordsAppended.awaitNanos(untilFsync);
+                        } else {
+                            recordsAppended.await();
+                        }
+                    }
+                    if (pendingCount == 0 && closed) {
+                        break;
+                    }
+                    recordCount = pendingCount;
+                    firstSequence = nextSequence - recordCount;
+                    ByteBuffer taken = pending;
+                    pending = writing;
+                    writing = taken;
+                    pendingCount = 0;
+                    bufferFreed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                if (recordCount > 0) {
+                    writeFrame(recordCount, firstSequence);
+                }
+                if (fsyncPolicy == FsyncPolicy.ALWAYS
+                        || fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastFsync >= fsyncIntervalNanos) {
+                    force();
+                }
+                if (recordCount > 0) {
+                    lock.lock();
+                    try {
+                        committedSequence = firstSequence + recordCount - 1;
+                        frameCount++;
+                        frameCommitted.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+            if (segment != null) {
+                if (fsyncPolicy != FsyncPolicy.NEVER) {
+                    force();
+                }
+                segment.close();
+            }
+        } catch (Throwable e) {
+            log.error("Writing the journal in {} failed.", directory, e);
+            // Fail the dispatches waiting for their records and refuse further ones
+            lock.lock();
+            try {
+                writeError = e;
+                closed = true;
+                bufferFreed.signalAll();
+                frameCommitted.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            closeSegmentQuietly();
+            if (e instanceof java.lang.Error) {
+                throw (java.lang.Error) e;
+            }
+        }
+    }
+
+    private void closeSegmentQuietly() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Closing the journal segment in {} failed.", directory, e);
+            }
+        }
+    }
+
+    private void writeFrame(int recordCount, long firstSequence) throws IOException {
+        writing.flip();
+        if (segment == null || segmentBytes > 0 && segmentBytes + FRAME_HEADER_SIZE + writing.remaining() > segmentSize) {
+            startSegment(firstSequence);
+        }
+        crc.reset();
+        crc.update(writing.duplicate());
+        frameHeader.clear();
+        frameHeader.putInt(writing.remaining()).putInt(recordCount).putLong(firstSequence).putInt((int) crc.getValue()).flip();
+        long frameSize = FRAME_HEADER_SIZE + writing.remaining();
+        ByteBuffer[] frame = {frameHeader, writing};
+        while (frameHeader.hasRemaining() || writing.hasRemaining()) {
+            segment.write(frame);
+        }
+        segmentBytes += frameSize;
+        writing.clear();
+        unforced = true;
+    }
+
+    private void startSegment(long firstSequence) throws IOException {
+        if (segment != null) {
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                force();
+            }
+            segment.close();
+        }
+        segment = FileChannel.open(directory.resolve(segmentName(firstSequence)), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        segmentBytes = 0;
+    }
+
+    private void force() throws IOException {
+        if (unforced) {
+            segment.force(false);
+            unforced = false;
+        }
+        lastFsync = System.nanoTime();
+    }
+
+    /**
+     * Writes all appended records and closes the current segment. Waits up to the given time for the writer to finish, i.e. doesn't
+     * wait if the timeout isn't positive.
+     *
+     * @return True if all records were written.
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            recordsAppended.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (timeout > 0) {
+            // Thread#join waits forever for 0 milliseconds
+            writer.join(Math.max(1, unit.toMillis(timeout)));
+        }
+        return !writer.isAlive() && writeError == null;
+    }
+
+    /**
+     * Writes all appended records and closes the current segment.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!close(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Writing the journal failed.", writeError);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while closing the journal.", e);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A pre-allocated ring of slots through which producers hand events over to consumer threads, which send them to a statemachine. Unlike
+ * a queue, publishing an event doesn't allocate: producers claim a sequence number, write the event into the slot of that sequence and
+ * publish it. Consumers process all published slots available at once as a batch, and only then report their progress.
+ * <p>
+ * Each object is assigned to one of the consumers by its key, see {@link AbstractStatemachine#getObjectKey(Object)}. Events for the same
+ * object are thus processed by the same consumer in the order they were published, while different objects are processed in parallel.
+ * Any number of threads may publish concurrently. If the ring is full, publishing waits until the slowest consumer frees a slot.
+ * <p>
+ * Slots keep their references until they are overwritten, so up to bufferSize events, objects and event data stay reachable.
+ *
+ * @param <O> The object type of the statemachine.
+ */
+public class EventRingBuffer<O> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EventRingBuffer.class);
+
+    /* The partition of slots which were claimed during a shutdown and are skipped by all consumers */
+    private static final int NO_PARTITION = -1;
+
+    private final AbstractStatemachine<?, ?, O> statemachine;
+    private final Slot[] slots;
+    private final int mask;
+    private final int indexShift;
+    /* Per slot, the round of the sequence which was published into it last */
+    private final AtomicIntegerArray published;
+    /* The next sequence to be claimed by a producer */
+    private final AtomicLong nextSequence = new AtomicLong();
+    /* The lowest sequence processed by all consumers, as seen by a producer the last time */
+    private final AtomicLong cachedGatingSequence = new AtomicLong(-1);
+    private final Consumer[] consumers;
+    private final WaitStrategy waitStrategy;
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a ring with a single consumer which sleeps while it waits for events.
+     *
+     * @param statemachine The statemachine to send the events to.
+     * @param bufferSize   The number of slots. Must be a power of two.
+     */
+    public EventRingBuffer(AbstractStatemachine<?, ?, O> statemachine, int bufferSize) {
+        this(statemachine, bufferSize, 1, WaitStrategy.sleeping());
+    }
+
+    /**
+     * @param statemachine  The statemachine to send the events to.
+     * @param bufferSize    The number of slots. Must be a power of two.
+     * @param consumerCount The number of consumer threads, which are named statemachine-ring-0, statemachine-ring-1 and so on. They
+     *                      are daemon threads, so close the ring in order to process all published events before the JVM exits.
+     * @param waitStrategy  Determines how consumers wait for events, and producers for free slots.
+     */
+    public EventRingBuffer(AbstractStatemachine<?, ?, O> statemachine, int bufferSize, int consumerCount, WaitStrategy waitStrategy) {
+        Validate.notNull(statemachine, "statemachine can not be null.");
+        Validate.isTrue(bufferSize > 0 && Integer.bitCount(bufferSize) == 1, "bufferSize must be a power of two.");
+        Validate.isTrue(consumerCount > 0, "consumerCount must be positive.");
+        Validate.notNull(waitStrategy, "waitStrategy can not be null.");
+        this.statemachine = statemachine;
+        this.waitStrategy = waitStrategy;
+        this.slots = new Slot[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.published = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            published.set(i, -1);
+        }
+
+        this.consumers = new Consumer[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            consumers[i] = new Consumer(i);
+        }
+        for (Consumer consumer : consumers) {
+            consumer.thread = new Thread(() -> consume(consumer), "statemachine-ring-" + consumer.index);
+            consumer.thread.setDaemon(true);
+            consumer.thread.start();
+        }
+    }
+
+    /**
+     * @see #publish(Object, Object, Object)
+     */
+    public void publish(Object event, Object object) {
+        publish(event, object, null);
+    }
+
+    /**
+     * Publishes an event, which is processed like by {@link Statemachine#sendEvent(Object, Object, Object)}. Waits while the ring is
+     * full.
+     *
+     * @throws RejectedExecutionException If the ring was shut down.
+     */
+    public void publish(Object event, Object object, Object eventData) {
+        int partition = partitionOf(object);
+        long sequence = claim(1);
+        write(sequence, event, object, eventData, partition);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes the same event for each of the given objects. Slots are claimed for up to bufferSize objects at once, so that producers
+     * contend only once per batch.
+     *
+     * @throws RejectedExecutionException If the ring was shut down.
+     */
+    public void publish(Object event, Collection<?> objects) {
+        Object[] remaining = objects.toArray();
+        int[] partitions = new int[remaining.length];
+        for (int i = 0; i < remaining.length; i++) {
+            partitions[i] = partitionOf(remaining[i]);
+        }
+        for (int offset = 0; offset < remaining.length; offset += slots.length) {
+            int batchSize = Math.min(slots.length, remaining.length - offset);
+            long first = claim(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                write(first + i, event, remaining[offset + i], null, partitions[offset + i]);
+            }
+            for (int i = 0; i < batchSize; i++) {
+                publish(first + i);
+            }
+        }
+    }
+
+    private int partitionOf(Object object) {
+        Class<O> objectType = statemachine.getDefinition().getObjectType();
+        if (!objectType.isInstance(object)) {
+            throw new IllegalArgumentException(String.format("The object passed must be of type %s but was %s", objectType,
+                    object == null ? null : object.getClass()));
+        }
+        Object key = statemachine.getObjectKey(objectType.cast(object));
+        int hash = key == object ? System.identityHashCode(object) : key == null ? 0 : key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), consumers.length);
+    }
+
+    /**
+     * Claims the given number of consecutive sequences and waits until their slots were processed by all consumers.
+     *
+     * @return The first claimed sequence.
+     */
+    private long claim(int count) {
+        if (shutdown) {
+            throw new RejectedExecutionException("The EventRingBuffer was shut down.");
+        }
+        long first = nextSequence.getAndAdd(count);
+        long wrapPoint = first + count - 1 - slots.length;
+        if (wrapPoint > cachedGatingSequence.get()) {
+            long gatingSequence;
+            for (int attempt = 0; wrapPoint > (gatingSequence = getMinimumConsumerSequence()); attempt++) {
+                waitStrategy.idle(attempt);
+            }
+            cachedGatingSequence.set(gatingSequence);
+        }
+        // Consumers don't terminate before the sequences claimed so far are published, so skip them if shut down meanwhile
+        if (shutdown) {
+            for (long sequence = first; sequence < first + count; sequence++) {
+                write(sequence, null, null, null, NO_PARTITION);
+                publish(sequence);
+            }
+            throw new RejectedExecutionException("The EventRingBuffer was shut down.");
+        }
+        return first;
+    }
+
+    private void write(long sequence, Object event, Object object, Object eventData, int partition) {
+        Slot slot = slots[(int) sequence & mask];
+        slot.event = event;
+        slot.object = object;
+        slot.eventData = eventData;
+        slot.partition = partition;
+    }
+
+    private void publish(long sequence) {
+        // The ordered write makes the slot's fields visible to consumers which see the round
+        published.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    private long getMinimumConsumerSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Processes batches of published slots until the ring is shut down and all claimed sequences are processed.
+     */
+    private void consume(Consumer consumer) {
+        long next = consumer.sequence.get() + 1;
+        int attempt = 0;
+        while (true) {
+            long end = next;
+            while (isPublished(end) && end - next < slots.length) {
+                end++;
+            }
+            if (end > next) {
+                for (long sequence = next; sequence < end; sequence++) {
+                    Slot slot = slots[(int) sequence & mask];
+                    if (slot.partition == consumer.index) {
+                        dispatch(slot);
+                    }
+                }
+                // Reporting progress once per batch frees the slots for producers
+                consumer.sequence.lazySet(end - 1);
+                next = end;
+                attempt = 0;
+            } else if (shutdown && next >= nextSequence.get()) {
+                return;
+            } else {
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+
+    private void dispatch(Slot slot) {
+        try {
+            statemachine.sendEvent(slot.event, slot.object, slot.eventData);
+            processed.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("Processing event {} for object {} failed.", slot.event, slot.object, e);
+        }
+    }
+
+    public int getBufferSize() {
+        return slots.length;
+    }
+
+    /**
+     * @return The number of events which were published but not yet processed by all consumers.
+     */
+    public long getBacklog() {
+        return nextSequence.get() - 1 - getMinimumConsumerSequence();
+    }
+
+    /**
+     * @return The number of events which were processed without sendEvent throwing an exception.
+     */
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    /**
+     * @return The number of events for which sendEvent threw an exception. The exceptions are logged.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Stops accepting events. Events which were already published are processed, afterwards the consumer threads terminate. Events
+     * which are published concurrently to the shutdown are either processed or rejected.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Blocks until all consumers processed their remaining events after a shutdown, or the timeout elapsed.
+     *
+     * @return True if all consumer threads terminated.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Consumer consumer : consumers) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining > 0) {
+                consumer.thread.join(remaining);
+            }
+            if (consumer.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shuts down and waits until all published events are processed. If the calling thread is interrupted, it stops waiting and keeps
+     * its interrupt status.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            for (Consumer consumer : consumers) {
+                consumer.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Determines how a thread waits for events to be published, respectively for slots to be freed. It is called repeatedly while the
+     * thread waits, so it decides between latency and CPU usage.
+     */
+    @FunctionalInterface
+    public interface WaitStrategy {
+
+        /**
+         * @param attempt How often the thread checked in vain during the current wait, starting at 0.
+         */
+        void idle(int attempt);
+
+        /**
+         * @return A strategy which keeps checking. Lowest latency, but occupies a core per waiting thread.
+         */
+        static WaitStrategy busySpin() {
+            return attempt -> {
+            };
+        }
+
+        /**
+         * @return A strategy which yields to other threads after spinning for a while. Low latency, if there are more cores than
+         * consumers and producers.
+         */
+        static WaitStrategy yielding() {
+            return attempt -> {
+                if (attempt >= 100) {
+                    Thread.yield();
+                }
+            };
+        }
+
+        /**
+         * @return A strategy which spins, then yields and finally sleeps in steps of up to a millisecond. Idle consumers hardly use any
+         * CPU, at the price of a higher latency once events arrive again.
+         */
+        static WaitStrategy sleeping() {
+            return attempt -> {
+                if (attempt >= 200) {
+                    LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(attempt - 200, 10)));
+                } else if (attempt >= 100) {
+                    Thread.yield();
+                }
+            };
+        }
+    }
+
+    /**
+     * A reusable slot of the ring.
+     */
+    private static final class Slot {
+
+        private Object event;
+        private Object object;
+        private Object eventData;
+        /* The index of the consumer which processes the slot */
+        private int partition;
+    }
+
+    /**
+     * A consumer thread along with the last sequence it processed.
+     */
+    private static final class Consumer {
+
+        private final int index;
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private Thread thread;
+
+        private Consumer(int index) {
+            this.index = index;
+        }
+    }
+}
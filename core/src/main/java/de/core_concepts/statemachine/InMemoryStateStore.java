@@ -0,0 +1,62 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * A StateStore which holds the states in a ConcurrentHashMap. The ids must implement equals and hashCode.
+ *
+ * @param <K> The type of the object ids.
+ * @param <S> The state type.
+ */
+public class InMemoryStateStore<K, S> implements StateStore<K, S> {
+
+    private final ConcurrentMap<K, S> states;
+
+    public InMemoryStateStore() {
+        this.states = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param expectedSize The number of objects the store is expected to hold, in order to avoid resizing.
+     */
+    public InMemoryStateStore(int expectedSize) {
+        this.states = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    @Override
+    public S getState(K id) {
+        return states.get(id);
+    }
+
+    @Override
+    public void setState(K id, S state) {
+        Validate.notNull(state, "state can not be null.");
+        states.put(id, state);
+    }
+
+    @Override
+    public boolean compareAndSetState(K id, S expectedState, S newState) {
+        Validate.notNull(newState, "newState can not be null.");
+        return expectedState == null ? states.putIfAbsent(id, newState) == null : states.replace(id, expectedState, newState);
+    }
+
+    @Override
+    public boolean removeState(K id) {
+        return states.remove(id) != null;
+    }
+
+    @Override
+    public long size() {
+        return states.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super S> consumer) {
+        states.forEach(consumer);
+    }
+}
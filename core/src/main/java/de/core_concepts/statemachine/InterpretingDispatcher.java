@@ -0,0 +1,54 @@
+package de.core_concepts.statemachine;
+
+
+/**
+ * The default Dispatcher, which looks up guards and actions in arrays and invokes them through a single call site each.
+ *
+ * @param <S> The type defining the states the Statemachine knows of.
+ * @param <E> The type defining the events the Statemachine listens to.
+ * @param <O> The object type which is put on the context for actions to work with.
+ */
+final class InterpretingDispatcher<S, E, O> extends Dispatcher<S, E, O> {
+
+    InterpretingDispatcher(StatemachineDefinition<S, E, O> definition) {
+        super(definition);
+    }
+
+    @Override
+    protected Transition<S, E, O>[] getTransitions(S state, E event) {
+        return definition.getTransitions(state, event);
+    }
+
+    @Override
+    protected boolean testGuard(int transition, Context<O> context) {
+        return guards[transition].test(context);
+    }
+
+    @Override
+    protected void executeAction(int transition, Context<O> context) {
+        execute(actions[transition], context);
+    }
+
+    @Override
+    protected void executeOnEntryAction(int state, Context<O> context) {
+        execute(onEntryActions[state], context);
+    }
+
+    @Override
+    protected void executeExitValidator(int state, Context<O> context) {
+        execute(exitValidators[state], context);
+    }
+
+    @Override
+    protected void executeGenericAction(int lifecycleEvent, Context<O> context) {
+        if (lifecycleEvent < genericActions.length) {
+            execute(genericActions[lifecycleEvent], context);
+        }
+    }
+
+    private void execute(Action<O> action, Context<O> context) {
+        if (action != null) {
+            action.execute(context);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package de.core_concepts.statemachine;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the frames of a journal segment written by EventJournal, see there for the format. Reading stops at the first frame which is
+ * incomplete or whose checksum doesn't match, i.e. at the end of the segment or at a frame which was torn by a crash.
+ */
+final class JournalReader {
+
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    /* Payload length, record count, sequence of the first record, CRC32 of the payload */
+    static final int FRAME_HEADER_SIZE = 20;
+    static final byte EVENT = 1;
+    static final byte STATE_CHANGE = 2;
+    /* Type, object id, event */
+    static final int EVENT_RECORD_SIZE = 11;
+    /* Type, object id, from-state, to-state */
+    static final int STATE_CHANGE_RECORD_SIZE = 13;
+
+    private final ByteBuffer buffer;
+    private final boolean verifyChecksums;
+    private final CRC32 crc = new CRC32();
+    private long nextSequence = -1;
+
+    JournalReader(ByteBuffer buffer) {
+        this(buffer, true);
+    }
+
+    /**
+     * @param verifyChecksums False in order to skip verifying the checksums of frames, which were already verified, e.g. by another
+     *                        reader of the same segment.
+     */
+    JournalReader(ByteBuffer buffer, boolean verifyChecksums) {
+        this.buffer = buffer;
+        this.verifyChecksums = verifyChecksums;
+    }
+
+    /**
+     * Receives the records of a journal. Events and states are identified by their ordinals.
+     */
+    interface RecordHandler {
+
+        void event(long sequence, long objectId, int event);
+
+        void stateChange(long sequence, long objectId, int fromState, int toState);
+    }
+
+    /**
+     * Reads the next frame and passes its records to the handler.
+     *
+     * @param handler Receives the records, or null in order to skip them.
+     * @return False if there is no valid frame left.
+     */
+    boolean nextFrame(RecordHandler handler) {
+        int position = buffer.position();
+        if (buffer.limit() - position < FRAME_HEADER_SIZE) {
+            return false;
+        }
+        int length = buffer.getInt(position);
+        int recordCount = buffer.getInt(position + 4);
+        long firstSequence = buffer.getLong(position + 8);
+        int checksum = buffer.getInt(position + 16);
+        int payload = position + FRAME_HEADER_SIZE;
+        if (length <= 0 || recordCount <= 0 || length > buffer.limit() - payload) {
+            return false;
+        }
+        if (verifyChecksums) {
+            ByteBuffer frame = buffer.duplicate();
+            frame.limit(payload + length).position(payload);
+            crc.reset();
+            crc.update(frame);
+            if ((int) crc.getValue() != checksum) {
+                return false;
+            }
+        }
+        if (handler != null) {
+            int offset = payload;
+            for (long sequence = firstSequence; sequence < firstSequence + recordCount; sequence++) {
+                long objectId = buffer.getLong(offset + 1);
+                if (buffer.get(offset) == EVENT) {
+                    handler.event(sequence, objectId, buffer.getShort(offset + 9));
+                    offset += EVENT_RECORD_SIZE;
+                } else {
+                    handler.stateChange(sequence, objectId, buffer.getShort(offset + 9), buffer.getShort(offset + 11));
+                    offset += STATE_CHANGE_RECORD_SIZE;
+                }
+            }
+        }
+        buffer.position(payload + length);
+        nextSequence = firstSequence + recordCount;
+        return true;
+    }
+
+    /**
+     * @return The offset after the last valid frame read.
+     */
+    int getPosition() {
+        return buffer.position();
+    }
+
+    /**
+     * @return The sequence following the last record read, or -1 if no frame was read.
+     */
+    long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Maps the segment into memory for reading.
+     */
+    static ByteBuffer map(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Reading the journal segment " + segment + " failed.", e);
+        }
+    }
+
+    /**
+     * @return The segments of the journal in the directory, ordered by their first sequence.
+     */
+    static List<Path> segments(Path directory) {
+        List<Path> segments = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+                stream.forEach(segments::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Listing the journal segments in " + directory + " failed.", e);
+            }
+        }
+        // The names are zero-padded, so they sort like the sequences
+        Collections.sort(segments);
+        return segments;
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+
+    static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,245 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongFunction;
+
+/**
+ * Rebuilds the states of objects from an EventJournal, e.g. after a crash. Either the recorded state changes are applied to a
+ * StateStore, which doesn't execute any actions, or the recorded events are sent to a statemachine again, which executes its actions.
+ * <p>
+ * The segments are memory-mapped and read in parallel: the objects are divided into as many partitions as the replay's parallelism by
+ * their id, and each partition is replayed by a task of its own, which reads all segments but applies only the records of its objects.
+ * The records of an object are thus applied in the order they were recorded, while different objects are replayed in parallel. The
+ * checksums of the frames are verified once beforehand, in parallel per segment. Replay stops at the first invalid frame.
+ * <p>
+ * The journal must not be written while it is replayed.
+ */
+public class JournalReplay {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalReplay.class);
+
+    private final Path directory;
+    private final Executor executor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long fromSequence;
+
+    /**
+     * Creates a replay which runs on the common ForkJoinPool.
+     *
+     * @param directory The directory of the journal's segments.
+     */
+    public JournalReplay(Path directory) {
+        this(directory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param directory The directory of the journal's segments.
+     * @param executor  The executor which runs the partitions.
+     */
+    public JournalReplay(Path directory, Executor executor) {
+        Validate.notNull(directory, "directory can not be null.");
+        Validate.notNull(executor, "executor can not be null.");
+        this.directory = directory;
+        this.executor = executor;
+    }
+
+    /**
+     * @param parallelism The number of partitions replayed in parallel. Defaults to the number of processors.
+     */
+    public JournalReplay withParallelism(int parallelism) {
+        Validate.isTrue(parallelism > 0, "parallelism must be positive.");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param fromSequence The first sequence to be replayed, e.g. the one following the records covered by a snapshot. Segments
+     *                     which contain only earlier records aren't read. Defaults to 0.
+     */
+    public JournalReplay fromSequence(long fromSequence) {
+        Validate.isTrue(fromSequence >= 0, "fromSequence must not be negative.");
+        this.fromSequence = fromSequence;
+        return this;
+    }
+
+    /**
+     * Applies the to-state of each recorded state change to the store. No actions are executed.
+     *
+     * @param stateType  The state enum of the statemachine which wrote the journal.
+     * @param stateStore The store to apply the states to.
+     */
+    public <S extends Enum<S>> ReplayResult replayStateChanges(Class<S> stateType, StateStore<Long, S> stateStore) {
+        Validate.notNull(stateType, "stateType can not be null.");
+        Validate.notNull(stateStore, "stateStore can not be null.");
+        S[] states = stateType.getEnumConstants();
+        return replay(partition -> new Partition(partition) {
+            @Override
+            public void stateChange(long sequence, long objectId, int fromState, int toState) {
+                if (sequence >= fromSequence && owns(objectId)) {
+                    stateStore.setState(objectId, states[toState]);
+                    applied++;
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends each recorded event to the statemachine again, like {@link Statemachine#sendEvent(Object, Object)}, so its actions are
+     * executed. Use a statemachine whose actions have no effects beyond the state of the objects, i.e. which only rebuild it, and which
+     * doesn't journal to the replayed journal. Exceptions of single events are counted as failed, and the replay goes on.
+     *
+     * @param statemachine The statemachine to send the events to.
+     * @param objectForId  Provides the object of an id, e.g. a new instance with that id.
+     */
+    public <E, O> ReplayResult replayEvents(AbstractStatemachine<?, E, O> statemachine, LongFunction<? extends O> objectForId) {
+        Validate.notNull(statemachine, "statemachine can not be null.");
+        Validate.notNull(objectForId, "objectForId can not be null.");
+        Validate.isTrue(statemachine.eventType.isEnum(), "The events of the statemachine must be enums.");
+        E[] events = statemachine.eventType.getEnumConstants();
+        return replay(partition -> new Partition(partition) {
+            @Override
+            public void event(long sequence, long objectId, int event) {
+                if (sequence >= fromSequence && owns(objectId)) {
+                    RuntimeException error = statemachine.sendEventAndReportError(new BatchEvent(events[event], objectForId.apply(objectId)));
+                    if (error == null) {
+                        applied++;
+                    } else {
+                        failed++;
+                    }
+                }
+            }
+        });
+    }
+
+    private ReplayResult replay(PartitionFactory partitionFactory) {
+        long start = System.nanoTime();
+        List<ByteBuffer> segments = mapValidSegments();
+        List<Partition> partitions = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            Partition partition = partitionFactory.create(i);
+            partitions.add(partition);
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (ByteBuffer segment : segments) {
+                    JournalReader reader = new JournalReader(segment.duplicate(), false);
+                    while (reader.nextFrame(partition)) {
+                        // The partition applies the records of its objects
+                    }
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        long applied = partitions.stream().mapToLong(partition -> partition.applied).sum();
+        long failed = partitions.stream().mapToLong(partition -> partition.failed).sum();
+        ReplayResult result = new ReplayResult(applied, failed, nextSequence(segments), System.nanoTime() - start);
+        log.info("Replayed journal in {}: {}, {} records per second", directory, result, String.format("%.1f", result.getThroughput()));
+        return result;
+    }
+
+    /**
+     * Maps the segments which contain records from fromSequence on and verifies their frames in parallel. A segment is cut after its
+     * last valid frame. The segments following an invalid frame are dropped, as their records aren't contiguous.
+     */
+    private List<ByteBuffer> mapValidSegments() {
+        List<Path> paths = JournalReader.segments(directory);
+        List<Path> relevant = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            if (i + 1 == paths.size() || JournalReader.firstSequenceOf(paths.get(i + 1)) > fromSequence) {
+                relevant.add(paths.get(i));
+            }
+        }
+        List<CompletableFuture<ByteBuffer>> verified = new ArrayList<>();
+        for (Path path : relevant) {
+            verified.add(CompletableFuture.supplyAsync(() -> {
+                ByteBuffer segment = JournalReader.map(path);
+                JournalReader reader = new JournalReader(segment.duplicate());
+                while (reader.nextFrame(null)) {
+                    // Verify all frames
+                }
+                segment.limit(reader.getPosition());
+                return segment;
+            }, executor));
+        }
+        List<ByteBuffer> segments = new ArrayList<>();
+        for (int i = 0; i < relevant.size(); i++) {
+            ByteBuffer segment = verified.get(i).join();
+            segments.add(segment);
+            if (segment.limit() < segment.capacity()) {
+                if (i + 1 < relevant.size()) {
+                    log.warn("Journal segment {} contains an invalid frame. Replay stops there and ignores {} following segments.",
+                            relevant.get(i), relevant.size() - i - 1);
+                }
+                break;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @return The sequence following the last record of the segments, or fromSequence if they contain none.
+     */
+    private long nextSequence(List<ByteBuffer> segments) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            JournalReader reader = new JournalReader(segments.get(i).duplicate(), false);
+            while (reader.nextFrame(null)) {
+                // Skip to the last frame
+            }
+            if (reader.getNextSequence() >= 0) {
+                return Math.max(fromSequence, reader.getNextSequence());
+            }
+        }
+        return fromSequence;
+    }
+
+    @FunctionalInterface
+    private interface PartitionFactory {
+
+        Partition create(int partition);
+    }
+
+    /**
+     * Applies the records of the objects whose ids hash to its partition. Confined to the task replaying it.
+     */
+    private abstract class Partition implements JournalReader.RecordHandler {
+
+        private final int partition;
+        protected long applied;
+        protected long failed;
+
+        private Partition(int partition) {
+            this.partition = partition;
+        }
+
+        protected boolean owns(long objectId) {
+            long hash = objectId * 0x9E3779B97F4A7C15L;
+            return (int) ((hash ^ (hash >>> 32)) & Integer.MAX_VALUE) % parallelism == partition;
+        }
+
+        @Override
+        public void event(long sequence, long objectId, int event) {
+        }
+
+        @Override
+        public void stateChange(long sequence, long objectId, int fromState, int toState) {
+        }
+    }
+}
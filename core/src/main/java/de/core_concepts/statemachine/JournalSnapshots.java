@@ -0,0 +1,286 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Writes snapshots of the states held by a StateStore next to the segments of an EventJournal, and deletes the segments and snapshots
+ * which are covered by a newer snapshot, so that the journal doesn't grow without bound. On startup {@link #restore(Path, Class,
+ * StateStore)} loads the latest snapshot and replays only the journal's records which followed it.
+ * <p>
+ * A snapshot is written while events are dispatched: it is taken from the sequence the journal will assign next, before the store is
+ * read. As AbstractStatemachine updates the store before it records a state change, the store already holds every state change before
+ * that sequence, while it may or may not hold later ones. Replaying the state changes from that sequence on, in the order they were
+ * recorded, therefore yields the latest state of every object, regardless of what the snapshot caught of them. Neither dispatch nor the
+ * store is blocked beyond what a read of the store implies. This applies to replaying state changes only, replaying events from a
+ * snapshot might apply some of them twice.
+ * <p>
+ * A snapshot doesn't wait for the records before its sequence to be forced to the disk. If a crash loses some of them, the snapshot
+ * still holds their state changes, and an EventJournal opened on the directory continues with the snapshot's sequence, so that the
+ * records which follow are replayed on top of it.
+ * <p>
+ * A snapshot consists of a header, followed by fixed-width records of the id and the ordinal of the state of each object and a
+ * checksum. It is written to a temporary file, forced to the disk and renamed, so a snapshot file is always complete.
+ *
+ * @param <S> The state type.
+ */
+public class JournalSnapshots<S extends Enum<S>> implements AutoCloseable {
+
+    static final String SUFFIX = ".snapshot";
+    static final int MAGIC = 0x534D534E;
+    static final int VERSION = 1;
+    /* magic, version, number of states, reserved, sequence, number of records */
+    static final int HEADER_SIZE = 32;
+    /* object id, state ordinal */
+    static final int RECORD_SIZE = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(JournalSnapshots.class);
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final EventJournal journal;
+    private final Class<S> stateType;
+    private final StateStore<Long, S> stateStore;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param journal    The journal the state changes of the store are recorded in. The snapshots are written to its directory.
+     * @param stateType  The state enum of the statemachine which writes the journal.
+     * @param stateStore The store holding the states of the objects.
+     */
+    public JournalSnapshots(EventJournal journal, Class<S> stateType, StateStore<Long, S> stateStore) {
+        Validate.notNull(journal, "journal can not be null.");
+        Validate.notNull(stateType, "stateType can not be null.");
+        Validate.notNull(stateStore, "stateStore can not be null.");
+        this.journal = journal;
+        this.stateType = stateType;
+        this.stateStore = stateStore;
+    }
+
+    /**
+     * Takes a snapshot at the given interval on a daemon thread of its own, until the JournalSnapshots are closed. Failed snapshots are
+     * logged and retried at the next interval.
+     */
+    public synchronized JournalSnapshots<S> scheduleEvery(Duration interval) {
+        Validate.notNull(interval, "interval can not be null.");
+        Validate.isTrue(!interval.isNegative() && !interval.isZero(), "interval must be positive.");
+        Validate.isTrue(scheduler == null, "Snapshots are already scheduled.");
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statemachine-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshot();
+            } catch (RuntimeException e) {
+                log.error("Taking a snapshot of the journal in {} failed.", journal.getDirectory(), e);
+            }
+        }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        return this;
+    }
+
+    /**
+     * Writes a snapshot of the store, then deletes the journal's segments and the snapshots it covers.
+     *
+     * @return The sequence of the snapshot, i.e. the first sequence which has to be replayed on top of it.
+     * @throws UncheckedIOException If the snapshot can't be written.
+     */
+    public synchronized long takeSnapshot() {
+        long start = System.nanoTime();
+        long sequence = journal.getNextSequence();
+        Path directory = journal.getDirectory();
+        Path file = directory.resolve(snapshotName(sequence));
+        Path temporary = directory.resolve(snapshotName(sequence) + ".tmp");
+        long count;
+        try {
+            count = write(temporary, sequence);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing the snapshot " + file + " failed.", e);
+        } finally {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                log.warn("Deleting the temporary snapshot {} failed.", temporary, e);
+            }
+        }
+        log.info("Wrote snapshot {} of {} objects in {} ms", file, count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        for (Path older : snapshots(directory)) {
+            if (sequenceOf(older) < sequence) {
+                try {
+                    Files.delete(older);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Deleting the snapshot " + older + " failed.", e);
+                }
+            }
+        }
+        journal.deleteSegmentsBefore(sequence);
+        return sequence;
+    }
+
+    private long write(Path temporary, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            CRC32 crc = new CRC32();
+            long[] count = new long[1];
+            channel.position(HEADER_SIZE);
+            stateStore.forEach((id, state) -> {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    flush(channel, buffer, crc);
+                }
+                buffer.putLong(id).putShort((short) state.ordinal());
+                count[0]++;
+            });
+            flush(channel, buffer, crc);
+            buffer.putInt((int) crc.getValue()).flip();
+            writeFully(channel, buffer);
+
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(stateType.getEnumConstants().length).putInt(0).putLong(sequence)
+                    .putLong(count[0]).flip();
+            channel.position(0);
+            writeFully(channel, buffer);
+            channel.force(true);
+            return count[0];
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        try {
+            writeFully(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Restores the states recorded in a journal directory: the latest snapshot, if there is one, is memory-mapped and loaded into the
+     * store, then the state changes recorded after it are replayed. Call it before the journal is opened for writing.
+     *
+     * @param directory  The directory of the journal's segments and snapshots.
+     * @param stateType  The state enum of the statemachine which wrote the journal.
+     * @param stateStore The store to load the states into.
+     * @return The outcome of the replay, whose applied count includes the states loaded from the snapshot.
+     * @throws UncheckedIOException  If the snapshot can't be read.
+     * @throws IllegalStateException If the snapshot is corrupt or was written for an enum with another number of constants.
+     */
+    public static <S extends Enum<S>> ReplayResult restore(Path directory, Class<S> stateType, StateStore<Long, S> stateStore) {
+        Validate.notNull(directory, "directory can not be null.");
+        Validate.notNull(stateType, "stateType can not be null.");
+        Validate.notNull(stateStore, "stateStore can not be null.");
+        long start = System.nanoTime();
+        List<Path> snapshots = snapshots(directory);
+        long sequence = 0;
+        long loaded = 0;
+        if (!snapshots.isEmpty()) {
+            Path snapshot = snapshots.get(snapshots.size() - 1);
+            sequence = sequenceOf(snapshot);
+            loaded = load(snapshot, stateType, stateStore);
+            log.info("Loaded snapshot {} of {} objects", snapshot, loaded);
+        }
+        ReplayResult tail = new JournalReplay(directory).fromSequence(sequence).replayStateChanges(stateType, stateStore);
+        return new ReplayResult(loaded + tail.getAppliedCount(), 0, tail.getNextSequence(), System.nanoTime() - start);
+    }
+
+    private static <S extends Enum<S>> long load(Path snapshot, Class<S> stateType, StateStore<Long, S> stateStore) {
+        S[] states = stateType.getEnumConstants();
+        ByteBuffer buffer = JournalReader.map(snapshot);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("The file " + snapshot + " isn't a snapshot.");
+        }
+        if (buffer.getInt(8) != states.length) {
+            throw new IllegalStateException("The snapshot " + snapshot + " was written for an enum with " + buffer.getInt(8)
+                    + " constants, but " + stateType.getName() + " has " + states.length + ".");
+        }
+        long count = buffer.getLong(24);
+        long end = HEADER_SIZE + count * RECORD_SIZE;
+        if (count < 0 || end + 4 != buffer.capacity()) {
+            throw new IllegalStateException("The snapshot " + snapshot + " is truncated.");
+        }
+        ByteBuffer records = buffer.duplicate();
+        records.position(HEADER_SIZE).limit((int) end);
+        CRC32 crc = new CRC32();
+        crc.update(records.duplicate());
+        if ((int) crc.getValue() != buffer.getInt((int) end)) {
+            throw new IllegalStateException("The checksum of the snapshot " + snapshot + " doesn't match.");
+        }
+        while (records.hasRemaining()) {
+            stateStore.setState(records.getLong(), states[records.getShort()]);
+        }
+        return count;
+    }
+
+    /**
+     * @return The snapshots of the directory, ordered by their sequence.
+     */
+    static List<Path> snapshots(Path directory) {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(snapshots::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Listing the snapshots in " + directory + " failed.", e);
+        }
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    static String snapshotName(long sequence) {
+        return String.format("%020d", sequence) + SUFFIX;
+    }
+
+    static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Stops taking scheduled snapshots, waiting for one in progress to finish.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = this.scheduler;
+            this.scheduler = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package de.core_concepts.statemachine;
 
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by zieglerch on 11.01.2016.
@@ -16,6 +17,9 @@ import java.util.LinkedList;
  */
 public class LifecycleEvent<T> {
 
+    /* The number of lifecycle events created so far. Must be declared before the constants, as they are counted on construction. */
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
     /* Statemachine#sendEvent was called. The data passed to sendEvent will be put on Context. */
     public static final LifecycleEvent<Object> EVENT_RECEIVED = new LifecycleEvent<>(Object.class);
     /* No transition was found on the current state for the given event. The event sent will be put on Context */
@@ -26,15 +30,56 @@ public class LifecycleEvent<T> {
     public static final LifecycleEvent<StateChange> SUCCESSFUL_STATE_CHANGE = new LifecycleEvent<>(StateChange.class);
     /* An error (usually in form of a caught exception) was raised during processing a state change. */
     public static final LifecycleEvent<Object> PROCESSING_ERROR = new LifecycleEvent<>(Object.class);
+    /* The event was discarded, as an event with the same id was processed recently. The id of the event will be put on Context. */
+    public static final LifecycleEvent<Object> DUPLICATE_EVENT = new LifecycleEvent<>(Object.class);
 
-    /* A list defining the order in which the lifecycle events occur during a state transition */
+    /**
+     * A list defining the order in which the lifecycle events occur during a state transition.
+     *
+     * @deprecated The order is read once while the class is initialised, see {@link #getRecency()}. Changing the list has no effect on
+     * {@link Context#getMostRecentData()}.
+     */
+    @Deprecated
     protected static final LinkedList<LifecycleEvent<?>> ORDERED_LIFECYCLE_EVENTS =
             new LinkedList<>(Arrays.asList(EVENT_RECEIVED, UNKNOWN_EVENT, VALIDATION_ERROR, SUCCESSFUL_STATE_CHANGE));
 
+    static {
+        int recency = 0;
+        for (LifecycleEvent<?> event : ORDERED_LIFECYCLE_EVENTS) {
+            event.recency = recency++;
+        }
+    }
+
     private final Class<T> type;
+    private final int ordinal;
+    /* Assigned once while the class is initialised, from the position in ORDERED_LIFECYCLE_EVENTS */
+    private int recency = -1;
 
     public LifecycleEvent(Class<T> type) {
         this.type = type;
+        this.ordinal = COUNT.getAndIncrement();
+    }
+
+    /**
+     * @return The number of lifecycle events created so far, i.e. one more than the highest ordinal.
+     */
+    static int getCount() {
+        return COUNT.get();
+    }
+
+    /**
+     * @return A number unique to this lifecycle event, assigned in the order of creation starting with 0. Used to index arrays.
+     */
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * @return The position of this event in ORDERED_LIFECYCLE_EVENTS. The higher the number, the later the event occurs during a state
+     * transition. -1 if this event is not part of ORDERED_LIFECYCLE_EVENTS.
+     */
+    int getRecency() {
+        return recency;
     }
 
     public Class<T> getType() {
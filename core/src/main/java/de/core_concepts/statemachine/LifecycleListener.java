@@ -0,0 +1,18 @@
+package de.core_concepts.statemachine;
+
+
+/**
+ * Observes the lifecycle events of every dispatch of a statemachine, e.g. in order to report them to an outer system, without being
+ * part of the statemachine's configuration like a generic action. See {@link AbstractStatemachine#addLifecycleListener(LifecycleListener)}.
+ *
+ * @param <O> The object type of the statemachine.
+ */
+@FunctionalInterface
+public interface LifecycleListener<O> {
+
+    /**
+     * Called on the dispatching thread right before the generic actions of the lifecycle event are executed. The data of the event is
+     * available by {@link Context#getDataFor(LifecycleEvent)}. The Context must not be kept beyond the call.
+     */
+    void onLifecycleEvent(LifecycleEvent<?> event, Context<O> context);
+}
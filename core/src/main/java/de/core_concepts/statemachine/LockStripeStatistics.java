@@ -0,0 +1,68 @@
+package de.core_concepts.statemachine;
+
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the contention on the lock stripes of a statemachine, see
+ * {@link AbstractStatemachine#getLockStripeStatistics()}. A stripe with a high share of contended acquisitions indicates either many
+ * concurrent events for the same objects or too few stripes.
+ */
+public final class LockStripeStatistics {
+
+    private final long[] acquisitions;
+    private final long[] contentions;
+    private final long[] waitNanos;
+
+    LockStripeStatistics(long[] acquisitions, long[] contentions, long[] waitNanos) {
+        this.acquisitions = acquisitions;
+        this.contentions = contentions;
+        this.waitNanos = waitNanos;
+    }
+
+    public int getStripeCount() {
+        return acquisitions.length;
+    }
+
+    /**
+     * @return How often the stripe was locked by a dispatch.
+     */
+    public long getAcquisitions(int stripe) {
+        return acquisitions[stripe];
+    }
+
+    /**
+     * @return How often a dispatch had to wait for the stripe, as it was locked by another thread.
+     */
+    public long getContentions(int stripe) {
+        return contentions[stripe];
+    }
+
+    /**
+     * @return The total time dispatches waited for the stripe.
+     */
+    public Duration getWaitTime(int stripe) {
+        return Duration.ofNanos(waitNanos[stripe]);
+    }
+
+    /**
+     * @return The number of contended acquisitions of all stripes.
+     */
+    public long getTotalContentions() {
+        long total = 0;
+        for (long contention : contentions) {
+            total += contention;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        long total = 0;
+        for (long acquisition : acquisitions) {
+            total += acquisition;
+        }
+        return "LockStripeStatistics(stripes=" + acquisitions.length + ", acquisitions=" + total + ", contentions=" + getTotalContentions()
+                + ")";
+    }
+}
@@ -0,0 +1,62 @@
+package de.core_concepts.statemachine;
+
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks, one of which is assigned to every object by the hash code of its key. Used by AbstractStatemachine in
+ * order to serialize dispatches for the same object. Objects whose keys share a stripe are serialized as well, so contention decreases
+ * with the number of stripes.
+ */
+final class LockStripes {
+
+    private final Stripe[] stripes;
+
+    LockStripes(int stripeCount) {
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Blocks until the stripe of the key's hash code is locked. Records whether another thread held it and for how long this thread
+     * waited.
+     *
+     * @return The lock, which must be unlocked by the caller.
+     */
+    ReentrantLock lock(int hash) {
+        Stripe stripe = stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+        if (!stripe.tryLock()) {
+            long start = System.nanoTime();
+            stripe.lock();
+            stripe.contentions.increment();
+            stripe.waitNanos.add(System.nanoTime() - start);
+        }
+        stripe.acquisitions.increment();
+        return stripe;
+    }
+
+    LockStripeStatistics getStatistics() {
+        long[] acquisitions = new long[stripes.length];
+        long[] contentions = new long[stripes.length];
+        long[] waitNanos = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            acquisitions[i] = stripes[i].acquisitions.sum();
+            contentions[i] = stripes[i].contentions.sum();
+            waitNanos[i] = stripes[i].waitNanos.sum();
+        }
+        return new LockStripeStatistics(acquisitions, contentions, waitNanos);
+    }
+
+    private static final class Stripe extends ReentrantLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LongAdder acquisitions = new LongAdder();
+        /* How often the lock was held by another thread, and how long threads waited for it in total */
+        private final LongAdder contentions = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+    }
+}
@@ -0,0 +1,328 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+
+/**
+ * A StateStore which holds the states in a memory-mapped file, so that they survive a restart and don't occupy the heap. The ids are
+ * longs, the states are the constants of an enum.
+ * <p>
+ * The file is a hash table of fixed-width records, each consisting of the id and the ordinal of the state, which is divided into
+ * segments with a lock of their own. Its capacity is fixed when the file is created. The states are stored by their ordinal, so the
+ * constants of the enum must not be reordered as long as the file is used. Removing a record shifts the records which follow it in its
+ * probe sequence back, so that no removed slots are left behind which lookups would have to probe.
+ * <p>
+ * Changes are written to the file by the operating system eventually, call {@link #flush()} in order to force them to the disk.
+ *
+ * @param <S> The state type.
+ */
+public class MappedFileStateStore<S extends Enum<S>> implements StateStore<Long, S>, AutoCloseable {
+
+    /* "SMST" */
+    private static final int MAGIC = 0x534D5354;
+    private static final int VERSION = 1;
+    /* Magic, version, number of states, number of segments, slots per segment */
+    static final int HEADER_SIZE = 32;
+    /* The id as long followed by the state as int */
+    static final int RECORD_SIZE = 12;
+    private static final int SEGMENT_COUNT = 64;
+    /* Slots of a segment are at most 75% full */
+    private static final double LOAD_FACTOR = 0.75;
+    /* The value of the state field of an empty slot, besides the ordinal + 1 of a state */
+    private static final int EMPTY = 0;
+
+    private final S[] states;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Segment[] segments;
+    private final int slotsPerSegment;
+    private volatile boolean closed;
+
+    /**
+     * Opens the file, or creates it if it doesn't exist.
+     *
+     * @param file      The file holding the states.
+     * @param stateType The class of the state enum.
+     * @param capacity  The maximum number of objects the store can hold. Only used if the file is created.
+     * @throws UncheckedIOException If the file can't be opened or created.
+     * @throws IllegalStateException If the file wasn't created by a MappedFileStateStore for an enum with the same number of constants.
+     */
+    public MappedFileStateStore(Path file, Class<S> stateType, int capacity) {
+        Validate.notNull(file, "file can not be null.");
+        Validate.notNull(stateType, "stateType can not be null.");
+        Validate.isTrue(capacity > 0, "capacity must be positive.");
+        this.states = stateType.getEnumConstants();
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                boolean created = channel.size() == 0;
+                int segmentCount;
+                if (created) {
+                    segmentCount = SEGMENT_COUNT;
+                    slotsPerSegment = Integer.highestOneBit((int) Math.ceil(capacity / LOAD_FACTOR / segmentCount) * 2 - 1);
+                } else {
+                    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                    if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                        throw new IllegalStateException(file + " is not a state store file.");
+                    }
+                    if (header.getInt(8) != states.length) {
+                        throw new IllegalStateException(file + " was created for " + header.getInt(8) + " states, but " + stateType.getName()
+                                + " has " + states.length + ".");
+                    }
+                    segmentCount = header.getInt(12);
+                    slotsPerSegment = header.getInt(16);
+                }
+                long fileSize = HEADER_SIZE + (long) segmentCount * slotsPerSegment * RECORD_SIZE;
+                Validate.isTrue(fileSize <= Integer.MAX_VALUE, "The capacity exceeds the maximum size of a mapped file.");
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+                if (created) {
+                    buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, states.length).putInt(12, segmentCount).putInt(16, slotsPerSegment);
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Opening the state store " + file + " failed.", e);
+        }
+        segments = new Segment[buffer.getInt(12)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(HEADER_SIZE + i * slotsPerSegment * RECORD_SIZE);
+            segments[i].size = countRecords(segments[i]);
+        }
+    }
+
+    /**
+     * @return The maximum number of objects the store can hold.
+     */
+    public long getCapacity() {
+        return (long) (segments.length * slotsPerSegment * LOAD_FACTOR);
+    }
+
+    @Override
+    public S getState(Long id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            int offset = find(segment, id);
+            return offset < 0 ? null : states[buffer.getInt(offset + 8) - 1];
+        }
+    }
+
+    @Override
+    public void setState(Long id, S state) {
+        Validate.notNull(state, "state can not be null.");
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            write(segment, id, find(segment, id), state);
+        }
+    }
+
+    @Override
+    public boolean compareAndSetState(Long id, S expectedState, S newState) {
+        Validate.notNull(newState, "newState can not be null.");
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            int offset = find(segment, id);
+            S currentState = offset < 0 ? null : states[buffer.getInt(offset + 8) - 1];
+            if (currentState != expectedState) {
+                return false;
+            }
+            write(segment, id, offset, newState);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean removeState(Long id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            int offset = find(segment, id);
+            if (offset < 0) {
+                return false;
+            }
+            remove(segment, offset);
+            segment.size--;
+            return true;
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Passes the records segment by segment. The records of a segment are copied before they are passed, so the consumer may change
+     * the store.
+     */
+    @Override
+    public void forEach(BiConsumer<? super Long, ? super S> consumer) {
+        long[] ids = new long[slotsPerSegment];
+        int[] ordinals = new int[slotsPerSegment];
+        for (Segment segment : segments) {
+            int count = 0;
+            synchronized (segment) {
+                ensureOpen();
+                for (int slot = 0, offset = segment.offset; slot < slotsPerSegment; slot++, offset += RECORD_SIZE) {
+                    int value = buffer.getInt(offset + 8);
+                    if (value > 0) {
+                        ids[count] = buffer.getLong(offset);
+                        ordinals[count++] = value - 1;
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                consumer.accept(ids[i], states[ordinals[i]]);
+            }
+        }
+    }
+
+    /**
+     * Forces all changes to the disk.
+     */
+    public void flush() {
+        ensureOpen();
+        buffer.force();
+    }
+
+    /**
+     * Forces all changes to the disk and closes the file. The store can't be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        buffer.force();
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Closing the state store failed.", e);
+        }
+    }
+
+    private Segment segmentFor(Long id) {
+        Validate.notNull(id, "id can not be null.");
+        ensureOpen();
+        return segments[(int) (hash(id) >>> 32) & (segments.length - 1)];
+    }
+
+    private static long hash(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Probes the slots of the segment linearly, starting at the slot of the id's hash.
+     *
+     * @return The offset of the id's record, or -1 if the segment doesn't contain it.
+     */
+    private int find(Segment segment, long id) {
+        int mask = slotsPerSegment - 1;
+        int slot = (int) hash(id) & mask;
+        for (int probes = 0; probes < slotsPerSegment; probes++, slot = (slot + 1) & mask) {
+            int offset = segment.offset + slot * RECORD_SIZE;
+            int value = buffer.getInt(offset + 8);
+            if (value == EMPTY) {
+                return -1;
+            } else if (buffer.getLong(offset) == id) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the state to the record at the offset, or to a new record if the offset is negative. A new record takes the first empty
+     * slot. The id is written before the state, which marks the record as used.
+     */
+    private void write(Segment segment, long id, int offset, S state) {
+        if (offset < 0) {
+            if (segment.size >= slotsPerSegment * LOAD_FACTOR) {
+                throw new IllegalStateException("The state store is full.");
+            }
+            int mask = slotsPerSegment - 1;
+            int slot = (int) hash(id) & mask;
+            offset = segment.offset + slot * RECORD_SIZE;
+            while (buffer.getInt(offset + 8) != EMPTY) {
+                slot = (slot + 1) & mask;
+                offset = segment.offset + slot * RECORD_SIZE;
+            }
+            buffer.putLong(offset, id);
+            segment.size++;
+        }
+        buffer.putInt(offset + 8, state.ordinal() + 1);
+    }
+
+    /**
+     * Empties the slot of the record at the offset. Records which follow it in the same run of used slots are moved into the emptied
+     * slot, unless the slot precedes their hash slot, so that every record stays reachable from its hash slot without removed slots
+     * in between. A moved record is written to its new slot before its old one is emptied.
+     */
+    private void remove(Segment segment, int offset) {
+        int mask = slotsPerSegment - 1;
+        int emptied = (offset - segment.offset) / RECORD_SIZE;
+        for (int slot = (emptied + 1) & mask; ; slot = (slot + 1) & mask) {
+            int slotOffset = segment.offset + slot * RECORD_SIZE;
+            int value = buffer.getInt(slotOffset + 8);
+            if (value == EMPTY) {
+                break;
+            }
+            long id = buffer.getLong(slotOffset);
+            int home = (int) hash(id) & mask;
+            // The record stays if its hash slot lies cyclically within (emptied, slot]
+            boolean stays = emptied <= slot ? emptied < home && home <= slot : emptied < home || home <= slot;
+            if (!stays) {
+                int emptiedOffset = segment.offset + emptied * RECORD_SIZE;
+                buffer.putLong(emptiedOffset, id);
+                buffer.putInt(emptiedOffset + 8, value);
+                emptied = slot;
+            }
+        }
+        buffer.putInt(segment.offset + emptied * RECORD_SIZE + 8, EMPTY);
+    }
+
+    private int countRecords(Segment segment) {
+        int count = 0;
+        for (int slot = 0; slot < slotsPerSegment; slot++) {
+            if (buffer.getInt(segment.offset + slot * RECORD_SIZE + 8) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("The state store is closed.");
+        }
+    }
+
+    /**
+     * A part of the hash table with a lock of its own, which is the segment itself.
+     */
+    private static final class Segment {
+
+        private final int offset;
+        private int size;
+
+        private Segment(int offset) {
+            this.offset = offset;
+        }
+    }
+}
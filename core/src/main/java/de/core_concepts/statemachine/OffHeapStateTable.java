@@ -0,0 +1,354 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A StateStore which holds the states of very many objects outside of the heap, e.g. tens of millions, each taking 12 to 24 bytes
+ * instead of the dozens of a boxed entry of a map. The ids are longs, the states are the constants of an enum, which are stored by
+ * their ordinal in a single byte, so the enum must not have more than {@link #MAX_STATES} constants.
+ * <p>
+ * The table is a hash table which is divided into segments, each holding its ids and states in a direct ByteBuffer of its own. A
+ * segment doubles its size once it is 75% full. Reads don't lock, they are validated by a StampedLock of the segment instead and only
+ * repeated under its read lock if a write interfered. Writes lock the segment.
+ * <p>
+ * Besides the methods of StateStore, which box the ids, the table offers primitive ones working with ordinals, e.g.
+ * {@link #compareAndSetOrdinal(long, int, int)}, which StateTableStatemachine uses. The memory of the table is released once it is
+ * garbage collected.
+ *
+ * @param <S> The state type.
+ */
+public class OffHeapStateTable<S extends Enum<S>> implements StateStore<Long, S> {
+
+    /**
+     * The maximum number of constants of the state enum.
+     */
+    public static final int MAX_STATES = 254;
+
+    private static final int SEGMENT_COUNT = 64;
+    /* Slots of a segment are at most 75% full, including removed ones */
+    private static final double LOAD_FACTOR = 0.75;
+    private static final int MIN_SLOTS_PER_SEGMENT = 16;
+    /* The id as long, followed by the states as a byte per slot */
+    private static final int SLOT_SIZE = 9;
+    /* Values of the state byte besides the ordinal + 1 of a state */
+    private static final int EMPTY = 0;
+    private static final int REMOVED = 0xFF;
+
+    private final S[] states;
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    /**
+     * @param stateType The class of the state enum.
+     */
+    public OffHeapStateTable(Class<S> stateType) {
+        this(stateType, 0);
+    }
+
+    /**
+     * @param stateType    The class of the state enum.
+     * @param expectedSize The number of objects the table is sized for initially, so that it doesn't need to grow while it is filled.
+     */
+    public OffHeapStateTable(Class<S> stateType, long expectedSize) {
+        Validate.notNull(stateType, "stateType can not be null.");
+        Validate.isTrue(expectedSize >= 0, "expectedSize must not be negative.");
+        this.states = stateType.getEnumConstants();
+        Validate.isTrue(states.length <= MAX_STATES, "The state enum must not have more than " + MAX_STATES + " constants.");
+        long slots = Math.max(MIN_SLOTS_PER_SEGMENT, (long) Math.ceil(expectedSize / LOAD_FACTOR / SEGMENT_COUNT));
+        Validate.isTrue(slots <= Integer.MAX_VALUE / SLOT_SIZE, "expectedSize exceeds the maximum size of the table.");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(Integer.highestOneBit((int) slots * 2 - 1));
+        }
+    }
+
+    /**
+     * @return The ordinal of the object's state, or -1 if the table holds no state for it.
+     */
+    public int getOrdinal(long id) {
+        long hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.tryOptimisticRead();
+        int value = segment.valueOf(id, hash);
+        if (!segment.validate(stamp)) {
+            stamp = segment.readLock();
+            try {
+                value = segment.valueOf(id, hash);
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+        return value - 1;
+    }
+
+    public void setOrdinal(long id, int ordinal) {
+        validateOrdinal(ordinal);
+        long hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.writeLock();
+        try {
+            segment.write(id, hash, segment.slotOf(id, hash), ordinal);
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the ordinal of the object's state, if it currently has the expected one.
+     *
+     * @param expectedOrdinal The ordinal of the state the object must be in, or -1 if the table must hold no state for it.
+     * @return True if the ordinal was set.
+     */
+    public boolean compareAndSetOrdinal(long id, int expectedOrdinal, int newOrdinal) {
+        validateOrdinal(newOrdinal);
+        long hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.writeLock();
+        try {
+            int slot = segment.slotOf(id, hash);
+            int currentOrdinal = slot < 0 ? -1 : segment.value(slot) - 1;
+            if (currentOrdinal != expectedOrdinal) {
+                return false;
+            }
+            segment.write(id, hash, slot, newOrdinal);
+            return true;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public S getState(Long id) {
+        Validate.notNull(id, "id can not be null.");
+        int ordinal = getOrdinal(id);
+        return ordinal < 0 ? null : states[ordinal];
+    }
+
+    @Override
+    public void setState(Long id, S state) {
+        Validate.notNull(id, "id can not be null.");
+        Validate.notNull(state, "state can not be null.");
+        setOrdinal(id, state.ordinal());
+    }
+
+    @Override
+    public boolean compareAndSetState(Long id, S expectedState, S newState) {
+        Validate.notNull(id, "id can not be null.");
+        Validate.notNull(newState, "newState can not be null.");
+        return compareAndSetOrdinal(id, expectedState == null ? -1 : expectedState.ordinal(), newState.ordinal());
+    }
+
+    @Override
+    public boolean removeState(Long id) {
+        Validate.notNull(id, "id can not be null.");
+        long hash = hash(id);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.writeLock();
+        try {
+            int slot = segment.slotOf(id, hash);
+            if (slot < 0) {
+                return false;
+            }
+            segment.table.put(segment.stateOffset(slot), (byte) REMOVED);
+            segment.size--;
+            return true;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Passes the states segment by segment. The states of a segment are copied before they are passed, so the consumer may change the
+     * table.
+     */
+    @Override
+    public void forEach(BiConsumer<? super Long, ? super S> consumer) {
+        for (Segment segment : segments) {
+            long[] ids;
+            byte[] values;
+            int count = 0;
+            long stamp = segment.readLock();
+            try {
+                ids = new long[segment.size];
+                values = new byte[segment.size];
+                for (int slot = 0; slot < segment.slots; slot++) {
+                    int value = segment.value(slot);
+                    if (value != EMPTY && value != REMOVED) {
+                        ids[count] = segment.table.getLong(slot * Long.BYTES);
+                        values[count++] = (byte) value;
+                    }
+                }
+            } finally {
+                segment.unlockRead(stamp);
+            }
+            for (int i = 0; i < count; i++) {
+                consumer.accept(ids[i], states[(values[i] & 0xFF) - 1]);
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes the table occupies outside of the heap.
+     */
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.readLock();
+            try {
+                bytes += segment.table.capacity();
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    private void validateOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= states.length) {
+            throw new IllegalArgumentException("The ordinal " + ordinal + " is not a state.");
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & (SEGMENT_COUNT - 1)];
+    }
+
+    private static long hash(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * A part of the hash table with a lock of its own, which is the segment itself. Its slots are probed linearly.
+     */
+    private static final class Segment extends StampedLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private ByteBuffer table;
+        private int slots;
+        private int size;
+        /* Slots which are used or were removed */
+        private int occupied;
+
+        private Segment(int slots) {
+            allocate(slots);
+        }
+
+        private void allocate(int slots) {
+            this.table = ByteBuffer.allocateDirect(slots * SLOT_SIZE).order(ByteOrder.nativeOrder());
+            this.slots = slots;
+        }
+
+        private int stateOffset(int slot) {
+            return slots * Long.BYTES + slot;
+        }
+
+        private int value(int slot) {
+            return table.get(stateOffset(slot)) & 0xFF;
+        }
+
+        /**
+         * Probes for the id without relying on the lock, so that it can be called optimistically: the table and its size are read once,
+         * and probing ends after all slots.
+         *
+         * @return The state value of the id, or EMPTY if the segment doesn't contain it.
+         */
+        private int valueOf(long id, long hash) {
+            ByteBuffer table = this.table;
+            int slots = table.capacity() / SLOT_SIZE;
+            int mask = slots - 1;
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes < slots; probes++, slot = (slot + 1) & mask) {
+                int value = table.get(slots * Long.BYTES + slot) & 0xFF;
+                if (value == EMPTY) {
+                    return EMPTY;
+                } else if (value != REMOVED && table.getLong(slot * Long.BYTES) == id) {
+                    return value;
+                }
+            }
+            return EMPTY;
+        }
+
+        /**
+         * @return The slot of the id, or -1 if the segment doesn't contain it. Requires a lock.
+         */
+        private int slotOf(long id, long hash) {
+            int mask = slots - 1;
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes < slots; probes++, slot = (slot + 1) & mask) {
+                int value = value(slot);
+                if (value == EMPTY) {
+                    return -1;
+                } else if (value != REMOVED && table.getLong(slot * Long.BYTES) == id) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Writes the ordinal to the slot, or to a new slot if the given one is negative. A new slot is the first one which is empty or
+         * was removed. Requires the write lock.
+         */
+        private void write(long id, long hash, int slot, int ordinal) {
+            if (slot < 0) {
+                if (occupied + 1 > slots * LOAD_FACTOR) {
+                    // Removed slots are dropped while rehashing, so grow only if the used ones require it
+                    rehash(size + 1 > slots * LOAD_FACTOR / 2 ? slots * 2 : slots);
+                }
+                int mask = slots - 1;
+                slot = (int) hash & mask;
+                int value;
+                while ((value = value(slot)) != EMPTY && value != REMOVED) {
+                    slot = (slot + 1) & mask;
+                }
+                if (value == EMPTY) {
+                    occupied++;
+                }
+                table.putLong(slot * Long.BYTES, id);
+                size++;
+            }
+            table.put(stateOffset(slot), (byte) (ordinal + 1));
+        }
+
+        private void rehash(int newSlots) {
+            Validate.isTrue(newSlots <= Integer.MAX_VALUE / SLOT_SIZE, "The state table is full.");
+            ByteBuffer oldTable = table;
+            int oldSlots = slots;
+            allocate(newSlots);
+            int mask = newSlots - 1;
+            for (int oldSlot = 0; oldSlot < oldSlots; oldSlot++) {
+                int value = oldTable.get(oldSlots * Long.BYTES + oldSlot) & 0xFF;
+                if (value != EMPTY && value != REMOVED) {
+                    long id = oldTable.getLong(oldSlot * Long.BYTES);
+                    int slot = (int) hash(id) & mask;
+                    while (value(slot) != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table.putLong(slot * Long.BYTES, id);
+                    table.put(stateOffset(slot), (byte) value);
+                }
+            }
+            occupied = size;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package de.core_concepts.statemachine;
+
+
+import java.time.Duration;
+
+/**
+ * The outcome of a journal replay, see {@link JournalReplay}.
+ */
+public final class ReplayResult {
+
+    private final long appliedCount;
+    private final long failedCount;
+    private final long nextSequence;
+    private final long durationNanos;
+
+    ReplayResult(long appliedCount, long failedCount, long nextSequence, long durationNanos) {
+        this.appliedCount = appliedCount;
+        this.failedCount = failedCount;
+        this.nextSequence = nextSequence;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return The number of records which were applied, i.e. state changes respectively events, depending on the mode of the replay.
+     */
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    /**
+     * @return The number of replayed events which failed. Always 0 when replaying state changes.
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * @return The sequence following the last valid record of the journal.
+     */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    public Duration getDuration() {
+        return Duration.ofNanos(durationNanos);
+    }
+
+    /**
+     * @return The number of records applied per second.
+     */
+    public double getThroughput() {
+        return durationNanos == 0 ? 0 : appliedCount * 1e9 / durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayResult(applied=" + appliedCount + ", failed=" + failedCount + ", nextSequence=" + nextSequence + ", duration="
+                + getDuration() + ")";
+    }
+}
@@ -0,0 +1,317 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Dispatches events to a statemachine on a fixed number of shards, each of which is owned by a single thread. The key of an object
+ * determines its shard, so all events for the same object are processed by the same thread one after another, without any locking,
+ * while events for objects on different shards are processed in parallel. Concurrent calls to sendEvent of the statemachine itself
+ * for the same object race on its current state.
+ * <p>
+ * Events are submitted to a lock-free queue per shard and processed in the order they were submitted. By default the key of an object
+ * is the one the statemachine determines by {@link AbstractStatemachine#getObjectKey(Object)}, i.e. the object itself compared by
+ * identity, unless the statemachine overrides it. If several instances may represent the same entity, override the hook or configure
+ * a key like its id with {@link #withObjectKey(Function)}. Events sent by actions are processed by the thread of the current shard, regardless of their
+ * object. Submit them to the ShardedExecutor instead, if they are meant for another object.
+ * <p>
+ * Call {@link #shutdown()} in order to process all submitted events and stop the threads afterwards. An Error thrown by a dispatch
+ * terminates the thread of its shard: the futures of the shard's remaining events complete exceptionally with it and further events
+ * for the shard are rejected.
+ *
+ * @param <O> The object type of the statemachine.
+ */
+public class ShardedExecutor<O> implements AutoCloseable {
+
+    private final AbstractStatemachine<?, ?, O> statemachine;
+    private final Shard[] shards;
+    /* Null if the statemachine determines the keys */
+    private volatile Function<? super O, ?> objectKey;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a ShardedExecutor whose threads are named statemachine-shard-0, statemachine-shard-1 and so on.
+     *
+     * @param statemachine The statemachine to send the events to.
+     * @param shardCount   The number of shards, e.g. the number of available processors.
+     */
+    public ShardedExecutor(AbstractStatemachine<?, ?, O> statemachine, int shardCount) {
+        this(statemachine, shardCount, namedThreads());
+    }
+
+    /**
+     * @param statemachine  The statemachine to send the events to.
+     * @param shardCount    The number of shards, e.g. the number of available processors.
+     * @param threadFactory Creates the thread of each shard.
+     */
+    public ShardedExecutor(AbstractStatemachine<?, ?, O> statemachine, int shardCount, ThreadFactory threadFactory) {
+        Validate.notNull(statemachine, "statemachine can not be null.");
+        Validate.isTrue(shardCount > 0, "shardCount must be positive.");
+        Validate.notNull(threadFactory, "threadFactory can not be null.");
+        this.statemachine = statemachine;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        for (Shard shard : shards) {
+            shard.thread = threadFactory.newThread(() -> process(shard));
+            shard.thread.start();
+        }
+    }
+
+    private static ThreadFactory namedThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+            thread.setName("statemachine-shard-" + count.getAndIncrement());
+            return thread;
+        };
+    }
+
+    /**
+     * @param objectKey Determines the key of an object instead of the statemachine. The hash code of the key determines the shard of
+     *                  the object. Keys must implement equals and hashCode and must not change while events are submitted for the
+     *                  object. Configure it before submitting the first event.
+     */
+    public ShardedExecutor<O> withObjectKey(Function<? super O, ?> objectKey) {
+        Validate.notNull(objectKey, "objectKey can not be null.");
+        this.objectKey = objectKey;
+        return this;
+    }
+
+    /**
+     * @see #sendEvent(Object, Object, Object)
+     */
+    public CompletableFuture<StateChange<?>> sendEvent(Object event, Object object) {
+        return sendEvent(event, object, null);
+    }
+
+    /**
+     * Submits the event to the shard of the object. It is processed like by {@link Statemachine#sendEvent(Object, Object, Object)}.
+     *
+     * @return A future which completes with the state change caused by the event and the transitions following it, or exceptionally
+     * with the exception sendEvent threw.
+     * @throws RejectedExecutionException If the ShardedExecutor was shut down.
+     */
+    public CompletableFuture<StateChange<?>> sendEvent(Object event, Object object, Object eventData) {
+        return submit(object, () -> statemachine.sendEvent(event, object, eventData));
+    }
+
+    /**
+     * Submits a call to {@link Statemachine#proceed(Object)} to the shard of the object.
+     *
+     * @return A future which completes with the state change caused by the automatic transitions.
+     * @throws RejectedExecutionException If the ShardedExecutor was shut down.
+     */
+    public CompletableFuture<StateChange<?>> proceed(Object object) {
+        return submit(object, () -> statemachine.proceed(object));
+    }
+
+    private CompletableFuture<StateChange<?>> submit(Object object, Runnable dispatch) {
+        Class<O> objectType = statemachine.getDefinition().getObjectType();
+        if (!objectType.isInstance(object)) {
+            throw new IllegalArgumentException(String.format("The object passed must be of type %s but was %s", objectType,
+                    object == null ? null : object.getClass()));
+        }
+        Function<? super O, ?> key = objectKey;
+        O validObject = objectType.cast(object);
+        Shard shard = shards[shardOf(key == null ? statemachine.getObjectKeyHash(validObject) : hashCode(key.apply(validObject)))];
+        CompletableFuture<StateChange<?>> future = new CompletableFuture<>();
+        // Counted before checking for shutdown, so that the shard doesn't terminate before the event is queued
+        shard.depth.incrementAndGet();
+        if (shutdown) {
+            shard.depth.decrementAndGet();
+            throw new RejectedExecutionException("The ShardedExecutor was shut down.");
+        }
+        if (shard.fatalError != null) {
+            shard.depth.decrementAndGet();
+            throw new RejectedExecutionException("The shard of the object was terminated by an Error.", shard.fatalError);
+        }
+        shard.queue.offer(new Task(object, dispatch, future));
+        if (shard.fatalError != null) {
+            // The shard terminated meanwhile, possibly without seeing the event
+            failRemaining(shard);
+        } else if (shard.waiting) {
+            LockSupport.unpark(shard.thread);
+        }
+        return future;
+    }
+
+    private static int hashCode(Object key) {
+        return key == null ? 0 : key.hashCode();
+    }
+
+    private int shardOf(int hash) {
+        // Spread the higher bits, as hash codes of ids often only differ in their lower ones
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return The number of events which were submitted to the shard and are not yet processed.
+     */
+    public int getQueueDepth(int shard) {
+        return shards[shard].depth.get();
+    }
+
+    /**
+     * @return The queue depth of every shard, indexed by shard.
+     */
+    public int[] getQueueDepths() {
+        int[] depths = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            depths[i] = shards[i].depth.get();
+        }
+        return depths;
+    }
+
+    /**
+     * Stops accepting events. Events which were already submitted are processed, afterwards the threads terminate.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Blocks until all shards processed their remaining events after a shutdown, or the timeout elapsed.
+     *
+     * @return True if all threads terminated.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Shard shard : shards) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining > 0) {
+                shard.thread.join(remaining);
+            }
+            if (shard.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shuts down and waits until all submitted events are processed. If the calling thread is interrupted, it stops waiting and keeps
+     * its interrupt status.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            for (Shard shard : shards) {
+                shard.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Processes the events of the shard until it is shut down and all its events are processed. Parks while the queue is empty.
+     */
+    private void process(Shard shard) {
+        while (true) {
+            Task task = shard.queue.poll();
+            if (task != null) {
+                run(shard, task);
+            } else if (shutdown && shard.depth.get() == 0) {
+                return;
+            } else {
+                shard.waiting = true;
+                // Check again, as an event may have been submitted before waiting was set
+                if (shard.queue.isEmpty() && !shutdown) {
+                    LockSupport.park(this);
+                }
+                shard.waiting = false;
+            }
+        }
+    }
+
+    /**
+     * Processes the task and completes its future. The depth of the shard is decremented before, so that it doesn't include the task
+     * anymore once the future completed.
+     */
+    private void run(Shard shard, Task task) {
+        StateChange<?> stateChange;
+        try {
+            Object fromState = statemachine.getCurrentState(task.object);
+            task.dispatch.run();
+            stateChange = new StateChange<>(fromState, statemachine.getCurrentState(task.object));
+        } catch (RuntimeException e) {
+            shard.depth.decrementAndGet();
+            task.future.completeExceptionally(e);
+            return;
+        } catch (java.lang.Error e) {
+            shard.depth.decrementAndGet();
+            task.future.completeExceptionally(e);
+            shard.fatalError = e;
+            failRemaining(shard);
+            throw e;
+        }
+        shard.depth.decrementAndGet();
+        task.future.complete(stateChange);
+    }
+
+    /**
+     * Completes the futures of all events left in the queue of a terminated shard exceptionally with the Error which terminated it.
+     */
+    private static void failRemaining(Shard shard) {
+        Task task;
+        while ((task = shard.queue.poll()) != null) {
+            shard.depth.decrementAndGet();
+            task.future.completeExceptionally(shard.fatalError);
+        }
+    }
+
+    /**
+     * A single event submitted to a shard.
+     */
+    private static final class Task {
+
+        private final Object object;
+        private final Runnable dispatch;
+        private final CompletableFuture<StateChange<?>> future;
+
+        private Task(Object object, Runnable dispatch, CompletableFuture<StateChange<?>> future) {
+            this.object = object;
+            this.dispatch = dispatch;
+            this.future = future;
+        }
+    }
+
+    /**
+     * A queue of events which is processed by a single thread.
+     */
+    private static final class Shard {
+
+        private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        /* The number of submitted events which aren't processed yet */
+        private final AtomicInteger depth = new AtomicInteger();
+        private volatile boolean waiting;
+        /* The Error which terminated the thread, if any */
+        private volatile java.lang.Error fatalError;
+        private Thread thread;
+    }
+}
@@ -3,8 +3,13 @@ package de.core_concepts.statemachine;
 
 import java.beans.ConstructorProperties;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by zieglerch on 24.11.2015.
@@ -18,34 +23,108 @@ import java.util.Optional;
 public class State<S, E, O> {
 
     private final S id;
-    private final Optional<Action<O>> onEntryAction;
-    private final Optional<Action<O>> exitValidator;
-    private final List<Transition<S, E, O>> transitions = new ArrayList<>();
+    final Action<O> onEntryAction;
+    final Action<O> exitValidator;
+    private List<Transition<S, E, O>> transitions = new ArrayList<>();
+    private Transition<S, E, O>[] automaticTransitions = Transition.none();
+    private Transition<S, E, O>[] errorTransitions = Transition.none();
+    /* Filled on first lookup. Held by the state only, so that exception classes never reference the statemachine */
+    private final ConcurrentMap<Class<?>, Transition<S, E, O>[]> transitionsByException = new ConcurrentHashMap<>();
+    private boolean frozen;
+    /* The position of this state within its StatemachineDefinition. Assigned when the definition is created. */
+    int index = -1;
 
     @ConstructorProperties({"id", "onEntryAction", "exitValidator"})
     State(S id, Optional<Action<O>> onEntryAction, Optional<Action<O>> exitValidator) {
         this.id = id;
-        this.onEntryAction = onEntryAction;
-        this.exitValidator = exitValidator;
+        this.onEntryAction = onEntryAction.orElse(null);
+        this.exitValidator = exitValidator.orElse(null);
     }
 
     State<S, E, O> addTransition(Transition<S, E, O> transition) {
+        if (frozen) {
+            throw new IllegalStateException("Can not add a transition to state " + id + ". The statemachine was already initialised.");
+        }
         transitions.add(transition);
         return this;
     }
 
+    /**
+     * Makes this state immutable. Precomputes the automatic and onError transitions, so that they don't have to be filtered from all
+     * transitions whenever an automatic transition or an exception is handled, and orders all transitions by descending priority. Adding
+     * transitions afterwards is not possible.
+     */
+    void freeze() {
+        if (frozen) {
+            return;
+        }
+        // Stable sort, transitions of equal priority stay in the order they were configured.
+        transitions.sort(Comparator.comparingInt((Transition<S, E, O> transition) -> transition.priority).reversed());
+        List<Transition<S, E, O>> automatic = new ArrayList<>();
+        List<Transition<S, E, O>> error = new ArrayList<>();
+        for (Transition<S, E, O> transition : transitions) {
+            transition.cacheStateChange(id);
+            if (transition.isAutomaticTransition()) {
+                automatic.add(transition);
+            } else if (transition.isErrorTransition()) {
+                error.add(transition);
+            }
+        }
+        automaticTransitions = Transition.toArray(automatic);
+        errorTransitions = Transition.toArray(error);
+        transitions = Collections.unmodifiableList(Arrays.asList(Transition.toArray(transitions)));
+        frozen = true;
+    }
+
+    boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * @return All transitions which neither have an event (onEvent) nor an error (onError) set, by descending priority, then in the order
+     * they were configured.
+     */
+    Transition<S, E, O>[] getAutomaticTransitions() {
+        return automaticTransitions;
+    }
+
+    /**
+     * Gets all transitions which have an error (onError) set that is assignable from the given exception class. The result is resolved
+     * once per exception class and cached afterwards.
+     *
+     * @param exceptionClass The class of the exception that occurred.
+     * @return All matching onError transitions by descending priority, then in the order they were configured.
+     */
+    Transition<S, E, O>[] getTransitionsForException(Class<? extends RuntimeException> exceptionClass) {
+        return transitionsByException.computeIfAbsent(exceptionClass, this::resolveTransitionsForException);
+    }
+
+    private Transition<S, E, O>[] resolveTransitionsForException(Class<?> exceptionClass) {
+        List<Transition<S, E, O>> matching = new ArrayList<>();
+        for (Transition<S, E, O> transition : errorTransitions) {
+            if (transition.error.isAssignableFrom(exceptionClass)) {
+                matching.add(transition);
+            }
+        }
+        return Transition.toArray(matching);
+    }
+
     public S getId() {
         return this.id;
     }
 
     public Optional<Action<O>> getOnEntryAction() {
-        return this.onEntryAction;
+        return Optional.ofNullable(this.onEntryAction);
     }
 
     public Optional<Action<O>> getExitValidator() {
-        return this.exitValidator;
+        return Optional.ofNullable(this.exitValidator);
     }
 
+    /**
+     * @return All transitions exiting this state in the order they were added, respectively by descending priority, then in the order
+     * they were added, once the statemachine is initialised. Unmodifiable from then on.
+     */
     public List<Transition<S, E, O>> getTransitions() {
         return this.transitions;
     }
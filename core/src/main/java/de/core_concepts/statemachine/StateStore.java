@@ -0,0 +1,45 @@
+package de.core_concepts.statemachine;
+
+
+import java.util.function.BiConsumer;
+
+/**
+ * Holds the current state of objects, keyed by their id, so that a statemachine reads and writes states without loading the objects
+ * themselves, see {@link StateStoreStatemachine}. Implementations must be safe for use by concurrent dispatches.
+ *
+ * @param <K> The type of the object ids.
+ * @param <S> The state type.
+ */
+public interface StateStore<K, S> {
+
+    /**
+     * @return The state of the object, or null if the store holds no state for it.
+     */
+    S getState(K id);
+
+    void setState(K id, S state);
+
+    /**
+     * Sets the state of the object, if its current state is the expected one.
+     *
+     * @param expectedState The state the object must be in, or null if the store must hold no state for it.
+     * @return True if the state was set.
+     */
+    boolean compareAndSetState(K id, S expectedState, S newState);
+
+    /**
+     * @return True if the store held a state for the object.
+     */
+    boolean removeState(K id);
+
+    /**
+     * @return The number of objects the store holds a state for.
+     */
+    long size();
+
+    /**
+     * Passes every object id along with its state to the consumer. States which are changed concurrently may be passed with their
+     * previous or their new value.
+     */
+    void forEach(BiConsumer<? super K, ? super S> consumer);
+}
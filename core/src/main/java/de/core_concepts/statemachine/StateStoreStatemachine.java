@@ -0,0 +1,82 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+
+import java.util.Objects;
+
+/**
+ * A statemachine which keeps the current state of its objects in a StateStore instead of on the objects themselves. It reads the state
+ * of an object from the store by the object's id, and writes it to the store whenever a transition led the object to another state,
+ * so neither getCurrentState nor a generic action of SUCCESSFUL_STATE_CHANGE need to be implemented. Objects the store holds no state
+ * for are in the initial state.
+ * <p>
+ * States are written to the store immediately, i.e. they are not rolled back with the transaction of a dispatch which fails afterwards.
+ * The id of an object is its key for lock striping as well, see {@link #getObjectKey(Object)}.
+ *
+ * @param <K> The type of the object ids.
+ * @param <S> The enum type defining the states the Statemachine knows of.
+ * @param <E> The enum type defining the events the Statemachine listens to.
+ * @param <O> The object type which is put on the context for actions to work with.
+ */
+public abstract class StateStoreStatemachine<K, S, E, O> extends AbstractStatemachine<S, E, O> {
+
+    private final StateStore<K, S> stateStore;
+
+    /**
+     * @param stateType  The class object for the state type S.
+     * @param eventType  The class object for the event type E.
+     * @param objectType The class object for the object type O.
+     * @param stateStore The store holding the states of the objects.
+     */
+    public StateStoreStatemachine(Class<S> stateType, Class<E> eventType, Class<O> objectType, StateStore<K, S> stateStore) {
+        super(stateType, eventType, objectType);
+        Validate.notNull(stateStore, "stateStore can not be null.");
+        this.stateStore = stateStore;
+    }
+
+    /**
+     * Hook method which provides the id of an object, by which its state is stored.
+     *
+     * @return The id of the object, which must not change.
+     */
+    protected abstract K getObjectId(O object);
+
+    public StateStore<K, S> getStateStore() {
+        return stateStore;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object getCurrentState(Object object) {
+        S state = stateStore.getState(getObjectId((O) object));
+        return state != null ? state : getInitialState();
+    }
+
+    @Override
+    protected void setCurrentState(O object, S state) {
+        stateStore.setState(getObjectId(object), state);
+    }
+
+    /**
+     * Writes the new state to the store. Final, as StateTableStatemachine changes states in its table without calling it; use a generic
+     * action of SUCCESSFUL_STATE_CHANGE in order to be notified of state changes.
+     */
+    @Override
+    protected final void stateChanged(O object, StateChange<S> stateChange) {
+        stateStore.setState(getObjectId(object), stateChange.getToState());
+    }
+
+    @Override
+    protected Object getObjectKey(O object) {
+        return getObjectId(object);
+    }
+
+    /**
+     * Ids are compared by equality, even if the objects are their own ids.
+     */
+    @Override
+    int getObjectKeyHash(O object) {
+        return Objects.hashCode(getObjectKey(object));
+    }
+}
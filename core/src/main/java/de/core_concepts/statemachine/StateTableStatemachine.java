@@ -0,0 +1,87 @@
+package de.core_concepts.statemachine;
+
+
+import org.apache.commons.lang.Validate;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A statemachine for very many objects whose state is all there is to them, e.g. for tens of millions of them. The objects are
+ * represented by their ids only, i.e. the object type is Long, and their states are kept in an {@link OffHeapStateTable}.
+ * <p>
+ * Besides the regular ways of sending an event, {@link #sendEvent(long, Enum)} takes a fast path for events which do nothing but change
+ * the state: if the event leads to a single transition without a guard and an action, and neither the states involved nor the
+ * statemachine define further behaviour, the state is changed by a compare-and-set on the table, without a Context, a transaction or
+ * logging. All other events are dispatched regularly.
+ *
+ * @param <S> The enum type defining the states the Statemachine knows of.
+ * @param <E> The enum type defining the events the Statemachine listens to.
+ */
+public abstract class StateTableStatemachine<S extends Enum<S>, E extends Enum<E>> extends StateStoreStatemachine<Long, S, E, Long> {
+
+    private final OffHeapStateTable<S> stateTable;
+
+    /**
+     * @param stateType  The class object for the state type S.
+     * @param eventType  The class object for the event type E.
+     * @param stateTable The table holding the states of the objects.
+     */
+    public StateTableStatemachine(Class<S> stateType, Class<E> eventType, OffHeapStateTable<S> stateTable) {
+        super(stateType, eventType, Long.class, stateTable);
+        this.stateTable = stateTable;
+    }
+
+    public OffHeapStateTable<S> getStateTable() {
+        return stateTable;
+    }
+
+    /**
+     * Sends the event to the object with the given id. Takes the fast path if the event does nothing but change the state, i.e. if
+     * <ul>
+     * <li>the event leads to a single transition, which has neither a guard nor an action,</li>
+     * <li>the from state has no exit validator and the to state neither has an onEntryAction nor automatic transitions,</li>
+     * <li>there are no generic actions, lifecycle listeners, journal or deduplication, and</li>
+     * <li>the thread is not dispatching already, e.g. within an action.</li>
+     * </ul>
+     * Events without any transition from the current state are ignored on the fast path, as there is nothing to notify. Otherwise the
+     * event is sent like {@link #sendEvent(Object, Object)}. The fast path locks the object's stripe as well, if lock striping is enabled,
+     * so that it doesn't interfere with regular dispatches.
+     *
+     * @param id    The id of the object.
+     * @param event The event to be sent.
+     */
+    public void sendEvent(long id, E event) {
+        Validate.notNull(event, "event can not be null.");
+        int initialState = getInitialState().ordinal();
+        ReentrantLock stripe = null;
+        try {
+            while (true) {
+                int currentState = stateTable.getOrdinal(id);
+                int fromState = currentState < 0 ? initialState : currentState;
+                int toState = getStateOnlyTarget(fromState, event.ordinal());
+                if (toState < 0) {
+                    break;
+                } else if (toState == fromState) {
+                    return;
+                }
+                if (stripe == null && (stripe = lockStripe(Long.hashCode(id))) != null) {
+                    // Read the state again while the object is locked
+                    continue;
+                }
+                if (stateTable.compareAndSetOrdinal(id, currentState, toState)) {
+                    return;
+                }
+            }
+        } finally {
+            if (stripe != null) {
+                stripe.unlock();
+            }
+        }
+        sendEvent(event, (Object) id);
+    }
+
+    @Override
+    protected final Long getObjectId(Long id) {
+        return id;
+    }
+}
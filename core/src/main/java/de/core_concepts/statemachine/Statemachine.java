@@ -1,7 +1,10 @@
 package de.core_concepts.statemachine;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -58,6 +61,97 @@ public interface Statemachine {
      */
     void sendEvent(Object event, Object object, Object eventData);
 
+    /**
+     * Like {@link #sendEvent(Object, Object, Object)}, but the event is processed by an executor instead of the calling thread. If
+     * called from within an action, the event is processed by the calling thread after the current dispatch completed, as it would be
+     * by sendEvent. The caller must not send further events for the same object before the returned future completed.
+     * <p>
+     * The default implementation calls {@link #sendEvent(Object, Object, Object)} on the common ForkJoinPool, even if it is called from
+     * within an action. AbstractStatemachine overrides it.
+     *
+     * @param event     the object which represents the event to be sent. Must be of the same type as generic type parameter E of
+     *                  AbstractStatemachine
+     * @param object    the object on which the Statemachine will be based
+     * @param eventData Additional data of the event which is passed to the context of the Statemachine
+     * @return A future which is completed as soon as the event was processed, including all automatic transitions that followed. It
+     * holds the state of the object before and after, which are equal if no transition took place. It completes exceptionally if an
+     * exception is thrown out of the Statemachine, e.g. a TransitionException.
+     * @throws IllegalArgumentException If event or object are of the wrong type.
+     */
+    default CompletableFuture<StateChange<?>> sendEventAsync(Object event, Object object, Object eventData) {
+        return CompletableFuture.supplyAsync(() -> {
+            Object fromState = getCurrentState(object);
+            sendEvent(event, object, eventData);
+            return new StateChange<>(fromState, getCurrentState(object));
+        });
+    }
+
+    /**
+     * @see #sendEventAsync(Object, Object, Object)
+     */
+    default CompletableFuture<StateChange<?>> sendEventAsync(Object event, Object object) {
+        return sendEventAsync(event, object, null);
+    }
+
+    /**
+     * Like {@link #proceed(Object)}, but processed by an executor instead of the calling thread, see
+     * {@link #sendEventAsync(Object, Object, Object)}.
+     *
+     * @param object the object on which the Statemachine will be based
+     * @return A future which is completed as soon as the object was processed.
+     */
+    default CompletableFuture<StateChange<?>> proceedAsync(Object object) {
+        return CompletableFuture.supplyAsync(() -> {
+            Object fromState = getCurrentState(object);
+            proceed(object);
+            return new StateChange<>(fromState, getCurrentState(object));
+        });
+    }
+
+    /**
+     * Sends the same event to each of the given objects. Instead of a transaction per object, the batch is processed in transactions
+     * which each span several objects. A failure of one object doesn't prevent the others from being processed.
+     * <p>
+     * The default implementation delegates to {@link #sendEvents(Collection)}.
+     *
+     * @param event   the object which represents the event to be sent. Must be of the same type as generic type parameter E of
+     *                AbstractStatemachine
+     * @param objects the objects on which the Statemachine will be based
+     * @return The outcome for each object.
+     */
+    default BatchResult sendEvents(Object event, Collection<?> objects) {
+        List<BatchEvent> events = new ArrayList<>(objects.size());
+        for (Object object : objects) {
+            events.add(new BatchEvent(event, object));
+        }
+        return sendEvents(events);
+    }
+
+    /**
+     * Sends each of the given events to its object. Like {@link #sendEvents(Object, Collection)} but events and event data may differ per
+     * object.
+     * <p>
+     * The default implementation calls {@link #sendEvent(Object, Object, Object)} for each event, i.e. in a transaction per object, and
+     * only reports the exceptions thrown by it. AbstractStatemachine overrides it.
+     *
+     * @param events the events to be sent, each along with its object and optional event data
+     * @return The outcome for each event.
+     */
+    default BatchResult sendEvents(Collection<BatchEvent> events) {
+        long start = System.nanoTime();
+        List<BatchResult.Failure> failures = new ArrayList<>();
+        int index = 0;
+        for (BatchEvent event : events) {
+            try {
+                sendEvent(event.getEvent(), event.getObject(), event.getEventData());
+            } catch (RuntimeException e) {
+                failures.add(new BatchResult.Failure(index, event.getObject(), e));
+            }
+            index++;
+        }
+        return new BatchResult(index - failures.size(), failures, System.nanoTime() - start);
+    }
+
     /**
      * Statemachine implementations have to override this in order to provide the current state which is assumed to be held on the object
      * put on the Context.
@@ -0,0 +1,206 @@
+package de.core_concepts.statemachine;
+
+
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The immutable model of a statemachine, i.e. its states, transitions and generic actions. It is created by
+ * AbstractStatemachine#initStateMachine() and can afterwards be shared by any number of statemachine instances of the same types, see
+ * AbstractStatemachine#initStateMachine(StatemachineDefinition).
+ * <p>
+ * All states are frozen when the definition is created, so transitions can't be added anymore. As all fields are final and nothing is
+ * modified afterwards, a definition can be published to and read by several threads without further synchronisation. The only exception
+ * is the compiled Dispatcher, which is created lazily on first request.
+ *
+ * @param <S> The type defining the states the Statemachine knows of.
+ * @param <E> The type defining the events the Statemachine listens to.
+ * @param <O> The object type which is put on the context for actions to work with.
+ */
+public final class StatemachineDefinition<S, E, O> {
+
+    private final Class<S> stateType;
+    private final Class<E> eventType;
+    private final Class<O> objectType;
+    private final S initialState;
+    private final S finalState;
+    private final Map<S, State<S, E, O>> states;
+    /* All states and all transitions of all states, each indexed by their index field */
+    private final State<S, E, O>[] statesByIndex;
+    private final Transition<S, E, O>[] transitionsByIndex;
+    /* Indexed by the ordinal of the LifecycleEvent */
+    private final Action<O>[] genericActions;
+    private final DispatchTable<S, E, O> dispatchTable;
+    private volatile Dispatcher<S, E, O> compiledDispatcher;
+
+    StatemachineDefinition(Class<S> stateType, Class<E> eventType, Class<O> objectType, S initialState, S finalState,
+                           Map<S, State<S, E, O>> states, Map<LifecycleEvent<?>, Action<O>> genericActions) {
+        this.stateType = stateType;
+        this.eventType = eventType;
+        this.objectType = objectType;
+        this.initialState = initialState;
+        this.finalState = finalState;
+        states.values().forEach(State::freeze);
+        this.states = Collections.unmodifiableMap(new HashMap<>(states));
+        this.statesByIndex = indexStates(this.states.values());
+        this.transitionsByIndex = indexTransitions(statesByIndex);
+        this.genericActions = toArray(genericActions);
+        this.dispatchTable = DispatchTable.build(stateType, eventType, this.states.values());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S, E, O> State<S, E, O>[] indexStates(Collection<State<S, E, O>> states) {
+        State<S, E, O>[] indexed = states.toArray(new State[states.size()]);
+        for (int i = 0; i < indexed.length; i++) {
+            indexed[i].index = i;
+        }
+        return indexed;
+    }
+
+    private static <S, E, O> Transition<S, E, O>[] indexTransitions(State<S, E, O>[] states) {
+        List<Transition<S, E, O>> indexed = new ArrayList<>();
+        for (State<S, E, O> state : states) {
+            for (Transition<S, E, O> transition : state.getTransitions()) {
+                transition.index = indexed.size();
+                indexed.add(transition);
+            }
+        }
+        return Transition.toArray(indexed);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <O> Action<O>[] toArray(Map<LifecycleEvent<?>, Action<O>> genericActions) {
+        int length = 0;
+        for (LifecycleEvent<?> event : genericActions.keySet()) {
+            length = Math.max(length, event.getOrdinal() + 1);
+        }
+        Action<O>[] actions = new Action[length];
+        genericActions.forEach((event, action) -> actions[event.getOrdinal()] = action);
+        return actions;
+    }
+
+    public Class<S> getStateType() {
+        return stateType;
+    }
+
+    public Class<E> getEventType() {
+        return eventType;
+    }
+
+    public Class<O> getObjectType() {
+        return objectType;
+    }
+
+    public S getInitialState() {
+        return initialState;
+    }
+
+    public S getFinalState() {
+        return finalState;
+    }
+
+    /**
+     * @return An unmodifiable set containing the ids of all states of this definition.
+     */
+    public Set<S> getStates() {
+        return states.keySet();
+    }
+
+    /**
+     * @return The state with the given id or null if there is none.
+     */
+    State<S, E, O> getState(S id) {
+        return states.get(id);
+    }
+
+    /**
+     * @return The generic action registered for the given lifecycle event or null if there is none.
+     */
+    Action<O> getGenericAction(LifecycleEvent<?> event) {
+        int ordinal = event.getOrdinal();
+        return ordinal < genericActions.length ? genericActions[ordinal] : null;
+    }
+
+    /**
+     * @return All transitions exiting state on event by descending priority, then in the order they were configured. The returned array
+     * must not be modified.
+     */
+    Transition<S, E, O>[] getTransitions(S state, E event) {
+        return dispatchTable.getTransitions(state, event);
+    }
+
+    /**
+     * @return All states, each at the position of its index. The returned array must not be modified.
+     */
+    State<S, E, O>[] getStatesByIndex() {
+        return statesByIndex;
+    }
+
+    /**
+     * @return The transitions of all states, each at the position of its index. The returned array must not be modified.
+     */
+    Transition<S, E, O>[] getTransitionsByIndex() {
+        return transitionsByIndex;
+    }
+
+    /**
+     * @return The generic actions, each at the position of the ordinal of its LifecycleEvent. The returned array must not be modified.
+     */
+    Action<O>[] getGenericActions() {
+        return genericActions;
+    }
+
+    /**
+     * @return True if the state type as well as the event type are enums.
+     */
+    boolean hasEnumTypes() {
+        return stateType.isEnum() && eventType.isEnum();
+    }
+
+    private static boolean isBytecodeLibraryAvailable() {
+        try {
+            Class.forName("org.objectweb.asm.ClassWriter", false, StatemachineDefinition.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            LoggerFactory.getLogger(StatemachineDefinition.class).warn("ASM is not on the classpath. The statemachine can't be compiled.");
+            return false;
+        }
+    }
+
+    /**
+     * Gets a Dispatcher with a class generated specifically for this definition, see DispatcherCompiler. It is created on first request
+     * and shared by all statemachines using this definition. If the definition can't be compiled, e.g. because the bytecode library is
+     * missing, the returned Dispatcher interprets the definition instead.
+     */
+    Dispatcher<S, E, O> getCompiledDispatcher() {
+        Dispatcher<S, E, O> dispatcher = compiledDispatcher;
+        if (dispatcher == null) {
+            synchronized (this) {
+                dispatcher = compiledDispatcher;
+                if (dispatcher == null) {
+                    // DispatcherCompiler must not even be loaded if the bytecode library is missing.
+                    dispatcher = isBytecodeLibraryAvailable() ? DispatcherCompiler.compile(this) : null;
+                    if (dispatcher == null) {
+                        dispatcher = new InterpretingDispatcher<>(this);
+                    }
+                    compiledDispatcher = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    /**
+     * @return True if this definition was created for the given types.
+     */
+    boolean isCompatibleWith(Class<?> stateType, Class<?> eventType, Class<?> objectType) {
+        return this.stateType.equals(stateType) && this.eventType.equals(eventType) && this.objectType.equals(objectType);
+    }
+}
@@ -1,6 +1,7 @@
 package de.core_concepts.statemachine;
 
 
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Predicate;
 
@@ -17,27 +18,79 @@ import java.util.function.Predicate;
  */
 public class Transition<S, E, O> {
 
-    private State<S, E, O> toState;
-    private Optional<E> event;
-    private Optional<Class<? extends RuntimeException>> error;
-    private Optional<Action<O>> action;
-    private Predicate<Context<O>> guard;
+    private static final Transition<?, ?, ?>[] NONE = new Transition<?, ?, ?>[0];
+
+    final State<S, E, O> toState;
+    final E event;
+    final Class<? extends RuntimeException> error;
+    final Action<O> action;
+    final Predicate<Context<O>> guard;
+    /* Transitions with a higher priority are evaluated first, see TransitionConfigurer#priority(int) */
+    final int priority;
+    private StateChange<S> stateChange;
+    /* The position of this transition within its StatemachineDefinition. Assigned when the definition is created. */
+    int index = -1;
 
     @java.beans.ConstructorProperties({"toState", "event", "error", "action", "guard"})
     Transition(State<S, E, O> toState, Optional<E> event, Optional<Class<? extends RuntimeException>> error, Optional<Action<O>> action, Predicate<Context<O>> guard) {
+        this(toState, event, error, action, guard, 0);
+    }
+
+    Transition(State<S, E, O> toState, Optional<E> event, Optional<Class<? extends RuntimeException>> error, Optional<Action<O>> action, Predicate<Context<O>> guard,
+               int priority) {
         this.toState = toState;
-        this.event = event;
-        this.error = error;
-        this.action = action;
+        this.event = event.orElse(null);
+        this.error = error.orElse(null);
+        this.action = action.orElse(null);
         this.guard = guard;
+        this.priority = priority;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <S, E, O> Transition<S, E, O>[] none() {
+        return (Transition<S, E, O>[]) NONE;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <S, E, O> Transition<S, E, O>[] toArray(List<Transition<S, E, O>> transitions) {
+        return transitions.isEmpty() ? none() : transitions.toArray(new Transition[transitions.size()]);
+    }
+
+    /**
+     * Remembers the StateChange this transition causes when traversed from the given state, so that it doesn't have to be allocated for
+     * every traversal.
+     *
+     * @param fromState The id of the state this transition exits.
+     */
+    void cacheStateChange(S fromState) {
+        stateChange = new StateChange<>(fromState, toState.getId());
+    }
+
+    /**
+     * @param fromState The id of the state the statemachine was in when this transition was traversed.
+     * @return The StateChange from fromState to the to state of this transition. Cached instance if possible.
+     */
+    StateChange<S> getStateChange(S fromState) {
+        StateChange<S> cached = stateChange;
+        if (cached != null && cached.getFromState().equals(fromState)) {
+            return cached;
+        }
+        return new StateChange<>(fromState, toState.getId());
     }
 
     boolean isErrorTransition() {
-        return !event.isPresent() && error.isPresent();
+        return event == null && error != null;
     }
 
     boolean isAutomaticTransition() {
-        return !event.isPresent() && !error.isPresent();
+        return event == null && error == null;
+    }
+
+    /**
+     * @return True if the transition was configured without a guard, i.e. may always be traversed.
+     */
+    boolean isUnguarded() {
+        return guard == TransitionConfigurer.<O>noGuard();
     }
 
     public State<S, E, O> getToState() {
@@ -45,25 +98,29 @@ public class Transition<S, E, O> {
     }
 
     public Optional<E> getEvent() {
-        return this.event;
+        return Optional.ofNullable(this.event);
     }
 
     public Optional<Class<? extends RuntimeException>> getError() {
-        return this.error;
+        return Optional.ofNullable(this.error);
     }
 
     public Optional<Action<O>> getAction() {
-        return this.action;
+        return Optional.ofNullable(this.action);
     }
 
     public Predicate<Context<O>> getGuard() {
         return this.guard;
     }
 
+    public int getPriority() {
+        return this.priority;
+    }
+
     public boolean equals(Object o) {
         if (o == this) return true;
         if (!(o instanceof Transition)) return false;
-        final Transition other = (Transition) o;
+        final Transition<?, ?, ?> other = (Transition<?, ?, ?>) o;
         final Object this$toState = this.getToState();
         final Object other$toState = other.getToState();
         if (this$toState == null ? other$toState != null : !this$toState.equals(other$toState)) return false;
@@ -22,7 +22,10 @@ import static java.util.stream.Collectors.toSet;
  */
 public class TransitionConfigurer<S, E, O> {
 
-    private final Predicate<Context<O>> defaultGuard = context -> true;
+    /* The guard of transitions configured without one. Shared by all transitions, so that they can be told apart from guarded ones. */
+    private static final Predicate<Context<?>> NO_GUARD = context -> true;
+
+    private final Predicate<Context<O>> defaultGuard = noGuard();
     private final Map<S, State<S, E, O>> states;
     private final S initalState;
     private final S finalState;
@@ -32,6 +35,7 @@ public class TransitionConfigurer<S, E, O> {
     private Class<? extends RuntimeException> error;
     private Predicate<Context<O>> guard = defaultGuard;
     private Action<O> action;
+    private int priority;
     private boolean fromAll = false;
     private Set<S> excluding = new HashSet<>();
     private boolean toSelf = false;
@@ -123,6 +127,28 @@ public class TransitionConfigurer<S, E, O> {
         return this;
     }
 
+    /**
+     * Transitions exiting the same state on the same trigger are evaluated by descending priority. Transitions with equal priority are
+     * evaluated in the order they were added. With first-match guard evaluation the first transition whose guard returns true is taken,
+     * so a higher priority resolves overlapping guards, see AbstractStatemachine#isFirstMatchGuardEvaluationEnabled.
+     *
+     * @param priority The priority of the transition. Defaults to 0.
+     */
+    public TransitionConfigurer<S, E, O> priority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Only traverse the transition if the following guard completes with true. Equivalent to when(guard), but lets lambdas be used as
+     * AsyncGuard.
+     *
+     * @param guard The guard which decides whether the transition may be executed, without blocking while it does.
+     */
+    public TransitionConfigurer<S, E, O> whenAsync(AsyncGuard<O> guard) {
+        return when(guard);
+    }
+
     /**
      * @param action The action which should be executed upon transition
      */
@@ -171,7 +197,7 @@ public class TransitionConfigurer<S, E, O> {
 
         validateConfiguration();
 
-        from.forEach(fromState -> fromState.addTransition(newTransition(toSelf ? fromState : to, event, error, action, guard)));
+        from.forEach(fromState -> fromState.addTransition(newTransition(toSelf ? fromState : to, event, error, action, guard, priority)));
         clearValues();
     }
 
@@ -210,8 +236,9 @@ public class TransitionConfigurer<S, E, O> {
     }
 
     private Transition<S, E, O> newTransition(State<S, E, O> toState, E event, Class<? extends RuntimeException> error, Action<O> action,
-                                              Predicate<Context<O>> guard) {
-        return new Transition<>(toState, Optional.ofNullable(event), Optional.ofNullable(error), Optional.ofNullable(action), guard);
+                                              Predicate<Context<O>> guard, int priority) {
+        return new Transition<>(toState, Optional.ofNullable(event), Optional.ofNullable(error), Optional.ofNullable(action), guard,
+                priority);
     }
 
     private void clearValues() {
@@ -221,8 +248,14 @@ public class TransitionConfigurer<S, E, O> {
         this.error = null;
         this.action = null;
         this.guard = defaultGuard;
+        this.priority = 0;
         this.fromAll = false;
         this.excluding.clear();
         this.toSelf = false;
     }
+
+    @SuppressWarnings("unchecked")
+    static <O> Predicate<Context<O>> noGuard() {
+        return (Predicate<Context<O>>) (Predicate<?>) NO_GUARD;
+    }
 }
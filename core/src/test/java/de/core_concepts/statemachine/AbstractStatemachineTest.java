@@ -5,8 +5,23 @@ import org.junit.Test;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import static de.core_concepts.statemachine.TestEvent.EVENT1;
@@ -15,7 +30,14 @@ import static de.core_concepts.statemachine.TestState.*;
 import static java.util.Collections.emptyList;
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -439,6 +461,91 @@ public class AbstractStatemachineTest {
         };
     }
 
+    @Test
+    public void testStateTransition_FirstMatch_Stops_At_First_Passing_Guard() throws Exception {
+        Predicate<Context> guard2A = mock(Predicate.class);
+        Predicate<Context> guard2B = mock(Predicate.class);
+        doReturn(true).when(guard2A).test(any());
+        doReturn(true).when(guard2B).test(any());
+        TestStatemachine testGF = firstMatchGF(guard2A, 0, guard2B, 0, 0);
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        verify(guard2A).test(any());
+        verifyNoMoreInteractions(guard2A, guard2B);
+        assertTargetState(STATE2A, testObject);
+    }
+
+    @Test
+    public void testStateTransition_FirstMatch_Higher_Priority_Evaluated_First() throws Exception {
+        Predicate<Context> guard2A = mock(Predicate.class);
+        Predicate<Context> guard2B = mock(Predicate.class);
+        doReturn(true).when(guard2A).test(any());
+        doReturn(true).when(guard2B).test(any());
+        TestStatemachine testGF = firstMatchGF(guard2A, 0, guard2B, 1, 0);
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        verify(guard2B).test(any());
+        verifyNoMoreInteractions(guard2A, guard2B);
+        assertTargetState(STATE2B, testObject);
+    }
+
+    @Test(expected = TransitionException.class)
+    public void testStateTransition_FirstMatch_Verification_Multiple_Passing_Guards_Of_Equal_Priority() throws Exception {
+        Predicate<Context> guard2A = mock(Predicate.class);
+        Predicate<Context> guard2B = mock(Predicate.class);
+        doReturn(true).when(guard2A).test(any());
+        doReturn(true).when(guard2B).test(any());
+        TestStatemachine testGF = firstMatchGF(guard2A, 0, guard2B, 0, 100);
+
+        testGF.sendEvent(EVENT1, testObject);
+    }
+
+    @Test
+    public void testStateTransition_FirstMatch_Verification_Skips_Lower_Priorities() throws Exception {
+        Predicate<Context> guard2A = mock(Predicate.class);
+        Predicate<Context> guard2B = mock(Predicate.class);
+        doReturn(true).when(guard2A).test(any());
+        doReturn(true).when(guard2B).test(any());
+        TestStatemachine testGF = firstMatchGF(guard2A, 0, guard2B, 1, 100);
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        verify(guard2B).test(any());
+        verifyNoMoreInteractions(guard2A, guard2B);
+        assertTargetState(STATE2B, testObject);
+    }
+
+    private TestStatemachine firstMatchGF(final Predicate guard2A, final int priority2A, final Predicate guard2B, final int priority2B,
+                                          final int verificationPercentage) {
+        return new TestStatemachine() {
+
+            @Override
+            public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+                state.withId(TestState.STATE1).add();
+                state.withId(TestState.STATE2A).add();
+                state.withId(TestState.STATE2B).add();
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(TestState.STATE1).to(TestState.STATE2A).onEvent(TestEvent.EVENT1).when(guard2A).priority(priority2A).add();
+                transition.from(TestState.STATE1).to(TestState.STATE2B).onEvent(TestEvent.EVENT1).when(guard2B).priority(priority2B).add();
+            }
+
+            @Override
+            protected boolean isFirstMatchGuardEvaluationEnabled() {
+                return true;
+            }
+
+            @Override
+            protected int getGuardVerificationPercentage() {
+                return verificationPercentage;
+            }
+        };
+    }
+
     @Test
     public void testValidationResultResetAfterTransition() throws Exception {
         TestStatemachine testGF = new TestStatemachine();
@@ -777,6 +884,7 @@ public class AbstractStatemachineTest {
         testGF.sendEvent(EVENT1, testObject);
 
         assertTrue(testGF.getContext().getLifecycleEventData().isEmpty());
+        assertFalse(testGF.getContext().hasData());
     }
 
     @Test
@@ -793,6 +901,7 @@ public class AbstractStatemachineTest {
         testGF.sendEvent(EVENT1, testObject);
 
         assertTrue(testGF.getContext().getLifecycleEventData().isEmpty());
+        assertFalse(testGF.getContext().hasData());
     }
 
     @Test
@@ -810,6 +919,7 @@ public class AbstractStatemachineTest {
         testGF.sendEvent(EVENT1, testObject);
 
         assertTrue(testGF.getContext().getLifecycleEventData().isEmpty());
+        assertFalse(testGF.getContext().hasData());
     }
 
     /**
@@ -1100,6 +1210,829 @@ public class AbstractStatemachineTest {
         assertEquals(possibleEventsForState, Arrays.asList(EVENT1, EVENT2));
     }
 
+    @Test
+    public void testSendEvent_ContextReuse_ReusesContext() throws Exception {
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            protected boolean isContextReuseEnabled() {
+                return true;
+            }
+        };
+
+        testGF.sendEvent(EVENT1, testObject);
+        Context<TestObject> firstContext = testGF.getContext();
+        TestObject otherObject = new TestObject();
+        otherObject.setCurrentState(STATE1);
+        testGF.sendEvent(EVENT1, otherObject);
+
+        assertTrue(firstContext == testGF.getContext());
+        assertTrue(otherObject == testGF.getContext().getObject());
+        assertTargetState(STATE2, otherObject);
+    }
+
+    /**
+     * With context reuse enabled, a steady state dispatch must not allocate. This is measured with the allocation counter the JVM keeps
+     * per thread, repeatedly until the dispatch has been compiled.
+     */
+    @Test
+    public void testSendEvent_ContextReuse_DoesNotAllocate() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+                state.withId(STATE1).onEntryAction(Action.of(context -> context.getObject().setCurrentState(STATE1))).add();
+                state.withId(STATE2).onEntryAction(Action.of(context -> context.getObject().setCurrentState(STATE2))).add();
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).when(context -> context.getObject() != null).add();
+                transition.from(STATE2).to(STATE1).onEvent(EVENT2).action(Action.of(context -> context.getObject().hashCode())).add();
+            }
+
+            @Override
+            public void defineGenericActions(GenericActionConfigurer<TestObject> genericActionConfigurer) {
+                // None, the default one uses Optional
+            }
+
+            @Override
+            protected boolean isContextReuseEnabled() {
+                return true;
+            }
+        };
+
+        for (int i = 0; i < 50_000; i++) {
+            testGF.sendEvent(EVENT1, testObject);
+            testGF.sendEvent(EVENT2, testObject);
+        }
+
+        // Reading the counter may allocate itself, so determine what reading it costs first.
+        long calibrationStart = threadMXBean.getThreadAllocatedBytes(threadId);
+        long calibration = threadMXBean.getThreadAllocatedBytes(threadId) - calibrationStart;
+
+        // Until the JIT compiler has finished, e.g. on a busy machine, allocations eliminated by escape analysis still take place
+        long allocated = -1;
+        for (int attempt = 0; attempt < 10 && allocated != 0; attempt++) {
+            long start = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 10_000; i++) {
+                testGF.sendEvent(EVENT1, testObject);
+                testGF.sendEvent(EVENT2, testObject);
+            }
+            allocated = threadMXBean.getThreadAllocatedBytes(threadId) - start - calibration;
+        }
+
+        assertEquals(0L, allocated);
+        assertTargetState(STATE1, testObject);
+    }
+
+    /**
+     * A long chain of automatic transitions must not grow the stack.
+     */
+    @Test
+    public void testStateTransition_Long_Automatic_Chain() throws Exception {
+        int chainLength = 100_000;
+        int[] traversals = new int[1];
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).toSelf().when(context -> traversals[0] < chainLength)
+                        .action(Action.of(context -> traversals[0]++)).add();
+            }
+
+            @Override
+            protected int getMaxStepsPerDispatch() {
+                return chainLength + 1;
+            }
+        };
+
+        testGF.proceed(testObject);
+
+        assertEquals(chainLength, traversals[0]);
+    }
+
+    /**
+     * A cycle of automatic transitions is stopped after getMaxStepsPerDispatch steps and reported.
+     */
+    @Test
+    public void testStateTransition_Automatic_Cycle_Exceeds_Max_Steps() throws Exception {
+        Action action = mock(Action.class);
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+                state.withId(STATE1).add();
+                state.withId(STATE2).add();
+                state.withId(STATE3).add();
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).add();
+                transition.from(STATE2).to(STATE3).action(action).add();
+                transition.from(STATE3).to(STATE2).add();
+            }
+
+            @Override
+            protected int getMaxStepsPerDispatch() {
+                return 50;
+            }
+        };
+
+        try {
+            testGF.sendEvent(EVENT1, testObject);
+            fail("TransitionException expected");
+        } catch (TransitionException e) {
+            assertThat(e.getMessage(), containsString("50"));
+            assertThat(e.getMessage(), endsWith("STATE3 -> STATE2 -> STATE3"));
+        }
+        verify(action, times(25)).execute(any());
+    }
+
+    /**
+     * An event sent by an action is processed after the current dispatch completed rather than in the middle of it.
+     */
+    @Test
+    public void testSendEvent_From_Action_Is_Queued() throws Exception {
+        Action<TestObject> successfulStateChangeAction = mock(Action.class);
+        Action secondAction = mock(Action.class);
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+                state.withId(STATE1).add();
+                state.withId(STATE2).add();
+                state.withId(STATE3).add();
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1)
+                        .action(Action.of(context -> sendEvent(EVENT2, context.getObject())))
+                        .add();
+                transition.from(STATE2).to(STATE3).onEvent(EVENT2).action(secondAction).add();
+            }
+
+            @Override
+            public void defineGenericActions(GenericActionConfigurer<TestObject> genericActionConfigurer) {
+                genericActionConfigurer.on(LifecycleEvent.SUCCESSFUL_STATE_CHANGE)
+                        .execute(ChainedAction.firstDo(successfulStateChangeAction)
+                                .thenDo(context -> context.getObject().setCurrentState(
+                                        (TestState) context.getDataFor(LifecycleEvent.SUCCESSFUL_STATE_CHANGE).get().getToState())))
+                        .add();
+            }
+        };
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        InOrder inOrder = Mockito.inOrder(successfulStateChangeAction, secondAction);
+        inOrder.verify(successfulStateChangeAction).execute(any());
+        inOrder.verify(secondAction).execute(any());
+        inOrder.verify(successfulStateChangeAction).execute(any());
+        assertTargetState(STATE3, testObject);
+    }
+
+    @Test
+    public void testSharedDefinition_TransitionsOnEvent() throws Exception {
+        Action transitAction = mock(Action.class);
+        TestStatemachine template = new TestStatemachine() {
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).action(transitAction).add();
+            }
+        };
+        TestStatemachine testGF = new TestStatemachine(template.getDefinition());
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        assertThat(testGF.getDefinition(), sameInstance(template.getDefinition()));
+        verify(transitAction).execute(any());
+        assertTargetState(STATE2, testObject);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSharedDefinition_DifferentTypes() throws Exception {
+        StatemachineDefinition definition = new StatemachineDefinition<>(TestState.class, UnkownEvent.class, TestObject.class, INITIAL,
+                FINAL, new HashMap<>(), new HashMap<>());
+
+        new TestStatemachine(definition);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInitStateMachine_StatesAreFrozen() throws Exception {
+        TestStatemachine testGF = new TestStatemachine();
+
+        testGF.getState(STATE1).addTransition(new Transition<>(testGF.getState(STATE2), Optional.of(EVENT2), Optional.empty(),
+                Optional.empty(), context -> true));
+    }
+
+    @Test
+    public void testSendEvent_ExplicitContext_NotBoundToThread() throws Exception {
+        List<Context<TestObject>> contexts = new ArrayList<>();
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            protected boolean isThreadBoundContextEnabled() {
+                return false;
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).action(Action.of(contexts::add)).add();
+            }
+        };
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        assertTargetState(STATE2, testObject);
+        assertThat(contexts.get(0).getObject(), sameInstance(testObject));
+        assertThat(testGF.getContext(), nullValue());
+    }
+
+    @Test
+    public void testSendEvent_ExplicitContext_ContextReuse_DoesNotRetainObject() throws Exception {
+        List<Context<TestObject>> contexts = new ArrayList<>();
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            protected boolean isThreadBoundContextEnabled() {
+                return false;
+            }
+
+            @Override
+            protected boolean isContextReuseEnabled() {
+                return true;
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).action(Action.of(contexts::add)).add();
+            }
+        };
+        TestObject otherObject = new TestObject();
+        otherObject.setCurrentState(STATE1);
+
+        testGF.sendEvent(EVENT1, testObject);
+        assertThat(contexts.get(0).getObject(), nullValue());
+        testGF.sendEvent(EVENT1, otherObject);
+
+        assertThat(contexts.get(1), sameInstance(contexts.get(0)));
+        assertThat(contexts.get(1).getObject(), nullValue());
+        assertTargetState(STATE2, otherObject);
+    }
+
+    @Test
+    public void testSendEvent_ExplicitContext_From_Action_Is_Queued() throws Exception {
+        Action secondAction = mock(Action.class);
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            protected boolean isThreadBoundContextEnabled() {
+                return false;
+            }
+
+            @Override
+            public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+                state.withId(STATE1).add();
+                state.withId(STATE2).add();
+                state.withId(STATE3).add();
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1)
+                        .action(Action.of(context -> sendEvent(EVENT2, context.getObject())))
+                        .add();
+                transition.from(STATE2).to(STATE3).onEvent(EVENT2).action(secondAction).add();
+            }
+        };
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        verify(secondAction).execute(any());
+        assertTargetState(STATE3, testObject);
+    }
+
+    @Test
+    public void testSendEvents_One_Batch_Transaction_Per_Chunk() throws Exception {
+        TestStatemachine testGF = spy(new TestStatemachine() {
+            @Override
+            protected int getBatchTransactionSize() {
+                return 2;
+            }
+        });
+        List<TestObject> objects = objectsInState1(5);
+
+        BatchResult result = testGF.sendEvents(EVENT1, objects);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(5, result.getSucceededCount());
+        objects.forEach(object -> assertTargetState(STATE2, object));
+        verify(testGF, times(3)).createBatchTransaction();
+        verify(testGF, times(3)).closeBatchTransaction(false);
+        verify(testGF, never()).closeBatchTransaction(true);
+    }
+
+    @Test
+    public void testSendEvents_Failure_Of_One_Object_Is_Isolated() throws Exception {
+        List<TestObject> objects = objectsInState1(3);
+        RuntimeException error = new IllegalStateException();
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).action(Action.of(context -> {
+                    if (context.getObject() == objects.get(1)) {
+                        throw error;
+                    }
+                })).add();
+            }
+        };
+
+        BatchResult result = testGF.sendEvents(EVENT1, objects);
+
+        assertEquals(2, result.getSucceededCount());
+        assertEquals(1, result.getFailedCount());
+        assertEquals(1, result.getFailures().get(0).getIndex());
+        assertThat(result.getFailures().get(0).getObject(), sameInstance(objects.get(1)));
+        assertThat(result.getFailures().get(0).getError(), sameInstance(error));
+        assertTargetState(STATE2, objects.get(0));
+        assertNoTransition(objects.get(1));
+        assertTargetState(STATE2, objects.get(2));
+    }
+
+    @Test
+    public void testSendEvents_Object_Of_Wrong_Type_Is_Reported() throws Exception {
+        TestStatemachine testGF = new TestStatemachine();
+        Object wrongObject = new Object();
+
+        BatchResult result = testGF.sendEvents(EVENT1, Arrays.asList(testObject, wrongObject));
+
+        assertEquals(1, result.getSucceededCount());
+        assertThat(result.getFailures().get(0).getObject(), sameInstance(wrongObject));
+        assertTrue(result.getFailures().get(0).getError() instanceof IllegalArgumentException);
+        assertTargetState(STATE2, testObject);
+    }
+
+    @Test
+    public void testSendEvents_Failed_Commit_Fails_Whole_Chunk() throws Exception {
+        RuntimeException commitError = new IllegalStateException();
+        TestStatemachine testGF = new TestStatemachine() {
+            private int commits;
+
+            @Override
+            protected int getBatchTransactionSize() {
+                return 2;
+            }
+
+            @Override
+            protected void closeBatchTransaction(boolean rollback) {
+                if (commits++ == 1) {
+                    throw commitError;
+                }
+            }
+        };
+
+        BatchResult result = testGF.sendEvents(EVENT1, objectsInState1(5));
+
+        assertEquals(3, result.getSucceededCount());
+        assertEquals(2, result.getFailedCount());
+        assertEquals(2, result.getFailures().get(0).getIndex());
+        assertEquals(3, result.getFailures().get(1).getIndex());
+        assertThat(result.getFailures().get(1).getError(), sameInstance(commitError));
+    }
+
+    @Test
+    public void testSendEvents_Mixed_Events_With_Data() throws Exception {
+        List<Object> eventData = new ArrayList<>();
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public void defineGenericActions(GenericActionConfigurer<TestObject> genericActionConfigurer) {
+                super.defineGenericActions(genericActionConfigurer);
+                genericActionConfigurer.on(LifecycleEvent.EVENT_RECEIVED)
+                        .execute(Action.of(context -> eventData.add(context.getDataFor(LifecycleEvent.EVENT_RECEIVED).orElse(null))))
+                        .add();
+            }
+        };
+        TestObject otherObject = new TestObject();
+        otherObject.setCurrentState(STATE1);
+
+        BatchResult result = testGF.sendEvents(Arrays.asList(new BatchEvent(EVENT1, testObject, "first"),
+                new BatchEvent(EVENT2, otherObject)));
+
+        assertTrue(result.isSuccessful());
+        assertEquals(Arrays.asList("first", null), eventData);
+        assertTargetState(STATE2, testObject);
+        assertNoTransition(otherObject);
+    }
+
+    @Test
+    public void testSendEventAsync_Completes_With_StateChange() throws Exception {
+        List<Runnable> executed = new ArrayList<>();
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            protected Executor getAsyncExecutor() {
+                return command -> {
+                    executed.add(command);
+                    ForkJoinPool.commonPool().execute(command);
+                };
+            }
+        };
+
+        StateChange<?> stateChange = testGF.sendEventAsync(EVENT1, testObject).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, executed.size());
+        assertEquals(STATE1, stateChange.getFromState());
+        assertEquals(STATE2, stateChange.getToState());
+        assertTargetState(STATE2, testObject);
+    }
+
+    @Test
+    public void testSendEventAsync_Completes_Exceptionally() throws Exception {
+        Predicate<Context> guard = context -> true;
+        TestStatemachine testGF = multipleToStatesGF(guard, guard);
+
+        CompletableFuture<StateChange<?>> future = testGF.sendEventAsync(EVENT1, testObject);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TransitionException);
+        }
+    }
+
+    @Test
+    public void testSendEventAsync_Completes_Exceptionally_If_Action_Throws_Error() throws Exception {
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).action(Action.of(context -> {
+                    throw new AssertionError("Action failed");
+                })).add();
+            }
+        };
+
+        CompletableFuture<StateChange<?>> future = testGF.sendEventAsync(EVENT1, testObject);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+    }
+
+    @Test
+    public void testProceedAsync_Completes_Exceptionally_If_Current_State_Fails() throws Exception {
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public TestState getCurrentState(Object object) {
+                throw new IllegalStateException("State unavailable");
+            }
+        };
+
+        CompletableFuture<StateChange<?>> future = testGF.proceedAsync(testObject);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testSendEventAsync_From_Action_Runs_After_Current_Dispatch() throws Exception {
+        List<CompletableFuture<StateChange<?>>> futures = new ArrayList<>();
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            protected Executor getAsyncExecutor() {
+                return command -> fail("Must not use the executor for dispatches requested by actions");
+            }
+
+            @Override
+            public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+                state.withId(STATE1).add();
+                state.withId(STATE2).add();
+                state.withId(STATE3).add();
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1)
+                        .action(Action.of(context -> futures.add(sendEventAsync(EVENT2, context.getObject()))))
+                        .add();
+                transition.from(STATE2).to(STATE3).onEvent(EVENT2).add();
+            }
+        };
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        assertTrue(futures.get(0).isDone());
+        assertEquals(STATE2, futures.get(0).get().getFromState());
+        assertEquals(STATE3, futures.get(0).get().getToState());
+    }
+
+    @Test
+    public void testProceedAsync_Without_Transition() throws Exception {
+        TestStatemachine testGF = new TestStatemachine();
+
+        StateChange<?> stateChange = testGF.proceedAsync(testObject).get(5, TimeUnit.SECONDS);
+
+        assertEquals(STATE1, stateChange.getFromState());
+        assertEquals(STATE1, stateChange.getToState());
+    }
+
+    @Test
+    public void testSendEventAsync_Does_Not_Block_On_AsyncAction() throws Exception {
+        CompletableFuture<Void> remoteCall = new CompletableFuture<>();
+        TestStatemachine testGF = asyncGF(AsyncAction.ofStage(context -> remoteCall), null);
+
+        CompletableFuture<StateChange<?>> future = testGF.sendEventAsync(EVENT1, testObject);
+
+        assertFalse(future.isDone());
+        assertNoTransition(testObject);
+
+        remoteCall.complete(null);
+
+        assertTrue(future.isDone());
+        assertEquals(STATE2, future.get().getToState());
+        assertTargetState(STATE2, testObject);
+    }
+
+    @Test
+    public void testSendEventAsync_Does_Not_Block_On_AsyncGuard() throws Exception {
+        CompletableFuture<Boolean> remoteCheck = new CompletableFuture<>();
+        TestStatemachine testGF = asyncGF(null, context -> remoteCheck);
+
+        CompletableFuture<StateChange<?>> future = testGF.sendEventAsync(EVENT1, testObject);
+
+        assertFalse(future.isDone());
+
+        remoteCheck.complete(false);
+
+        assertEquals(STATE2B, future.get().getToState());
+        assertTargetState(STATE2B, testObject);
+    }
+
+    @Test
+    public void testSendEventAsync_Failed_AsyncAction_Triggers_Error_Transition() throws Exception {
+        CompletableFuture<Void> remoteCall = new CompletableFuture<>();
+        TestStatemachine testGF = asyncGF(AsyncAction.ofStage(context -> remoteCall), null);
+
+        CompletableFuture<StateChange<?>> future = testGF.sendEventAsync(EVENT1, testObject);
+        remoteCall.completeExceptionally(new IllegalStateException("Remote call failed"));
+
+        assertEquals(STATE3, future.get().getToState());
+        assertTargetState(STATE3, testObject);
+    }
+
+    @Test
+    public void testSendEvent_Waits_For_AsyncAction() throws Exception {
+        TestStatemachine testGF = asyncGF(AsyncAction.ofStage(context -> CompletableFuture.runAsync(Thread::yield)), null);
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        assertTargetState(STATE2, testObject);
+    }
+
+    /**
+     * Transits from STATE1 to STATE2 on EVENT1 executing the action, if the guard passes, and to STATE2B otherwise. Transits to STATE3
+     * if an exception occurs. Dispatches asynchronous events on the calling thread.
+     */
+    private TestStatemachine asyncGF(AsyncAction<TestObject> action, AsyncGuard<TestObject> guard) {
+        return new TestStatemachine() {
+            @Override
+            protected Executor getAsyncExecutor() {
+                return Runnable::run;
+            }
+
+            @Override
+            public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+                state.withId(STATE1).add();
+                state.withId(STATE2).add();
+                state.withId(STATE2B).add();
+                state.withId(STATE3).add();
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                AsyncGuard<TestObject> passingGuard = guard != null ? guard : context -> CompletableFuture.completedFuture(true);
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).whenAsync(passingGuard).action(action).add();
+                transition.from(STATE1).to(STATE2B).onEvent(EVENT1).when(context -> guard != null).add();
+                transition.from(STATE1).to(STATE3).onError(RuntimeException.class).add();
+            }
+        };
+    }
+
+    @Test
+    public void testLockStriping_Disabled_By_Default() throws Exception {
+        assertThat(new TestStatemachine().getLockStripeStatistics(), nullValue());
+    }
+
+    @Test
+    public void testLockStriping_Serializes_Concurrent_Events_For_Same_Object() throws Exception {
+        AtomicBoolean overlapped = new AtomicBoolean();
+        TestStatemachine testGF = lockStripedGF(16, null, overlapped);
+
+        sendConcurrently(testGF, Collections.nCopies(800, testObject));
+
+        assertFalse(overlapped.get());
+        LockStripeStatistics statistics = testGF.getLockStripeStatistics();
+        assertEquals(16, statistics.getStripeCount());
+        long acquisitions = 0;
+        for (int i = 0; i < statistics.getStripeCount(); i++) {
+            acquisitions += statistics.getAcquisitions(i);
+        }
+        assertEquals(800, acquisitions);
+    }
+
+    @Test
+    public void testLockStriping_Serializes_Objects_With_Same_Key() throws Exception {
+        AtomicBoolean overlapped = new AtomicBoolean();
+        TestStatemachine testGF = lockStripedGF(64, "same key", overlapped);
+
+        sendConcurrently(testGF, objectsInState1(800));
+
+        assertFalse(overlapped.get());
+    }
+
+    private static void sendConcurrently(TestStatemachine testGF, List<TestObject> objects) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (TestObject object : objects) {
+                futures.add(executor.submit(() -> testGF.sendEvent(EVENT1, object)));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Stays in STATE1 on EVENT1 and records whether actions for objects with the same key overlapped.
+     *
+     * @param key The key of all objects, or null if each object is its own key.
+     */
+    private TestStatemachine lockStripedGF(int stripes, Object key, AtomicBoolean overlapped) {
+        AtomicInteger active = new AtomicInteger();
+        return new TestStatemachine() {
+            @Override
+            protected int getLockStripeCount() {
+                return stripes;
+            }
+
+            @Override
+            protected Object getObjectKey(TestObject object) {
+                return key != null ? key : object;
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE1).onEvent(EVENT1).action(Action.of(context -> {
+                    if (active.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    Thread.yield();
+                    active.decrementAndGet();
+                })).add();
+            }
+        };
+    }
+
+    @Test
+    public void testLifecycleListener_Notified_Of_Lifecycle_Events() throws Exception {
+        TestStatemachine testGF = new TestStatemachine();
+        List<LifecycleEvent<?>> events = new ArrayList<>();
+        List<Object> data = new ArrayList<>();
+        testGF.addLifecycleListener((event, context) -> {
+            events.add(event);
+            data.add(context.getDataFor(event).orElse(null));
+        });
+
+        testGF.sendEvent(EVENT1, testObject, "eventData");
+        testGF.sendEvent(EVENT1, testObject);
+
+        assertEquals(Arrays.asList(LifecycleEvent.EVENT_RECEIVED, LifecycleEvent.SUCCESSFUL_STATE_CHANGE, LifecycleEvent.EVENT_RECEIVED,
+                LifecycleEvent.UNKNOWN_EVENT), events);
+        assertEquals("eventData", data.get(0));
+        assertEquals(EVENT1, data.get(3));
+    }
+
+    @Test
+    public void testLifecycleListener_Notified_By_Non_Blocking_Dispatch() throws Exception {
+        TestStatemachine testGF = asyncGF(AsyncAction.ofStage(context -> CompletableFuture.completedFuture(null)), null);
+        List<LifecycleEvent<?>> events = new ArrayList<>();
+        testGF.addLifecycleListener((event, context) -> events.add(event));
+
+        testGF.sendEventAsync(EVENT1, testObject).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList(LifecycleEvent.EVENT_RECEIVED, LifecycleEvent.SUCCESSFUL_STATE_CHANGE), events);
+    }
+
+    @Test
+    public void testRemoveLifecycleListener() throws Exception {
+        TestStatemachine testGF = new TestStatemachine();
+        List<LifecycleEvent<?>> events = new ArrayList<>();
+        LifecycleListener<TestObject> listener = (event, context) -> events.add(event);
+        testGF.addLifecycleListener(listener);
+        testGF.removeLifecycleListener(listener);
+
+        testGF.sendEvent(EVENT1, testObject);
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testSendEvent_Discards_Duplicate_Events() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        TestStatemachine testGF = deduplicatingGF(executions, null);
+        List<Object> duplicateIds = new ArrayList<>();
+        testGF.addLifecycleListener((event, context) -> {
+            if (event == LifecycleEvent.DUPLICATE_EVENT) {
+                duplicateIds.add(context.getDataFor(LifecycleEvent.DUPLICATE_EVENT).get());
+            }
+        });
+
+        testGF.sendEvent(EVENT1, testObject, "id1");
+        testGF.sendEvent(EVENT1, testObject, "id1");
+        testGF.sendEvent(EVENT1, testObject, "id2");
+        testGF.sendEvent(EVENT1, testObject);
+        testGF.sendEvent(EVENT1, testObject);
+
+        assertEquals(4, executions.get());
+        assertEquals(1, testGF.getDuplicateEventCount());
+        assertEquals(Collections.singletonList("id1"), duplicateIds);
+    }
+
+    @Test
+    public void testSendEvent_Processes_Failed_Event_Again() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        TestStatemachine testGF = deduplicatingGF(executions, new TransitionException("failed"));
+
+        try {
+            testGF.sendEvent(EVENT1, testObject, "id1");
+            fail("Exception expected");
+        } catch (TransitionException e) {
+            // expected
+        }
+        testGF.sendEvent(EVENT1, testObject, "id1");
+
+        assertEquals(2, executions.get());
+        assertEquals(0, testGF.getDuplicateEventCount());
+    }
+
+    @Test
+    public void testSendEventAsync_Discards_Duplicate_Events() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        TestStatemachine testGF = deduplicatingGF(executions, null);
+
+        testGF.sendEventAsync(EVENT1, testObject, "id1").get(5, TimeUnit.SECONDS);
+        testGF.sendEventAsync(EVENT1, testObject, "id1").get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, executions.get());
+        assertEquals(1, testGF.getDuplicateEventCount());
+    }
+
+    /**
+     * Deduplicates events by their event data. The action of the transition counts its executions and throws the failure on its first
+     * execution, if there is one.
+     */
+    private TestStatemachine deduplicatingGF(AtomicInteger executions, RuntimeException failure) {
+        return new TestStatemachine() {
+            @Override
+            protected int getDeduplicationCacheSize() {
+                return 100;
+            }
+
+            @Override
+            protected Object getEventId(TestEvent event, TestObject object, Object eventData) {
+                return eventData;
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE1).onEvent(EVENT1).action(Action.of(context -> {
+                    if (executions.incrementAndGet() == 1 && failure != null) {
+                        throw failure;
+                    }
+                })).add();
+            }
+        };
+    }
+
+    private static List<TestObject> objectsInState1(int count) {
+        List<TestObject> objects = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestObject object = new TestObject();
+            object.setCurrentState(STATE1);
+            objects.add(object);
+        }
+        return objects;
+    }
+
     enum UnkownEvent {
         TEST
     }
@@ -0,0 +1,101 @@
+package de.core_concepts.statemachine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the class {@link BulkProcessor}
+ */
+public class BulkProcessorTest {
+
+    private ExecutorService executor;
+    private List<TestObject> objects;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        objects = TwoStepStatemachine.objectsInState1(50);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testProcess_Events_Of_Same_Object_Are_Processed_In_Order() throws Exception {
+        BulkProcessor<TestObject> processor = new BulkProcessor<>(new TwoStepStatemachine(), executor).withMaxInFlight(8);
+
+        BatchResult result = processor.process(objects.stream().flatMap(object ->
+                Stream.of(new BatchEvent(EVENT1, object), new BatchEvent(EVENT2, object))));
+
+        assertThat(result.isSuccessful(), is(true));
+        assertThat(result.getSucceededCount(), is(100));
+        objects.forEach(object -> assertThat(object.getCurrentState(), is(STATE3)));
+    }
+
+    @Test
+    public void testProcess_Objects_With_Same_Key_Are_Not_Processed_Concurrently() throws Exception {
+        TwoStepStatemachine statemachine = new TwoStepStatemachine();
+        BulkProcessor<TestObject> processor = new BulkProcessor<>(statemachine, executor).withObjectKey(object -> "same key");
+
+        BatchResult result = processor.process(EVENT1, objects.stream());
+
+        assertThat(result.getSucceededCount(), is(50));
+        assertThat(statemachine.hasOverlapped(), is(false));
+    }
+
+    @Test
+    public void testProcess_Uses_Object_Key_Of_Statemachine() throws Exception {
+        TwoStepStatemachine statemachine = new TwoStepStatemachine() {
+            @Override
+            protected Object getObjectKey(TestObject object) {
+                return "same key";
+            }
+        };
+        BulkProcessor<TestObject> processor = new BulkProcessor<>(statemachine, executor);
+
+        BatchResult result = processor.process(EVENT1, objects.stream());
+
+        assertThat(result.getSucceededCount(), is(50));
+        assertThat(statemachine.hasOverlapped(), is(false));
+    }
+
+    @Test
+    public void testProcess_Reports_Failures() throws Exception {
+        BulkProcessor<TestObject> processor = new BulkProcessor<>(new TwoStepStatemachine(objects.get(3), null), executor);
+
+        BatchResult result = processor.process(EVENT1, objects.stream());
+
+        assertThat(result.getSucceededCount(), is(49));
+        assertThat(result.getFailures(), hasSize(1));
+        assertThat(result.getFailures().get(0).getIndex(), is(3));
+        assertThat(result.getFailures().get(0).getObject(), sameInstance(objects.get(3)));
+        assertThat(result.getFailures().get(0).getError(), instanceOf(IllegalStateException.class));
+        assertThat(objects.get(3).getCurrentState(), is(STATE1));
+        assertThat(result.getThroughput(), greaterThan(0.0));
+    }
+
+    @Test
+    public void testProcess_Empty_Stream() throws Exception {
+        BulkProcessor<TestObject> processor = new BulkProcessor<>(new TwoStepStatemachine(), executor);
+
+        BatchResult result = processor.process(EVENT1, IntStream.range(0, 0).mapToObj(i -> new TestObject()));
+
+        assertThat(result.isSuccessful(), is(true));
+        assertThat(result.getSucceededCount(), is(0));
+    }
+}
@@ -6,6 +6,8 @@ import org.omg.CORBA.Object;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 /**
@@ -62,4 +64,68 @@ public class ContextTest {
 
         assertEquals(data, context.getMostRecentData().get());
     }
-}
\ No newline at end of file
+
+    /**
+     * Data of lifecycle events which are not part of the ordered lifecycle events must not be considered most recent.
+     */
+    @Test
+    public void testGetMostRecentData_Ignores_PROCESSING_ERROR() throws Exception {
+        Error data = mock(Error.class);
+        context.setDataFor(LifecycleEvent.VALIDATION_ERROR, data);
+        context.setDataFor(LifecycleEvent.PROCESSING_ERROR, "error");
+
+        assertEquals(data, context.getMostRecentData().get());
+    }
+
+    @Test
+    public void testClearData() throws Exception {
+        context.setDataFor(LifecycleEvent.SUCCESSFUL_STATE_CHANGE, mock(StateChange.class));
+
+        context.clearData();
+
+        assertFalse(context.hasData());
+        assertFalse(context.getMostRecentData().isPresent());
+        assertFalse(context.getDataFor(LifecycleEvent.SUCCESSFUL_STATE_CHANGE).isPresent());
+    }
+
+    /**
+     * Data of the wrong type is not returned, e.g. if it was set via a raw LifecycleEvent.
+     */
+    @Test
+    public void testGetData_WrongType() throws Exception {
+        context.setDataFor(LifecycleEvent.VALIDATION_ERROR, "no error");
+
+        assertNull(context.getData(LifecycleEvent.VALIDATION_ERROR));
+        assertFalse(context.getMostRecentData(Error.class).isPresent());
+        assertEquals("no error", context.getMostRecentData(String.class).get());
+    }
+
+    /**
+     * A lifecycle event created after the context was created must get its own slot.
+     */
+    @Test
+    public void testGetData_LifecycleEventCreatedAfterContext() throws Exception {
+        LifecycleEvent<String> customEvent = new LifecycleEvent<>(String.class);
+
+        context.setDataFor(customEvent, "custom");
+
+        assertEquals("custom", context.getData(customEvent));
+        assertNull(context.getData(LifecycleEvent.EVENT_RECEIVED));
+        assertFalse(context.getMostRecentData().isPresent());
+    }
+
+    @Test
+    public void testGetLifecycleEventData() throws Exception {
+        StateChange stateChange = mock(StateChange.class);
+        context.setDataFor(LifecycleEvent.EVENT_RECEIVED, "data");
+        context.setDataFor(LifecycleEvent.SUCCESSFUL_STATE_CHANGE, stateChange);
+
+        assertEquals(2, context.getLifecycleEventData().size());
+        assertEquals("data", context.getLifecycleEventData().get(LifecycleEvent.EVENT_RECEIVED));
+        assertEquals(stateChange, context.getLifecycleEventData().get(LifecycleEvent.SUCCESSFUL_STATE_CHANGE));
+
+        context.clearData();
+
+        assertTrue(context.getLifecycleEventData().isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the class {@link DeduplicationCache}
+ */
+public class DeduplicationCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testRegister_Detects_Duplicates() throws Exception {
+        DeduplicationCache cache = new DeduplicationCache(10, 1000, clock::get);
+
+        assertTrue(cache.register("id1"));
+        assertTrue(cache.register("id2"));
+        assertFalse(cache.register("id1"));
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getDuplicateCount());
+    }
+
+    @Test
+    public void testRegister_Evicts_Oldest_Ids_Beyond_Max_Size() throws Exception {
+        DeduplicationCache cache = new DeduplicationCache(2, 1000, clock::get);
+
+        cache.register("id1");
+        cache.register("id2");
+        cache.register("id3");
+
+        assertEquals(2, cache.getSize());
+        assertTrue(cache.register("id1"));
+        assertFalse(cache.register("id3"));
+    }
+
+    @Test
+    public void testRegister_Expires_Ids() throws Exception {
+        DeduplicationCache cache = new DeduplicationCache(10, 1000, clock::get);
+        cache.register("id1");
+        clock.set(500);
+        cache.register("id2");
+
+        clock.set(1000);
+        assertTrue(cache.register("id1"));
+        assertFalse(cache.register("id2"));
+
+        clock.set(1500);
+        cache.register("id3");
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testForget() throws Exception {
+        DeduplicationCache cache = new DeduplicationCache(10, 1000, clock::get);
+        cache.register("id1");
+
+        cache.forget("id1");
+
+        assertEquals(0, cache.getSize());
+        assertTrue(cache.register("id1"));
+    }
+}
@@ -0,0 +1,89 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the class DispatchTable
+ */
+public class DispatchTableTest {
+
+    private Map<TestState, State<TestState, TestEvent, TestObject>> states;
+    private TransitionConfigurer<TestState, TestEvent, TestObject> configurer;
+
+    @Before
+    public void setUp() throws Exception {
+        states = new HashMap<>();
+        states.put(INITIAL, new State<>(INITIAL, Optional.empty(), Optional.empty()));
+        states.put(STATE1, new State<>(STATE1, Optional.empty(), Optional.empty()));
+        states.put(STATE2, new State<>(STATE2, Optional.empty(), Optional.empty()));
+        states.put(STATE3, new State<>(STATE3, Optional.empty(), Optional.empty()));
+        states.put(FINAL, new State<>(FINAL, Optional.empty(), Optional.empty()));
+        configurer = new TransitionConfigurer<>(states, INITIAL, FINAL);
+
+        configurer.from(STATE1).to(STATE2).onEvent(EVENT1).add();
+        configurer.from(STATE1).to(STATE3).onEvent(EVENT1).add();
+        configurer.from(STATE1).to(STATE3).onEvent(EVENT2).add();
+        configurer.from(STATE2).to(STATE3).add();
+        configurer.from(STATE2).to(STATE1).onError(RuntimeException.class).add();
+    }
+
+    @Test
+    public void testGetTransitions_Enum_ReturnsTransitionsForEventInOrder() throws Exception {
+        DispatchTable<TestState, TestEvent, TestObject> table = DispatchTable.build(TestState.class, TestEvent.class, states.values());
+
+        Transition<TestState, TestEvent, TestObject>[] transitions = table.getTransitions(STATE1, EVENT1);
+
+        assertThat(transitions, arrayWithSize(2));
+        assertThat(transitions[0].getToState().getId(), is(STATE2));
+        assertThat(transitions[1].getToState().getId(), is(STATE3));
+    }
+
+    @Test
+    public void testGetTransitions_Enum_IgnoresAutomaticAndErrorTransitions() throws Exception {
+        DispatchTable<TestState, TestEvent, TestObject> table = DispatchTable.build(TestState.class, TestEvent.class, states.values());
+
+        assertThat(table.getTransitions(STATE2, EVENT1), is(emptyArray()));
+        assertThat(table.getTransitions(STATE2, EVENT2), is(emptyArray()));
+    }
+
+    @Test
+    public void testGetTransitions_Enum_UnknownState() throws Exception {
+        DispatchTable<TestState, TestEvent, TestObject> table = DispatchTable.build(TestState.class, TestEvent.class, states.values());
+
+        assertThat(table.getTransitions(STATE4, EVENT1), is(emptyArray()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetTransitions_NonEnum_ReturnsSameTransitionsAsEnum() throws Exception {
+        Collection<State<Object, Object, TestObject>> untypedStates = (Collection<State<Object, Object, TestObject>>) (Collection<?>) states.values();
+        DispatchTable<Object, Object, TestObject> table = DispatchTable.build(Object.class, Object.class, untypedStates);
+        DispatchTable<TestState, TestEvent, TestObject> enumTable = DispatchTable.build(TestState.class, TestEvent.class, states.values());
+
+        for (State<TestState, TestEvent, TestObject> state : states.values()) {
+            for (TestEvent event : TestEvent.values()) {
+                assertThat(table.getTransitions(state.getId(), event), equalTo((Object[]) enumTable.getTransitions(state.getId(), event)));
+            }
+        }
+        assertThat(table.getTransitions(STATE4, EVENT1), is(emptyArray()));
+    }
+
+    @Test
+    public void testGetTransitions_NoMatch_SharesEmptyArray() throws Exception {
+        DispatchTable<TestState, TestEvent, TestObject> table = DispatchTable.build(TestState.class, TestEvent.class, states.values());
+
+        assertThat(table.getTransitions(STATE2, EVENT1), sameInstance(table.getTransitions(STATE3, EVENT2)));
+    }
+}
@@ -0,0 +1,100 @@
+package de.core_concepts.statemachine;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the class DispatcherCompiler. Runs all tests of AbstractStatemachineTest against generated dispatchers, as they have to behave
+ * exactly like the interpreting one.
+ */
+public class DispatcherCompilerTest extends AbstractStatemachineTest {
+
+    @BeforeClass
+    public static void enableCompilation() {
+        TestStatemachine.compileDispatcher = true;
+    }
+
+    @AfterClass
+    public static void disableCompilation() {
+        TestStatemachine.compileDispatcher = false;
+    }
+
+    @Test
+    public void testCompile_GeneratesDispatcher() throws Exception {
+        TestStatemachine testGF = new TestStatemachine();
+
+        assertThat(testGF.getDispatcher(), not(instanceOf(InterpretingDispatcher.class)));
+        assertThat(testGF.getDispatcher().getClass().getClassLoader(), not(sameInstance(Dispatcher.class.getClassLoader())));
+    }
+
+    @Test
+    public void testCompile_SharedDefinition_SharesDispatcher() throws Exception {
+        TestStatemachine template = new TestStatemachine();
+        TestStatemachine testGF = new TestStatemachine(template.getDefinition());
+
+        assertThat(testGF.getDispatcher(), sameInstance(template.getDispatcher()));
+    }
+
+    @Test
+    public void testCompile_NonEnumTypes_ReturnsNull() throws Exception {
+        Map<Object, State<Object, Object, TestObject>> states = new HashMap<>();
+        states.put("INITIAL", new State<>("INITIAL", Optional.empty(), Optional.empty()));
+        states.put("FINAL", new State<>("FINAL", Optional.empty(), Optional.empty()));
+        StatemachineDefinition<Object, Object, TestObject> definition = new StatemachineDefinition<>(Object.class, Object.class,
+                TestObject.class, "INITIAL", "FINAL", states, new HashMap<>());
+
+        assertThat(DispatcherCompiler.compile(definition), nullValue());
+        assertThat(definition.getCompiledDispatcher(), instanceOf(InterpretingDispatcher.class));
+    }
+
+    @Test
+    public void testCompile_CallsGuardsAndActionsByIndex() throws Exception {
+        Action<TestObject> action1 = mock(Action.class);
+        ContextConsumer<TestObject> consumer2 = mock(ContextConsumer.class);
+        Action<TestObject> onEntry = mock(Action.class);
+        TestStatemachine testGF = new TestStatemachine() {
+            @Override
+            public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+                state.withId(STATE1).add();
+                state.withId(STATE2).onEntryAction(onEntry).add();
+            }
+
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).when(context -> true).action(action1).add();
+                transition.from(STATE1).to(STATE2).onEvent(EVENT2).when(context -> false).action(Action.of(consumer2)).add();
+            }
+        };
+        Dispatcher<TestState, TestEvent, TestObject> dispatcher = testGF.getDispatcher();
+        Transition<TestState, TestEvent, TestObject> first = dispatcher.getTransitions(STATE1, EVENT1)[0];
+        Transition<TestState, TestEvent, TestObject> second = dispatcher.getTransitions(STATE1, EVENT2)[0];
+        Context<TestObject> context = new Context<>(new TestObject());
+
+        dispatcher.executeAction(first.index, context);
+        dispatcher.executeAction(second.index, context);
+        dispatcher.executeOnEntryAction(testGF.getState(STATE2).index, context);
+        dispatcher.executeOnEntryAction(testGF.getState(STATE1).index, context);
+        dispatcher.executeExitValidator(testGF.getState(STATE1).index, context);
+
+        assertThat(dispatcher.testGuard(first.index, context), is(true));
+        assertThat(dispatcher.testGuard(second.index, context), is(false));
+        assertThat(dispatcher.getTransitions(STATE2, EVENT1), is(emptyArray()));
+        verify(action1).execute(context);
+        verify(consumer2).accept(context);
+        verify(onEntry).execute(any());
+        verifyNoMoreInteractions(action1, consumer2, onEntry);
+    }
+}
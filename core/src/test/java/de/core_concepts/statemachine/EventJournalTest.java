@@ -0,0 +1,208 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestState.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the class {@link EventJournal}
+ */
+public class EventJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAppend_Records_Are_Read_In_Order() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (EventJournal journal = new EventJournal(directory)) {
+            assertEquals(0, journal.appendEvent(7, 1));
+            assertEquals(1, journal.appendStateChange(7, 2, 3));
+            journal.awaitDurable(1);
+            assertEquals(1, journal.getCommittedSequence());
+        }
+
+        assertEquals(Arrays.asList("event 0 7 1", "stateChange 1 7 2 3"), readAll(directory));
+    }
+
+    @Test
+    public void testWrite_Failure_Releases_Waiters_And_Closes_Journal() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        EventJournal journal = new EventJournal(directory);
+        // The segment file can't be created where a directory is
+        Files.createDirectory(directory.resolve(JournalReader.segmentName(0)));
+
+        long sequence = journal.appendEvent(7, 1);
+
+        try {
+            journal.awaitCommitted(sequence);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertNotNull(e.getCause());
+        }
+        try {
+            journal.appendEvent(7, 1);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("Writing the journal failed.", e.getMessage());
+        }
+        assertFalse(journal.close(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testClose_Without_Timeout_Does_Not_Wait() throws Exception {
+        EventJournal journal = new EventJournal(folder.getRoot().toPath());
+        journal.appendEvent(7, 1);
+
+        journal.close(0, TimeUnit.SECONDS);
+
+        assertTrue(journal.close(5, TimeUnit.SECONDS));
+        assertEquals(0, journal.getCommittedSequence());
+    }
+
+    @Test
+    public void testReopen_Continues_After_Last_Valid_Frame() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (EventJournal journal = new EventJournal(directory)) {
+            journal.appendEvent(1, 0);
+            journal.appendEvent(2, 0);
+        }
+        Path segment = JournalReader.segments(directory).get(0);
+        // A frame torn by a crash
+        Files.write(segment, new byte[]{0, 0, 0, 11, 0, 0, 0, 1, 0}, StandardOpenOption.APPEND);
+
+        try (EventJournal journal = new EventJournal(directory)) {
+            assertEquals(2, journal.getNextSequence());
+            journal.appendEvent(3, 0);
+        }
+
+        assertEquals(Arrays.asList("event 0 1 0", "event 1 2 0", "event 2 3 0"), readAll(directory));
+    }
+
+    @Test
+    public void testSegments_Are_Rolled() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (EventJournal journal = new EventJournal(directory, 70, EventJournal.FsyncPolicy.NEVER, null)) {
+            for (int i = 0; i < 10; i++) {
+                journal.awaitCommitted(journal.appendStateChange(i, 0, 1));
+            }
+        }
+
+        List<Path> segments = JournalReader.segments(directory);
+        assertEquals(5, segments.size());
+        assertEquals(2, JournalReader.firstSequenceOf(segments.get(1)));
+        assertEquals(10, readAll(directory).size());
+    }
+
+    @Test
+    public void testConcurrent_Dispatches_Share_Frames() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Path directory = folder.getRoot().toPath();
+        try (EventJournal journal = new EventJournal(directory)) {
+            for (int thread = 0; thread < 8; thread++) {
+                long objectId = thread;
+                executor.execute(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        journal.awaitDurable(journal.appendEvent(objectId, i));
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+            assertEquals(1599, journal.getCommittedSequence());
+            assertTrue(journal.getFrameCount() <= 1600);
+        }
+        assertEquals(1600, readAll(directory).size());
+    }
+
+    @Test
+    public void testInterval_Policy_Doesnt_Wait_For_Fsync() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (EventJournal journal = new EventJournal(directory, EventJournal.DEFAULT_SEGMENT_SIZE, EventJournal.FsyncPolicy.INTERVAL,
+                Duration.ofMillis(10))) {
+            journal.awaitDurable(journal.appendEvent(1, 0));
+            journal.awaitCommitted(journal.appendEvent(2, 0));
+        }
+
+        assertEquals(2, readAll(directory).size());
+    }
+
+    @Test
+    public void testStatemachine_Journals_Events_And_State_Changes() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (EventJournal journal = new EventJournal(directory)) {
+            TestStatemachine statemachine = new TestStatemachine() {
+                @Override
+                protected EventJournal getEventJournal() {
+                    return journal;
+                }
+
+                @Override
+                protected long getJournalObjectId(TestObject object) {
+                    return 42;
+                }
+            };
+            TestObject object = new TestObject();
+            object.setCurrentState(STATE1);
+
+            statemachine.sendEvent(EVENT1, object);
+            statemachine.sendEvents(EVENT1, Arrays.asList(object, object));
+
+            assertEquals(3, journal.getCommittedSequence());
+        }
+
+        assertEquals(Arrays.asList("event 0 42 " + EVENT1.ordinal(),
+                "stateChange 1 42 " + STATE1.ordinal() + " " + STATE2.ordinal(),
+                "event 2 42 " + EVENT1.ordinal(),
+                "event 3 42 " + EVENT1.ordinal()), readAll(directory));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testStatemachine_Requires_Numeric_Object_Key() throws Exception {
+        try (EventJournal journal = new EventJournal(folder.getRoot().toPath())) {
+            new TestStatemachine() {
+                @Override
+                protected EventJournal getEventJournal() {
+                    return journal;
+                }
+            }.sendEvent(EVENT1, new TestObject());
+        }
+    }
+
+    private static List<String> readAll(Path directory) {
+        List<String> records = new ArrayList<>();
+        for (Path segment : JournalReader.segments(directory)) {
+            JournalReader reader = new JournalReader(JournalReader.map(segment));
+            while (reader.nextFrame(new JournalReader.RecordHandler() {
+                @Override
+                public void event(long sequence, long objectId, int event) {
+                    records.add("event " + sequence + " " + objectId + " " + event);
+                }
+
+                @Override
+                public void stateChange(long sequence, long objectId, int fromState, int toState) {
+                    records.add("stateChange " + sequence + " " + objectId + " " + fromState + " " + toState);
+                }
+            })) {
+                // Read all frames
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,128 @@
+package de.core_concepts.statemachine;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static de.core_concepts.statemachine.TwoStepStatemachine.objectsInState1;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the class {@link EventRingBuffer}
+ */
+public class EventRingBufferTest {
+
+    private EventRingBuffer<TestObject> ringBuffer;
+
+    @After
+    public void tearDown() throws Exception {
+        ringBuffer.shutdown();
+        ringBuffer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPublish_Events_Of_Same_Object_Are_Processed_In_Order() throws Exception {
+        for (EventRingBuffer.WaitStrategy waitStrategy : new EventRingBuffer.WaitStrategy[]{EventRingBuffer.WaitStrategy.busySpin(),
+                EventRingBuffer.WaitStrategy.yielding(), EventRingBuffer.WaitStrategy.sleeping()}) {
+            ringBuffer = new EventRingBuffer<>(new TwoStepStatemachine(), 16, 4, waitStrategy);
+            List<TestObject> objects = objectsInState1(200);
+
+            for (TestObject object : objects) {
+                ringBuffer.publish(EVENT1, object);
+                ringBuffer.publish(EVENT2, object, "data");
+            }
+            ringBuffer.close();
+
+            assertThat(ringBuffer.getProcessedCount(), is(400L));
+            assertThat(ringBuffer.getBacklog(), is(0L));
+            objects.forEach(object -> assertThat(object.getCurrentState(), is(STATE3)));
+        }
+    }
+
+    @Test
+    public void testPublish_Concurrent_Producers() throws Exception {
+        ringBuffer = new EventRingBuffer<>(new TwoStepStatemachine(), 64, 2, EventRingBuffer.WaitStrategy.yielding());
+        List<TestObject> objects = objectsInState1(4000);
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int producer = 0; producer < 4; producer++) {
+                List<TestObject> share = objects.subList(producer * 1000, (producer + 1) * 1000);
+                futures.add(producers.submit(() -> share.forEach(object -> ringBuffer.publish(EVENT1, object))));
+            }
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            producers.shutdown();
+        }
+        ringBuffer.close();
+
+        assertThat(ringBuffer.getProcessedCount(), is(4000L));
+        objects.forEach(object -> assertThat(object.getCurrentState(), is(STATE2)));
+    }
+
+    @Test
+    public void testPublish_Collection_Larger_Than_Buffer() throws Exception {
+        ringBuffer = new EventRingBuffer<>(new TwoStepStatemachine(), 32);
+        List<TestObject> objects = objectsInState1(100);
+
+        ringBuffer.publish(EVENT1, objects);
+        ringBuffer.close();
+
+        assertThat(ringBuffer.getProcessedCount(), is(100L));
+        objects.forEach(object -> assertThat(object.getCurrentState(), is(STATE2)));
+    }
+
+    @Test
+    public void testPublish_Counts_Failures() throws Exception {
+        ringBuffer = new EventRingBuffer<>(new TwoStepStatemachine(), 8);
+
+        ringBuffer.publish("not a TestEvent", objectsInState1(1).get(0));
+        ringBuffer.publish(EVENT1, objectsInState1(1).get(0));
+        ringBuffer.close();
+
+        assertThat(ringBuffer.getFailedCount(), is(1L));
+        assertThat(ringBuffer.getProcessedCount(), is(1L));
+    }
+
+    @Test
+    public void testConsumers_Are_Named_Daemon_Threads() throws Exception {
+        TwoStepStatemachine statemachine = new TwoStepStatemachine();
+        ringBuffer = new EventRingBuffer<>(statemachine, 8);
+
+        ringBuffer.publish(EVENT1, objectsInState1(1).get(0));
+        ringBuffer.close();
+
+        assertThat(statemachine.getThreads().stream().map(Thread::getName).collect(Collectors.toList()), contains("statemachine-ring-0"));
+        assertThat(statemachine.getThreads().iterator().next().isDaemon(), is(true));
+    }
+
+    @Test
+    public void testShutdown_Rejects_Events() throws Exception {
+        ringBuffer = new EventRingBuffer<>(new TwoStepStatemachine(), 8);
+        ringBuffer.shutdown();
+
+        assertThat(ringBuffer.awaitTermination(5, TimeUnit.SECONDS), is(true));
+        try {
+            ringBuffer.publish(EVENT1, objectsInState1(1).get(0));
+            fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            assertThat(ringBuffer.getProcessedCount(), is(0L));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static de.core_concepts.statemachine.JournaledStatemachine.statesOf;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the class {@link JournalReplay}
+ */
+public class JournalReplayTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private final InMemoryStateStore<Long, TestState> recorded = new InMemoryStateStore<>();
+    private int eventCount;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.getRoot().toPath();
+        Random random = new Random(1);
+        try (EventJournal journal = new EventJournal(directory, 4096, EventJournal.FsyncPolicy.NEVER, null)) {
+            JournaledStatemachine statemachine = new JournaledStatemachine(recorded, journal);
+            for (int i = 0; i < 5000; i++) {
+                statemachine.sendEvent(random.nextBoolean() ? EVENT1 : EVENT2, (long) random.nextInt(1000));
+                eventCount++;
+            }
+        }
+    }
+
+    @Test
+    public void testReplayStateChanges_Rebuilds_States() throws Exception {
+        InMemoryStateStore<Long, TestState> replayed = new InMemoryStateStore<>();
+
+        ReplayResult result = new JournalReplay(directory).withParallelism(4).replayStateChanges(TestState.class, replayed);
+
+        assertEquals(statesOf(recorded), statesOf(replayed));
+        assertTrue(result.getAppliedCount() > 0);
+        assertEquals(0, result.getFailedCount());
+        assertTrue(JournalReader.segments(directory).size() > 1);
+    }
+
+    @Test
+    public void testReplayEvents_Executes_Statemachine_Again() throws Exception {
+        InMemoryStateStore<Long, TestState> replayed = new InMemoryStateStore<>();
+
+        ReplayResult result = new JournalReplay(directory).withParallelism(3)
+                .replayEvents(new JournaledStatemachine(replayed, null), id -> id);
+
+        assertEquals(statesOf(recorded), statesOf(replayed));
+        assertEquals(eventCount, result.getAppliedCount());
+    }
+
+    @Test
+    public void testReplay_From_Sequence() throws Exception {
+        InMemoryStateStore<Long, TestState> replayed = new InMemoryStateStore<>();
+        long nextSequence = new JournalReplay(directory).replayStateChanges(TestState.class, replayed).getNextSequence();
+        replayed.forEach((id, state) -> replayed.setState(id, STATE4));
+
+        ReplayResult result = new JournalReplay(directory).fromSequence(nextSequence - 10)
+                .replayStateChanges(TestState.class, replayed);
+
+        assertTrue(result.getAppliedCount() <= 10);
+        assertEquals(nextSequence, result.getNextSequence());
+        assertEquals(recorded.size(), replayed.size());
+        assertTrue(statesOf(replayed).containsValue(STATE4));
+    }
+
+    @Test
+    public void testReplay_Stops_At_Invalid_Frame() throws Exception {
+        List<Path> segments = JournalReader.segments(directory);
+        Path first = segments.get(0);
+        long firstNextSequence = JournalReader.firstSequenceOf(segments.get(1));
+        // An incomplete frame in the middle of the journal
+        Files.write(first, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        ReplayResult result = new JournalReplay(directory).replayStateChanges(TestState.class, new InMemoryStateStore<>());
+
+        assertEquals(firstNextSequence, result.getNextSequence());
+    }
+}
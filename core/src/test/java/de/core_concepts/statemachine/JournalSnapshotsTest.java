@@ -0,0 +1,165 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.JournaledStatemachine.statesOf;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the class {@link JournalSnapshots}
+ */
+public class JournalSnapshotsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private final InMemoryStateStore<Long, TestState> recorded = new InMemoryStateStore<>();
+    private final Random random = new Random(1);
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.getRoot().toPath();
+    }
+
+    @Test
+    public void testTakeSnapshot_Deletes_Covered_Segments_And_Restore_Replays_Tail() throws Exception {
+        // Every frame exceeds the segment size, so each one is written to a segment of its own
+        try (EventJournal journal = new EventJournal(directory, 1, EventJournal.FsyncPolicy.NEVER, null)) {
+            JournaledStatemachine statemachine = new JournaledStatemachine(recorded, journal);
+            sendEventsFrameByFrame(journal, statemachine, 50);
+            List<Path> before = JournalReader.segments(directory);
+            Path current = before.get(before.size() - 1);
+
+            long sequence = new JournalSnapshots<>(journal, TestState.class, recorded).takeSnapshot();
+            sendEventsFrameByFrame(journal, statemachine, 50);
+
+            assertEquals(sequence, JournalSnapshots.sequenceOf(JournalSnapshots.snapshots(directory).get(0)));
+            assertTrue(before.size() > 1);
+            for (Path covered : before.subList(0, before.size() - 1)) {
+                assertFalse(Files.exists(covered));
+            }
+            List<Path> after = JournalReader.segments(directory);
+            assertEquals(current, after.get(0));
+            assertTrue(after.size() > 1);
+            for (Path following : after.subList(1, after.size())) {
+                assertTrue(JournalReader.firstSequenceOf(following) >= sequence);
+            }
+        }
+        InMemoryStateStore<Long, TestState> restored = new InMemoryStateStore<>();
+
+        ReplayResult result = JournalSnapshots.restore(directory, TestState.class, restored);
+
+        assertEquals(statesOf(recorded), statesOf(restored));
+        assertTrue(result.getAppliedCount() >= recorded.size());
+    }
+
+    @Test
+    public void testScheduled_Snapshots_During_Dispatch() throws Exception {
+        try (EventJournal journal = new EventJournal(directory, 4096, EventJournal.FsyncPolicy.NEVER, null);
+             JournalSnapshots<TestState> snapshots = new JournalSnapshots<>(journal, TestState.class, recorded)) {
+            JournaledStatemachine statemachine = new JournaledStatemachine(recorded, journal);
+            snapshots.scheduleEvery(Duration.ofMillis(1));
+            for (int i = 0; i < 20; i++) {
+                sendEvents(statemachine, 500);
+                Thread.sleep(2);
+            }
+        }
+        InMemoryStateStore<Long, TestState> restored = new InMemoryStateStore<>();
+
+        JournalSnapshots.restore(directory, TestState.class, restored);
+
+        assertEquals(statesOf(recorded), statesOf(restored));
+        assertEquals(1, JournalSnapshots.snapshots(directory).size());
+    }
+
+    @Test
+    public void testReopen_After_Losing_Records_Before_Snapshot_Continues_After_Snapshot() throws Exception {
+        Path durable = folder.newFolder().toPath();
+        long sequence;
+        try (EventJournal journal = new EventJournal(directory, 4096, EventJournal.FsyncPolicy.NEVER, null)) {
+            JournaledStatemachine statemachine = new JournaledStatemachine(recorded, journal);
+            sendEvents(statemachine, 1000);
+            journal.awaitCommitted(journal.getNextSequence() - 1);
+            copySegments(directory, durable);
+            sendEvents(statemachine, 1000);
+            sequence = new JournalSnapshots<>(journal, TestState.class, recorded).takeSnapshot();
+        }
+        // A crash lost the records which were written after the copy
+        for (Path segment : JournalReader.segments(directory)) {
+            Files.delete(segment);
+        }
+        copySegments(durable, directory);
+        InMemoryStateStore<Long, TestState> continued = new InMemoryStateStore<>();
+        JournalSnapshots.restore(directory, TestState.class, continued);
+
+        try (EventJournal journal = new EventJournal(directory, 4096, EventJournal.FsyncPolicy.NEVER, null)) {
+            assertEquals(sequence, journal.getNextSequence());
+            sendEvents(new JournaledStatemachine(continued, journal), 1000);
+        }
+        InMemoryStateStore<Long, TestState> restored = new InMemoryStateStore<>();
+        JournalSnapshots.restore(directory, TestState.class, restored);
+
+        assertEquals(statesOf(continued), statesOf(restored));
+    }
+
+    @Test
+    public void testRestore_Without_Snapshot_Replays_Journal() throws Exception {
+        try (EventJournal journal = new EventJournal(directory, 4096, EventJournal.FsyncPolicy.NEVER, null)) {
+            sendEvents(new JournaledStatemachine(recorded, journal), 1000);
+        }
+        InMemoryStateStore<Long, TestState> restored = new InMemoryStateStore<>();
+
+        JournalSnapshots.restore(directory, TestState.class, restored);
+
+        assertEquals(statesOf(recorded), statesOf(restored));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRestore_Corrupt_Snapshot() throws Exception {
+        try (EventJournal journal = new EventJournal(directory, 4096, EventJournal.FsyncPolicy.NEVER, null)) {
+            sendEvents(new JournaledStatemachine(recorded, journal), 1000);
+            new JournalSnapshots<>(journal, TestState.class, recorded).takeSnapshot();
+        }
+        Path snapshot = JournalSnapshots.snapshots(directory).get(0);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[JournalSnapshots.HEADER_SIZE] ^= 1;
+        Files.write(snapshot, bytes);
+
+        JournalSnapshots.restore(directory, TestState.class, new InMemoryStateStore<>());
+    }
+
+    private static void copySegments(Path from, Path to) throws IOException {
+        for (Path segment : JournalReader.segments(from)) {
+            Files.copy(segment, to.resolve(segment.getFileName()));
+        }
+    }
+
+    /**
+     * Waits for the records of each event to be written before the next one is sent.
+     */
+    private void sendEventsFrameByFrame(EventJournal journal, JournaledStatemachine statemachine, int count) {
+        for (int i = 0; i < count; i++) {
+            sendEvents(statemachine, 1);
+            journal.awaitCommitted(journal.getNextSequence() - 1);
+        }
+    }
+
+    private void sendEvents(JournaledStatemachine statemachine, int count) {
+        for (int i = 0; i < count; i++) {
+            statemachine.sendEvent(random.nextBoolean() ? EVENT1 : EVENT2, (long) random.nextInt(1000));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.core_concepts.statemachine;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+
+/**
+ * Statemachine Implementation for the tests of the EventJournal, JournalReplay and JournalSnapshots. Keeps the states of objects
+ * identified by a Long in a StateStore and toggles between STATE1 and STATE2 on EVENT1 and EVENT2, after EVENT1 led from the initial
+ * state to STATE1.
+ */
+public class JournaledStatemachine extends StateStoreStatemachine<Long, TestState, TestEvent, Long> {
+
+    private final EventJournal journal;
+
+    public JournaledStatemachine(StateStore<Long, TestState> stateStore, EventJournal journal) {
+        super(TestState.class, TestEvent.class, Long.class, stateStore);
+        this.journal = journal;
+        initStateMachine();
+    }
+
+    /**
+     * @return The states held by the store.
+     */
+    public static Map<Long, TestState> statesOf(StateStore<Long, TestState> store) {
+        Map<Long, TestState> states = new HashMap<>();
+        store.forEach(states::put);
+        return states;
+    }
+
+    @Override
+    protected EventJournal getEventJournal() {
+        return journal;
+    }
+
+    @Override
+    protected Long getObjectId(Long id) {
+        return id;
+    }
+
+    @Override
+    protected void defineStates(StateConfigurer<TestState, TestEvent, Long> state) {
+        state.withId(STATE1).add();
+        state.withId(STATE2).add();
+    }
+
+    @Override
+    protected void defineTransitions(TransitionConfigurer<TestState, TestEvent, Long> transition) {
+        transition.from(INITIAL).to(STATE1).onEvent(EVENT1).add();
+        transition.from(STATE1).to(STATE2).onEvent(EVENT2).add();
+        transition.from(STATE2).to(STATE1).onEvent(EVENT1).add();
+    }
+
+    @Override
+    public TestState getStateFromString(String stateName) {
+        return TestState.valueOf(stateName);
+    }
+
+    @Override
+    public TestEvent getEventFromString(String eventName) {
+        return TestEvent.valueOf(eventName);
+    }
+
+    @Override
+    protected TestState getFinalState() {
+        return FINAL;
+    }
+
+    @Override
+    protected TestState getInitialState() {
+        return INITIAL;
+    }
+}
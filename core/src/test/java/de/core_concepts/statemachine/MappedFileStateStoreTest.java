@@ -0,0 +1,151 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static de.core_concepts.statemachine.TestState.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the class {@link MappedFileStateStore}
+ */
+public class MappedFileStateStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSetState_And_GetState() throws Exception {
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file(), TestState.class, 100)) {
+            store.setState(1L, STATE1);
+            store.setState(2L, STATE2);
+            store.setState(1L, STATE3);
+
+            assertEquals(STATE3, store.getState(1L));
+            assertEquals(STATE2, store.getState(2L));
+            assertNull(store.getState(3L));
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    public void testStates_Survive_Reopening() throws Exception {
+        Path file = file();
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file, TestState.class, 1000)) {
+            for (long id = 0; id < 1000; id++) {
+                store.setState(id, TestState.values()[(int) (id % 8)]);
+            }
+            store.removeState(5L);
+        }
+
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file, TestState.class, 10)) {
+            assertEquals(999, store.size());
+            assertEquals(STATE4, store.getState(14L));
+            assertNull(store.getState(5L));
+            Map<Long, TestState> states = new HashMap<>();
+            store.forEach(states::put);
+            assertEquals(999, states.size());
+            assertEquals(FINAL, states.get(999L));
+        }
+    }
+
+    @Test
+    public void testCompareAndSetState() throws Exception {
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file(), TestState.class, 100)) {
+            assertTrue(store.compareAndSetState(1L, null, STATE1));
+            assertFalse(store.compareAndSetState(1L, null, STATE2));
+            assertFalse(store.compareAndSetState(1L, STATE2, STATE3));
+            assertTrue(store.compareAndSetState(1L, STATE1, STATE2));
+
+            assertEquals(STATE2, store.getState(1L));
+        }
+    }
+
+    @Test
+    public void testRemoved_Slots_Are_Reused() throws Exception {
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file(), TestState.class, 100)) {
+            for (long id = 0; id < 10000; id++) {
+                store.setState(id, STATE1);
+                assertTrue(store.removeState(id));
+            }
+
+            assertEquals(0, store.size());
+            assertFalse(store.removeState(1L));
+        }
+    }
+
+    @Test
+    public void testRemoveState_Leaves_No_Removed_Slots() throws Exception {
+        Path file = file();
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file, TestState.class, 1000)) {
+            for (long id = 0; id < 1000; id++) {
+                store.setState(id, STATE1);
+            }
+            for (long id = 0; id < 1000; id += 2) {
+                assertTrue(store.removeState(id));
+            }
+            for (long id = 0; id < 1000; id++) {
+                assertEquals(id % 2 == 0 ? null : STATE1, store.getState(id));
+            }
+            for (long id = 1; id < 1000; id += 2) {
+                assertTrue(store.removeState(id));
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        for (int offset = MappedFileStateStore.HEADER_SIZE; offset < buffer.capacity(); offset += MappedFileStateStore.RECORD_SIZE) {
+            assertEquals(0, buffer.getInt(offset + 8));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSetState_Fails_If_Full() throws Exception {
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file(), TestState.class, 100)) {
+            for (long id = 0; id <= store.getCapacity() * 64; id++) {
+                store.setState(id, STATE1);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpen_Rejects_Other_Files() throws Exception {
+        Path file = file();
+        Files.write(file, new byte[64]);
+
+        new MappedFileStateStore<>(file, TestState.class, 100);
+    }
+
+    @Test
+    public void testConcurrent_Compare_And_Set() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file(), TestState.class, 10000)) {
+            for (int thread = 0; thread < 4; thread++) {
+                executor.execute(() -> {
+                    for (long id = 0; id < 5000; id++) {
+                        store.compareAndSetState(id, null, STATE1);
+                        store.compareAndSetState(id, STATE1, STATE2);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            assertEquals(5000, store.size());
+            store.forEach((id, state) -> assertEquals(STATE2, state));
+        }
+    }
+
+    private Path file() {
+        return folder.getRoot().toPath().resolve("states");
+    }
+}
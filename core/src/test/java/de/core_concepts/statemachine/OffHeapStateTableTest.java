@@ -0,0 +1,118 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static de.core_concepts.statemachine.TestState.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the class {@link OffHeapStateTable}
+ */
+public class OffHeapStateTableTest {
+
+    @Test
+    public void testSetState_And_GetState() throws Exception {
+        OffHeapStateTable<TestState> table = new OffHeapStateTable<>(TestState.class);
+        table.setState(1L, STATE1);
+        table.setState(2L, STATE2);
+        table.setState(1L, STATE3);
+        table.setOrdinal(-5L, FINAL.ordinal());
+
+        assertEquals(STATE3, table.getState(1L));
+        assertEquals(STATE2.ordinal(), table.getOrdinal(2L));
+        assertEquals(FINAL, table.getState(-5L));
+        assertNull(table.getState(3L));
+        assertEquals(-1, table.getOrdinal(3L));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void testTable_Grows() throws Exception {
+        OffHeapStateTable<TestState> table = new OffHeapStateTable<>(TestState.class);
+        long initialMemory = table.getMemoryUsage();
+        for (long id = 0; id < 100000; id++) {
+            table.setState(id * 31, TestState.values()[(int) (id % 8)]);
+        }
+        table.removeState(31L);
+
+        assertEquals(99999, table.size());
+        assertTrue(table.getMemoryUsage() > initialMemory);
+        assertEquals(STATE4, table.getState(14L * 31));
+        assertNull(table.getState(31L));
+        Map<Long, TestState> states = new HashMap<>();
+        table.forEach(states::put);
+        assertEquals(99999, states.size());
+        assertEquals(FINAL, states.get(99999L * 31));
+    }
+
+    @Test
+    public void testCompareAndSet() throws Exception {
+        OffHeapStateTable<TestState> table = new OffHeapStateTable<>(TestState.class);
+
+        assertTrue(table.compareAndSetState(1L, null, STATE1));
+        assertFalse(table.compareAndSetState(1L, null, STATE2));
+        assertFalse(table.compareAndSetOrdinal(1L, STATE2.ordinal(), STATE3.ordinal()));
+        assertTrue(table.compareAndSetOrdinal(1L, STATE1.ordinal(), STATE2.ordinal()));
+
+        assertEquals(STATE2, table.getState(1L));
+    }
+
+    @Test
+    public void testRemoved_Slots_Are_Reclaimed() throws Exception {
+        OffHeapStateTable<TestState> table = new OffHeapStateTable<>(TestState.class, 1000);
+        long initialMemory = table.getMemoryUsage();
+        for (long id = 0; id < 100000; id++) {
+            table.setState(id, STATE1);
+            assertTrue(table.removeState(id));
+        }
+
+        assertEquals(0, table.size());
+        assertEquals(initialMemory, table.getMemoryUsage());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetOrdinal_Rejects_Unknown_Ordinal() throws Exception {
+        new OffHeapStateTable<>(TestState.class).setOrdinal(1L, TestState.values().length);
+    }
+
+    @Test
+    public void testConcurrent_Compare_And_Set_Is_Atomic() throws Exception {
+        OffHeapStateTable<TestState> table = new OffHeapStateTable<>(TestState.class);
+        int stateCount = TestState.values().length;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    // Each thread advances every id 200 times, while the segments grow
+                    for (int round = 0; round < 200; round++) {
+                        for (long id = 0; id < 2000; id++) {
+                            int ordinal;
+                            do {
+                                ordinal = table.getOrdinal(id);
+                            } while (!table.compareAndSetOrdinal(id, ordinal, (ordinal + 1) % stateCount));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (long id = 0; id < 2000; id++) {
+            // Absent counts as -1, so the first advance leads to 0
+            assertEquals((800 - 1) % stateCount, table.getOrdinal(id));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package de.core_concepts.statemachine;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static de.core_concepts.statemachine.TwoStepStatemachine.objectsInState1;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the class {@link ShardedExecutor}
+ */
+public class ShardedExecutorTest {
+
+    private ShardedExecutor<TestObject> executor;
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSendEvent_Events_Of_Same_Object_Are_Processed_In_Order() throws Exception {
+        executor = new ShardedExecutor<>(new TwoStepStatemachine(), 4);
+        List<TestObject> objects = objectsInState1(50);
+        List<CompletableFuture<StateChange<?>>> futures = new ArrayList<>();
+
+        for (TestObject object : objects) {
+            futures.add(executor.sendEvent(EVENT1, object));
+            futures.add(executor.sendEvent(EVENT2, object));
+        }
+
+        for (CompletableFuture<StateChange<?>> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        objects.forEach(object -> assertThat(object.getCurrentState(), is(STATE3)));
+        assertThat(futures.get(1).get().getFromState(), is(STATE2));
+        assertThat(futures.get(1).get().getToState(), is(STATE3));
+    }
+
+    @Test
+    public void testSendEvent_Objects_With_Same_Key_Are_Processed_By_One_Thread() throws Exception {
+        TwoStepStatemachine statemachine = new TwoStepStatemachine();
+        executor = new ShardedExecutor<>(statemachine, 4).withObjectKey(object -> "same key");
+        List<CompletableFuture<StateChange<?>>> futures = new ArrayList<>();
+
+        for (TestObject object : objectsInState1(50)) {
+            futures.add(executor.sendEvent(EVENT1, object));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertThat(statemachine.hasOverlapped(), is(false));
+        assertThat(statemachine.getThreads(), hasSize(1));
+    }
+
+    @Test
+    public void testSendEvent_Uses_Object_Key_Of_Statemachine() throws Exception {
+        TwoStepStatemachine statemachine = new TwoStepStatemachine() {
+            @Override
+            protected Object getObjectKey(TestObject object) {
+                return "same key";
+            }
+        };
+        executor = new ShardedExecutor<>(statemachine, 4);
+        List<CompletableFuture<StateChange<?>>> futures = new ArrayList<>();
+
+        for (TestObject object : objectsInState1(50)) {
+            futures.add(executor.sendEvent(EVENT1, object));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertThat(statemachine.getThreads(), hasSize(1));
+    }
+
+    @Test
+    public void testSendEvent_Failing_Action_Does_Not_Stop_Shard() throws Exception {
+        TestObject failingObject = objectsInState1(1).get(0);
+        executor = new ShardedExecutor<>(new TwoStepStatemachine(failingObject, null), 1);
+
+        StateChange<?> failed = executor.sendEvent(EVENT1, failingObject).get(5, TimeUnit.SECONDS);
+
+        assertThat(failed.getToState(), is(STATE1));
+        assertThat(executor.sendEvent(EVENT1, objectsInState1(1).get(0)).get(5, TimeUnit.SECONDS).getToState(), is(STATE2));
+    }
+
+    @Test
+    public void testSendEvent_Error_Terminates_Shard() throws Exception {
+        AssertionError error = new AssertionError();
+        executor = new ShardedExecutor<>(new TestStatemachine() {
+            @Override
+            public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+                transition.from(STATE1).to(STATE2).onEvent(EVENT1).action(Action.of(context -> {
+                    throw error;
+                })).add();
+            }
+        }, 1, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+            });
+            return thread;
+        });
+
+        try {
+            executor.sendEvent(EVENT1, objectsInState1(1).get(0)).get(5, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), sameInstance((Throwable) error));
+        }
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+        try {
+            executor.sendEvent(EVENT1, objectsInState1(1).get(0));
+            fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            assertThat(e.getCause(), sameInstance((Throwable) error));
+        }
+    }
+
+    @Test
+    public void testSendEvent_Rejects_Object_Of_Wrong_Type() throws Exception {
+        executor = new ShardedExecutor<>(new TwoStepStatemachine(), 1);
+
+        try {
+            executor.sendEvent(EVENT1, "not a TestObject");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertThat(executor.getQueueDepth(0), is(0));
+        }
+    }
+
+    @Test
+    public void testGetQueueDepths() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        executor = new ShardedExecutor<>(new TwoStepStatemachine(null, release), 1);
+        List<TestObject> objects = objectsInState1(3);
+
+        CompletableFuture<StateChange<?>> last = null;
+        for (TestObject object : objects) {
+            last = executor.sendEvent(EVENT1, object);
+        }
+
+        assertThat(executor.getQueueDepth(0), is(3));
+        assertThat(executor.getQueueDepths()[0], is(3));
+        release.countDown();
+        last.get(5, TimeUnit.SECONDS);
+        assertThat(executor.getQueueDepth(0), is(0));
+    }
+
+    @Test
+    public void testShutdown_Processes_Submitted_Events() throws Exception {
+        executor = new ShardedExecutor<>(new TwoStepStatemachine(), 3);
+        List<TestObject> objects = objectsInState1(100);
+        objects.forEach(object -> executor.sendEvent(EVENT1, object));
+
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+        objects.forEach(object -> assertThat(object.getCurrentState(), is(STATE2)));
+        try {
+            executor.sendEvent(EVENT1, objects.get(0));
+            fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            assertThat(executor.isShutdown(), is(true));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the class {@link StateStoreStatemachine}
+ */
+public class StateStoreStatemachineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSendEvent_Reads_And_Writes_State_Store() throws Exception {
+        InMemoryStateStore<Long, TestState> store = new InMemoryStateStore<>();
+        IdStatemachine statemachine = new IdStatemachine(store);
+
+        assertEquals(INITIAL, statemachine.getCurrentState(1L));
+        statemachine.sendEvent(EVENT1, 1L);
+        statemachine.sendEvent(EVENT1, 2L);
+        statemachine.sendEvent(EVENT2, 1L);
+
+        assertEquals(STATE2, store.getState(1L));
+        assertEquals(STATE1, store.getState(2L));
+        assertEquals(STATE1, statemachine.getCurrentState(2L));
+    }
+
+    @Test
+    public void testSendEventAsync_Writes_State_Store() throws Exception {
+        InMemoryStateStore<Long, TestState> store = new InMemoryStateStore<>();
+
+        StateChange<?> stateChange = new IdStatemachine(store).sendEventAsync(EVENT1, 1L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(INITIAL, stateChange.getFromState());
+        assertEquals(STATE1, stateChange.getToState());
+        assertEquals(STATE1, store.getState(1L));
+    }
+
+    @Test
+    public void testStates_Survive_Restart_With_MappedFileStateStore() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("states");
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file, TestState.class, 100)) {
+            new IdStatemachine(store).sendEvent(EVENT1, 42L);
+        }
+
+        try (MappedFileStateStore<TestState> store = new MappedFileStateStore<>(file, TestState.class, 100)) {
+            IdStatemachine statemachine = new IdStatemachine(store);
+            statemachine.sendEvent(EVENT2, 42L);
+
+            assertEquals(STATE2, statemachine.getCurrentState(42L));
+        }
+    }
+
+    /**
+     * A statemachine whose objects are merely ids.
+     */
+    private static class IdStatemachine extends StateStoreStatemachine<Long, TestState, TestEvent, Long> {
+
+        private IdStatemachine(StateStore<Long, TestState> stateStore) {
+            super(TestState.class, TestEvent.class, Long.class, stateStore);
+            initStateMachine();
+        }
+
+        @Override
+        protected Long getObjectId(Long id) {
+            return id;
+        }
+
+        @Override
+        protected void defineStates(StateConfigurer<TestState, TestEvent, Long> state) {
+            state.withId(STATE1).add();
+            state.withId(STATE2).add();
+        }
+
+        @Override
+        protected void defineTransitions(TransitionConfigurer<TestState, TestEvent, Long> transition) {
+            transition.from(INITIAL).to(STATE1).onEvent(EVENT1).add();
+            transition.from(STATE1).to(STATE2).onEvent(EVENT2).add();
+        }
+
+        @Override
+        public TestState getStateFromString(String stateName) {
+            return TestState.valueOf(stateName);
+        }
+
+        @Override
+        public TestEvent getEventFromString(String eventName) {
+            return TestEvent.valueOf(eventName);
+        }
+
+        @Override
+        protected TestState getFinalState() {
+            return FINAL;
+        }
+
+        @Override
+        protected TestState getInitialState() {
+            return INITIAL;
+        }
+    }
+}
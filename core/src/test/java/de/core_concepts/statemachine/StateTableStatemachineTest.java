@@ -0,0 +1,164 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the class {@link StateTableStatemachine}
+ */
+public class StateTableStatemachineTest {
+
+    private final OffHeapStateTable<TestState> table = new OffHeapStateTable<>(TestState.class);
+    private final AtomicInteger actionCount = new AtomicInteger();
+    private final AtomicInteger genericActionCount = new AtomicInteger();
+
+    @Test
+    public void testSendEvent_Takes_Fast_Path_For_State_Only_Transitions() throws Exception {
+        ToggleStatemachine statemachine = new ToggleStatemachine(false, 0);
+
+        statemachine.sendEvent(1L, EVENT1);
+        statemachine.sendEvent(2L, EVENT1);
+        statemachine.sendEvent(2L, EVENT1);
+        // No transition from the initial state
+        statemachine.sendEvent(3L, EVENT2);
+
+        assertEquals(STATE1, table.getState(1L));
+        assertEquals(STATE2, statemachine.getCurrentState(2L));
+        assertNull(table.getState(3L));
+        assertTrue(statemachine.getStateOnlyTarget(STATE1.ordinal(), EVENT1.ordinal()) >= 0);
+    }
+
+    @Test
+    public void testSendEvent_Falls_Back_For_Transitions_With_Action() throws Exception {
+        ToggleStatemachine statemachine = new ToggleStatemachine(false, 0);
+
+        statemachine.sendEvent(1L, EVENT1);
+        statemachine.sendEvent(1L, EVENT2);
+
+        assertEquals(STATE3, table.getState(1L));
+        assertEquals(1, actionCount.get());
+        assertEquals(-1, statemachine.getStateOnlyTarget(STATE1.ordinal(), EVENT2.ordinal()));
+    }
+
+    @Test
+    public void testSendEvent_Falls_Back_If_Generic_Actions_Or_Listeners_Exist() throws Exception {
+        ToggleStatemachine withGenericAction = new ToggleStatemachine(true, 0);
+        withGenericAction.sendEvent(1L, EVENT1);
+
+        ToggleStatemachine withListener = new ToggleStatemachine(false, 0);
+        List<LifecycleEvent<?>> lifecycleEvents = new ArrayList<>();
+        withListener.addLifecycleListener((lifecycleEvent, context) -> lifecycleEvents.add(lifecycleEvent));
+        withListener.sendEvent(2L, EVENT1);
+
+        assertEquals(1, genericActionCount.get());
+        assertTrue(lifecycleEvents.contains(LifecycleEvent.SUCCESSFUL_STATE_CHANGE));
+        assertEquals(STATE1, table.getState(1L));
+        assertEquals(STATE1, table.getState(2L));
+    }
+
+    @Test
+    public void testConcurrent_Fast_And_Regular_Dispatches_Are_Serialized() throws Exception {
+        ToggleStatemachine statemachine = new ToggleStatemachine(false, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                boolean regular = thread == 0;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        if (regular) {
+                            // A new Long instance, so that the stripe isn't chosen by identity
+                            statemachine.sendEvent(EVENT1, new Long(1000L));
+                        } else {
+                            statemachine.sendEvent(1000L, EVENT1);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The first event leads to STATE1, the other 3999 toggle
+        assertEquals(STATE2, table.getState(1000L));
+    }
+
+    /**
+     * Toggles between STATE1 and STATE2 on EVENT1, after EVENT1 led from the initial state to STATE1. EVENT2 leads from STATE1 to
+     * STATE3 by an action.
+     */
+    private class ToggleStatemachine extends StateTableStatemachine<TestState, TestEvent> {
+
+        private final boolean withGenericAction;
+        private final int lockStripeCount;
+
+        private ToggleStatemachine(boolean withGenericAction, int lockStripeCount) {
+            super(TestState.class, TestEvent.class, table);
+            this.withGenericAction = withGenericAction;
+            this.lockStripeCount = lockStripeCount;
+            initStateMachine();
+        }
+
+        @Override
+        protected int getLockStripeCount() {
+            return lockStripeCount;
+        }
+
+        @Override
+        protected void defineStates(StateConfigurer<TestState, TestEvent, Long> state) {
+            state.withId(STATE1).add();
+            state.withId(STATE2).add();
+            state.withId(STATE3).add();
+        }
+
+        @Override
+        protected void defineTransitions(TransitionConfigurer<TestState, TestEvent, Long> transition) {
+            transition.from(INITIAL).to(STATE1).onEvent(EVENT1).add();
+            transition.from(STATE1).to(STATE2).onEvent(EVENT1).add();
+            transition.from(STATE2).to(STATE1).onEvent(EVENT1).add();
+            transition.from(STATE1).to(STATE3).onEvent(EVENT2).action(Action.of(context -> actionCount.incrementAndGet())).add();
+        }
+
+        @Override
+        protected void defineGenericActions(GenericActionConfigurer<Long> genericActionConfigurer) {
+            if (withGenericAction) {
+                genericActionConfigurer.on(LifecycleEvent.SUCCESSFUL_STATE_CHANGE)
+                        .execute(Action.of(context -> genericActionCount.incrementAndGet())).add();
+            }
+        }
+
+        @Override
+        public TestState getStateFromString(String stateName) {
+            return TestState.valueOf(stateName);
+        }
+
+        @Override
+        public TestEvent getEventFromString(String eventName) {
+            return TestEvent.valueOf(eventName);
+        }
+
+        @Override
+        protected TestState getFinalState() {
+            return FINAL;
+        }
+
+        @Override
+        protected TestState getInitialState() {
+            return INITIAL;
+        }
+    }
+}
@@ -5,8 +5,8 @@ import org.junit.Test;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
 
 /**
  * Tests the clas State
@@ -30,4 +30,105 @@ public class StateTest {
         assertThat(fromState.getTransitions(), hasSize(1));
         assertThat(fromState.getTransitions().get(0), equalTo(transition));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that freeze separates automatic from onEvent and onError transitions.
+     */
+    @Test
+    public void indexTransitions_CollectsAutomaticTransitions() throws Exception {
+        State<TestState, TestEvent, TestObject> fromState = new State<>(TestState.STATE1, Optional.empty(), Optional.empty());
+        Transition<TestState, TestEvent, TestObject> automatic = transition(fromState, Optional.empty(), Optional.empty());
+        transition(fromState, Optional.of(TestEvent.EVENT1), Optional.empty());
+        transition(fromState, Optional.empty(), Optional.of(RuntimeException.class));
+
+        fromState.freeze();
+
+        assertThat(fromState.getAutomaticTransitions(), arrayContaining(automatic));
+    }
+
+    /**
+     * Tests that onError transitions are resolved for subclasses of the configured exception but not for superclasses.
+     */
+    @Test
+    public void getTransitionsForException_MatchesAssignableExceptions() throws Exception {
+        State<TestState, TestEvent, TestObject> fromState = new State<>(TestState.STATE1, Optional.empty(), Optional.empty());
+        Transition<TestState, TestEvent, TestObject> onRuntime = transition(fromState, Optional.empty(), Optional.of(RuntimeException.class));
+        Transition<TestState, TestEvent, TestObject> onIllegalState =
+                transition(fromState, Optional.empty(), Optional.of(IllegalStateException.class));
+
+        fromState.freeze();
+
+        assertThat(fromState.getTransitionsForException(RuntimeException.class), arrayContaining(onRuntime));
+        assertThat(fromState.getTransitionsForException(IllegalStateException.class), arrayContaining(onRuntime, onIllegalState));
+        assertThat(fromState.getTransitionsForException(IllegalStateException.class),
+                sameInstance(fromState.getTransitionsForException(IllegalStateException.class)));
+    }
+
+    /**
+     * Tests that an exception without matching onError transition resolves to an empty array.
+     */
+    @Test
+    public void getTransitionsForException_NoMatch() throws Exception {
+        State<TestState, TestEvent, TestObject> fromState = new State<>(TestState.STATE1, Optional.empty(), Optional.empty());
+        transition(fromState, Optional.empty(), Optional.of(IllegalStateException.class));
+
+        fromState.freeze();
+
+        assertThat(fromState.getTransitionsForException(IllegalArgumentException.class), is(emptyArray()));
+    }
+
+    /**
+     * Tests that a frozen state neither accepts new transitions nor exposes a modifiable transition list.
+     */
+    @Test
+    public void freeze_MakesStateImmutable() throws Exception {
+        State<TestState, TestEvent, TestObject> fromState = new State<>(TestState.STATE1, Optional.empty(), Optional.empty());
+        transition(fromState, Optional.empty(), Optional.empty());
+
+        fromState.freeze();
+
+        assertThat(fromState.isFrozen(), is(true));
+        try {
+            transition(fromState, Optional.of(TestEvent.EVENT1), Optional.empty());
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertThat(fromState.getTransitions(), hasSize(1));
+        }
+        try {
+            fromState.getTransitions().clear();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            assertThat(fromState.getTransitions(), hasSize(1));
+        }
+    }
+
+    /**
+     * Tests that freezing orders transitions by descending priority and keeps the configured order among equal priorities.
+     */
+    @Test
+    public void freeze_OrdersTransitionsByPriority() throws Exception {
+        State<TestState, TestEvent, TestObject> fromState = new State<>(TestState.STATE1, Optional.empty(), Optional.empty());
+        Transition<TestState, TestEvent, TestObject> first = transition(fromState, 0);
+        Transition<TestState, TestEvent, TestObject> second = transition(fromState, 0);
+        Transition<TestState, TestEvent, TestObject> prioritised = transition(fromState, 1);
+
+        fromState.freeze();
+
+        assertThat(fromState.getAutomaticTransitions(), arrayContaining(sameInstance(prioritised), sameInstance(first), sameInstance(second)));
+    }
+
+    private Transition<TestState, TestEvent, TestObject> transition(State<TestState, TestEvent, TestObject> fromState, int priority) {
+        Transition<TestState, TestEvent, TestObject> transition = new Transition<TestState, TestEvent, TestObject>(fromState, Optional.empty(),
+                Optional.empty(), Optional.empty(), context -> true, priority);
+        fromState.addTransition(transition);
+        return transition;
+    }
+
+    private Transition<TestState, TestEvent, TestObject> transition(State<TestState, TestEvent, TestObject> fromState, Optional<TestEvent> event,
+                                                                    Optional<Class<? extends RuntimeException>> error) {
+        Transition<TestState, TestEvent, TestObject> transition =
+                new Transition<TestState, TestEvent, TestObject>(fromState, event, error, Optional.empty(), context -> true);
+        fromState.addTransition(transition);
+        return transition;
+    }
+}
@@ -0,0 +1,81 @@
+package de.core_concepts.statemachine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the class StatemachineDefinition
+ */
+public class StatemachineDefinitionTest {
+
+    private Map<TestState, State<TestState, TestEvent, TestObject>> states;
+    private Map<LifecycleEvent<?>, Action<TestObject>> genericActions;
+
+    @Before
+    public void setUp() throws Exception {
+        states = new HashMap<>();
+        states.put(INITIAL, new State<>(INITIAL, Optional.empty(), Optional.empty()));
+        states.put(STATE1, new State<>(STATE1, Optional.empty(), Optional.empty()));
+        states.put(STATE2, new State<>(STATE2, Optional.empty(), Optional.empty()));
+        states.put(FINAL, new State<>(FINAL, Optional.empty(), Optional.empty()));
+        new TransitionConfigurer<>(states, INITIAL, FINAL).from(STATE1).to(STATE2).onEvent(EVENT1).add();
+        genericActions = new HashMap<>();
+    }
+
+    @Test
+    public void testConstructor_FreezesStates() throws Exception {
+        StatemachineDefinition<TestState, TestEvent, TestObject> definition = definition();
+
+        for (TestState id : definition.getStates()) {
+            assertThat(definition.getState(id).isFrozen(), is(true));
+        }
+    }
+
+    @Test
+    public void testConstructor_CopiesStatesAndGenericActions() throws Exception {
+        StatemachineDefinition<TestState, TestEvent, TestObject> definition = definition();
+
+        states.put(STATE3, new State<>(STATE3, Optional.empty(), Optional.empty()));
+        genericActions.put(LifecycleEvent.UNKNOWN_EVENT, mock(Action.class));
+
+        assertThat(definition.getStates(), containsInAnyOrder(INITIAL, STATE1, STATE2, FINAL));
+        assertThat(definition.getState(STATE3), is(nullValue()));
+        assertThat(definition.getGenericAction(LifecycleEvent.UNKNOWN_EVENT), is(nullValue()));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetStates_Unmodifiable() throws Exception {
+        definition().getStates().remove(STATE1);
+    }
+
+    @Test
+    public void testGetTransitions() throws Exception {
+        StatemachineDefinition<TestState, TestEvent, TestObject> definition = definition();
+
+        assertThat(definition.getTransitions(STATE1, EVENT1), arrayWithSize(1));
+        assertThat(definition.getTransitions(STATE1, EVENT2), is(emptyArray()));
+    }
+
+    @Test
+    public void testIsCompatibleWith() throws Exception {
+        StatemachineDefinition<TestState, TestEvent, TestObject> definition = definition();
+
+        assertThat(definition.isCompatibleWith(TestState.class, TestEvent.class, TestObject.class), is(true));
+        assertThat(definition.isCompatibleWith(TestState.class, TestEvent.class, Object.class), is(false));
+    }
+
+    private StatemachineDefinition<TestState, TestEvent, TestObject> definition() {
+        return new StatemachineDefinition<>(TestState.class, TestEvent.class, TestObject.class, INITIAL, FINAL, states, genericActions);
+    }
+}
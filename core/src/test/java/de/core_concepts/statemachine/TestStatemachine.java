@@ -9,11 +9,19 @@ import static de.core_concepts.statemachine.TestState.*;
  */
 public class TestStatemachine extends AbstractStatemachine<TestState, TestEvent, TestObject> {
 
+    /* Set by DispatcherCompilerTest in order to run AbstractStatemachineTest against generated dispatchers. */
+    static volatile boolean compileDispatcher;
+
     public TestStatemachine() {
         super(TestState.class, TestEvent.class, TestObject.class);
         initStateMachine();
     }
 
+    public TestStatemachine(StatemachineDefinition<TestState, TestEvent, TestObject> definition) {
+        super(TestState.class, TestEvent.class, TestObject.class);
+        initStateMachine(definition);
+    }
+
     @Override
     public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
         state.withId(STATE1).add();
@@ -34,6 +42,11 @@ public class TestStatemachine extends AbstractStatemachine<TestState, TestEvent,
                 .add();
     }
 
+    @Override
+    protected boolean isDispatcherCompilationEnabled() {
+        return compileDispatcher;
+    }
+
     @Override
     protected void setCurrentState(TestObject object, TestState state) {
         object.setCurrentState(state);
@@ -0,0 +1,100 @@
+package de.core_concepts.statemachine;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.core_concepts.statemachine.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.TestState.*;
+
+/**
+ * Statemachine Implementation for the tests of BulkProcessor, ShardedExecutor and EventRingBuffer. Transits from STATE1 to STATE2 on
+ * EVENT1 and from STATE2 to STATE3 on EVENT2. Records whether actions overlapped and which threads executed them.
+ */
+public class TwoStepStatemachine extends TestStatemachine {
+
+    private final TestObject failingObject;
+    private final CountDownLatch release;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicBoolean overlapped = new AtomicBoolean();
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    public TwoStepStatemachine() {
+        this(null, null);
+    }
+
+    /**
+     * @param failingObject An object whose actions throw an IllegalStateException, or null.
+     * @param release       A latch the actions wait for up to 5 seconds, or null in order not to wait.
+     */
+    public TwoStepStatemachine(TestObject failingObject, CountDownLatch release) {
+        this.failingObject = failingObject;
+        this.release = release;
+    }
+
+    /**
+     * @return New objects in STATE1.
+     */
+    public static List<TestObject> objectsInState1(int count) {
+        List<TestObject> objects = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestObject object = new TestObject();
+            object.setCurrentState(STATE1);
+            objects.add(object);
+        }
+        return objects;
+    }
+
+    /**
+     * @return True if an action started while another one was running.
+     */
+    public boolean hasOverlapped() {
+        return overlapped.get();
+    }
+
+    /**
+     * @return The threads which executed actions.
+     */
+    public Set<Thread> getThreads() {
+        return threads;
+    }
+
+    @Override
+    public void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+        state.withId(STATE1).add();
+        state.withId(STATE2).add();
+        state.withId(STATE3).add();
+    }
+
+    @Override
+    public void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+        Action<TestObject> action = Action.of(context -> {
+            if (active.incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+            threads.add(Thread.currentThread());
+            try {
+                if (context.getObject() == failingObject) {
+                    throw new IllegalStateException();
+                }
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                Thread.yield();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+        transition.from(STATE1).to(STATE2).onEvent(EVENT1).action(action).add();
+        transition.from(STATE2).to(STATE3).onEvent(EVENT2).action(action).add();
+    }
+}
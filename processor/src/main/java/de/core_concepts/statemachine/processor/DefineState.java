@@ -0,0 +1,36 @@
+package de.core_concepts.statemachine.processor;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a state of a statemachine annotated with {@link GenerateStatemachine}. The equivalent of StateConfigurer. The initial and
+ * the final state are defined implicitly.
+ * <p>
+ * Actions are referenced by the name of a non-private instance method of the statemachine which takes the Context as its only parameter
+ * and returns void.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@Repeatable(DefineStates.class)
+public @interface DefineState {
+
+    /**
+     * @return The name of the state constant. Mandatory
+     */
+    String id();
+
+    /**
+     * @return The name of the method to be executed on entry of this state. Optional
+     */
+    String onEntryAction() default "";
+
+    /**
+     * @return The name of the method to be executed upon leaving this state. Optional
+     */
+    String exitValidator() default "";
+}
@@ -0,0 +1,17 @@
+package de.core_concepts.statemachine.processor;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Container of repeated {@link DefineState} annotations.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface DefineStates {
+
+    DefineState[] value();
+}
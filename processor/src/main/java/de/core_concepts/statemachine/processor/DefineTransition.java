@@ -0,0 +1,56 @@
+package de.core_concepts.statemachine.processor;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a transition of a statemachine annotated with {@link GenerateStatemachine}. The equivalent of TransitionConfigurer. A
+ * transition without onEvent and onError is an automatic transition.
+ * <p>
+ * Guards are referenced by the name of a non-private instance method of the statemachine which takes the Context as its only parameter
+ * and returns boolean, actions by the name of such a method returning void.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@Repeatable(DefineTransitions.class)
+public @interface DefineTransition {
+
+    /**
+     * @return The names of the states to transit from. Mandatory
+     */
+    String[] from();
+
+    /**
+     * @return The name of the state to transit to. Mandatory
+     */
+    String to();
+
+    /**
+     * @return The name of the event constant to listen to. Optional
+     */
+    String onEvent() default "";
+
+    /**
+     * @return The exception to listen to. At most one. Optional
+     */
+    Class<? extends RuntimeException>[] onError() default {};
+
+    /**
+     * @return The name of the guard method. Optional
+     */
+    String when() default "";
+
+    /**
+     * @return The name of the action method. Optional
+     */
+    String action() default "";
+
+    /**
+     * @return The priority of the transition, see TransitionConfigurer#priority(int). Optional
+     */
+    int priority() default 0;
+}
@@ -0,0 +1,34 @@
+package de.core_concepts.statemachine.processor;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a subclass of AbstractStatemachine whose states and transitions are declared with {@link DefineState} and
+ * {@link DefineTransition}. At compile time StatemachineProcessor validates the declarations and generates the class
+ * &lt;SimpleNameOfTheStatemachine&gt;Configuration in the same package. Its static methods defineStates and defineTransitions are supposed to
+ * be called from the hook methods of the same name:
+ * <p>
+ * protected void defineStates(StateConfigurer&lt;S, E, O&gt; state) {
+ * OrderStatemachineConfiguration.defineStates(this, state);
+ * }
+ * <p>
+ * States are referenced by the names of the constants of the state enum S, events by the names of the constants of the event enum E.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateStatemachine {
+
+    /**
+     * @return The name of the constant returned by getInitialState.
+     */
+    String initialState();
+
+    /**
+     * @return The name of the constant returned by getFinalState.
+     */
+    String finalState();
+}
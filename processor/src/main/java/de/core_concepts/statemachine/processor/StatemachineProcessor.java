@@ -0,0 +1,394 @@
+package de.core_concepts.statemachine.processor;
+
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypesException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Validates statemachines annotated with {@link GenerateStatemachine} at compile time and generates their Configuration class, see
+ * GenerateStatemachine. Configuration errors, which TransitionConfigurer would only detect when the statemachine is initialised, are
+ * reported as compile errors. In addition, transitions which are guaranteed to be ambiguous, because they exit the same state on the
+ * same trigger without a guard, are reported as well.
+ * <p>
+ * The initial and final state declared by GenerateStatemachine can't be compared to the ones returned by getInitialState and
+ * getFinalState at compile time, as those are only known once they are called. The generated defineStates compares them instead and
+ * throws a ConfigurationException on a mismatch, unless the methods aren't accessible from the statemachine's package.
+ */
+@SupportedAnnotationTypes("de.core_concepts.statemachine.processor.GenerateStatemachine")
+public class StatemachineProcessor extends AbstractProcessor {
+
+    static final String CONFIGURATION_SUFFIX = "Configuration";
+
+    private static final String ABSTRACT_STATEMACHINE = "de.core_concepts.statemachine.AbstractStatemachine";
+    private static final String CONTEXT = "de.core_concepts.statemachine.Context";
+    private static final String CONFIGURATION_EXCEPTION = "de.core_concepts.statemachine.ConfigurationException";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateStatemachine.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@GenerateStatemachine is only allowed on classes.");
+                continue;
+            }
+            Model model = new Model((TypeElement) element);
+            if (model.validate()) {
+                model.generate();
+            }
+        }
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void warning(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+    /**
+     * The declarations of a single statemachine.
+     */
+    private final class Model {
+
+        private final TypeElement machine;
+        private final GenerateStatemachine declaration;
+        private final DefineState[] states;
+        private final DefineTransition[] transitions;
+        private List<DeclaredType> typeArguments;
+        private boolean verifyInitialAndFinalState;
+        private boolean valid = true;
+
+        private Model(TypeElement machine) {
+            this.machine = machine;
+            this.declaration = machine.getAnnotation(GenerateStatemachine.class);
+            this.states = machine.getAnnotationsByType(DefineState.class);
+            this.transitions = machine.getAnnotationsByType(DefineTransition.class);
+        }
+
+        private boolean validate() {
+            typeArguments = resolveTypeArguments();
+            if (typeArguments == null) {
+                return false;
+            }
+            Set<String> stateNames = enumConstants(typeArguments.get(0));
+            Set<String> eventNames = enumConstants(typeArguments.get(1));
+            if (stateNames == null || eventNames == null) {
+                error(machine, "The state and event types of " + machine.getSimpleName() + " must be enums.");
+                return false;
+            }
+
+            checkConstant(stateNames, declaration.initialState(), "state");
+            checkConstant(stateNames, declaration.finalState(), "state");
+            verifyInitialAndFinalState = isAccessible("getInitialState") && isAccessible("getFinalState");
+            if (!verifyInitialAndFinalState) {
+                warning(machine, "getInitialState or getFinalState of " + machine.getSimpleName() + " isn't accessible from its package. "
+                        + "The initial and final state of @GenerateStatemachine won't be verified.");
+            }
+            Set<String> definedStates = new HashSet<>(Arrays.asList(declaration.initialState(), declaration.finalState()));
+            for (DefineState state : states) {
+                checkConstant(stateNames, state.id(), "state");
+                if (!definedStates.add(state.id())) {
+                    fail("State " + state.id() + " is defined more than once. The initial and final state are defined implicitly.");
+                }
+                checkMethod(state.onEntryAction(), TypeKind.VOID);
+                checkMethod(state.exitValidator(), TypeKind.VOID);
+            }
+
+            Map<String, List<String>> unguardedTriggers = new HashMap<>();
+            Set<String> reachedStates = new HashSet<>();
+            for (DefineTransition transition : transitions) {
+                validateTransition(transition, eventNames, definedStates);
+                reachedStates.add(transition.to());
+                if (transition.when().isEmpty()) {
+                    for (String from : transition.from()) {
+                        unguardedTriggers.computeIfAbsent(from + " on " + trigger(transition) + " with priority " + transition.priority(),
+                                key -> new ArrayList<>()).add(transition.to());
+                    }
+                }
+            }
+            unguardedTriggers.forEach((trigger, targets) -> {
+                if (targets.size() > 1) {
+                    fail("Ambiguous transitions from " + trigger + " to " + targets + ". Add guards with 'when' or distinct priorities.");
+                }
+            });
+            for (DefineState state : states) {
+                if (!reachedStates.contains(state.id())) {
+                    warning(machine, "State " + state.id() + " is not the target of any transition.");
+                }
+            }
+            return valid;
+        }
+
+        private void validateTransition(DefineTransition transition, Set<String> eventNames, Set<String> definedStates) {
+            if (transition.from().length == 0) {
+                fail("A transition to " + transition.to() + " has no 'from' state.");
+            }
+            for (String from : transition.from()) {
+                checkDefined(definedStates, from);
+                if (from.equals(declaration.finalState())) {
+                    fail("Can not transit from final state.");
+                }
+            }
+            checkDefined(definedStates, transition.to());
+            if (transition.to().equals(declaration.initialState())) {
+                fail("Can not transit to the initial state.");
+            }
+            List<TypeMirror> errors = errors(transition);
+            if (errors.size() > 1) {
+                fail("A transition can only listen to a single error.");
+            }
+            if (!transition.onEvent().isEmpty()) {
+                checkConstant(eventNames, transition.onEvent(), "event");
+                if (!errors.isEmpty()) {
+                    fail("Both onError and onEvent were configured. This is not supported.");
+                }
+            }
+            checkMethod(transition.when(), TypeKind.BOOLEAN);
+            checkMethod(transition.action(), TypeKind.VOID);
+        }
+
+        private String trigger(DefineTransition transition) {
+            if (!transition.onEvent().isEmpty()) {
+                return "event " + transition.onEvent();
+            }
+            List<TypeMirror> errors = errors(transition);
+            return errors.isEmpty() ? "no event (automatic)" : "error " + errors.get(0);
+        }
+
+        private void checkConstant(Set<String> constants, String name, String kind) {
+            if (!constants.contains(name)) {
+                fail("Unknown " + kind + " " + name + ". Expected one of " + new TreeSet<>(constants) + ".");
+            }
+        }
+
+        private void checkDefined(Set<String> definedStates, String state) {
+            if (!definedStates.contains(state)) {
+                fail("State with name " + state + " not found. Apparently it hasn't been defined with @DefineState.");
+            }
+        }
+
+        /**
+         * Checks that the machine has a non-private, non-static method of the given name which takes a single Context parameter and
+         * returns the given type.
+         */
+        private void checkMethod(String name, TypeKind returnType) {
+            if (name.isEmpty()) {
+                return;
+            }
+            boolean found = processingEnv.getElementUtils().getAllMembers(machine).stream()
+                    .filter(member -> member.getKind() == ElementKind.METHOD && member.getSimpleName().contentEquals(name))
+                    .map(ExecutableElement.class::cast)
+                    .anyMatch(method -> !method.getModifiers().contains(Modifier.PRIVATE)
+                            && !method.getModifiers().contains(Modifier.STATIC)
+                            && method.getReturnType().getKind() == returnType
+                            && method.getParameters().size() == 1
+                            && isContext(method.getParameters().get(0).asType()));
+            if (!found) {
+                fail("No method " + returnType.name().toLowerCase() + " " + name + "(Context) found in " + machine.getSimpleName()
+                        + ". It must neither be private nor static.");
+            }
+        }
+
+        /**
+         * @return True if the generated class, which is in the package of the machine, can call the machine's method of the given name
+         * without parameters.
+         */
+        private boolean isAccessible(String name) {
+            PackageElement machinePackage = processingEnv.getElementUtils().getPackageOf(machine);
+            return processingEnv.getElementUtils().getAllMembers(machine).stream()
+                    .filter(member -> member.getKind() == ElementKind.METHOD && member.getSimpleName().contentEquals(name))
+                    .map(ExecutableElement.class::cast)
+                    .filter(method -> method.getParameters().isEmpty())
+                    .anyMatch(method -> method.getModifiers().contains(Modifier.PUBLIC) || (!method.getModifiers().contains(Modifier.PRIVATE)
+                            && processingEnv.getElementUtils().getPackageOf(method).equals(machinePackage)));
+        }
+
+        private boolean isContext(TypeMirror type) {
+            TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+            return erased.getKind() == TypeKind.DECLARED
+                    && ((TypeElement) ((DeclaredType) erased).asElement()).getQualifiedName().contentEquals(CONTEXT);
+        }
+
+        /**
+         * @return The type arguments S, E and O of AbstractStatemachine as seen from the annotated class, or null if it doesn't extend it.
+         */
+        private List<DeclaredType> resolveTypeArguments() {
+            DeclaredType supertype = findSupertype(machine.asType());
+            if (supertype == null || supertype.getTypeArguments().size() != 3
+                    || supertype.getTypeArguments().stream().anyMatch(type -> type.getKind() != TypeKind.DECLARED)) {
+                error(machine, "@GenerateStatemachine requires " + machine.getSimpleName() + " to extend " + ABSTRACT_STATEMACHINE
+                        + " with concrete type arguments.");
+                return null;
+            }
+            return supertype.getTypeArguments().stream().map(DeclaredType.class::cast).collect(Collectors.toList());
+        }
+
+        private DeclaredType findSupertype(TypeMirror type) {
+            for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type)) {
+                if (supertype.getKind() != TypeKind.DECLARED) {
+                    continue;
+                }
+                DeclaredType declared = (DeclaredType) supertype;
+                if (((TypeElement) declared.asElement()).getQualifiedName().contentEquals(ABSTRACT_STATEMACHINE)) {
+                    return declared;
+                }
+                DeclaredType found = findSupertype(declared);
+                if (found != null) {
+                    return found;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return The names of the constants of the given enum type, or null if it is no enum.
+         */
+        private Set<String> enumConstants(DeclaredType type) {
+            Element element = type.asElement();
+            if (element.getKind() != ElementKind.ENUM) {
+                return null;
+            }
+            return element.getEnclosedElements().stream()
+                    .filter(enclosed -> enclosed.getKind() == ElementKind.ENUM_CONSTANT)
+                    .map(enclosed -> enclosed.getSimpleName().toString())
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+
+        private List<TypeMirror> errors(DefineTransition transition) {
+            try {
+                transition.onError();
+                throw new IllegalStateException("Class values are not available during annotation processing.");
+            } catch (MirroredTypesException e) {
+                return new ArrayList<>(e.getTypeMirrors());
+            }
+        }
+
+        private void fail(String message) {
+            error(machine, message);
+            valid = false;
+        }
+
+        private void generate() {
+            PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(machine);
+            String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+            String className = machine.getSimpleName() + CONFIGURATION_SUFFIX;
+            String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+            try {
+                JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, machine);
+                try (Writer writer = file.openWriter()) {
+                    write(new PrintWriter(writer), packageName, className);
+                }
+            } catch (IOException e) {
+                error(machine, "Failed to write " + qualifiedName + ": " + e.getMessage());
+            }
+        }
+
+        private void write(PrintWriter out, String packageName, String className) {
+            String machineType = machine.getQualifiedName().toString();
+            String stateType = typeArguments.get(0).toString();
+            String eventType = typeArguments.get(1).toString();
+            String generics = "<" + stateType + ", " + eventType + ", " + typeArguments.get(2) + ">";
+
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + StatemachineProcessor.class.getName() + " from the annotations of " + machine.getSimpleName()
+                    + ". Do not edit.");
+            out.println(" * <p>");
+            out.println(" * Transitions in the order they were declared:");
+            out.println(" * <pre>");
+            for (DefineTransition transition : transitions) {
+                out.println(" * " + String.join(", ", transition.from()) + " --" + trigger(transition) + "--> " + transition.to()
+                        + (transition.when().isEmpty() ? "" : " [" + transition.when() + "]")
+                        + (transition.action().isEmpty() ? "" : " / " + transition.action())
+                        + (transition.priority() == 0 ? "" : " priority " + transition.priority()));
+            }
+            out.println(" * </pre>");
+            out.println(" */");
+            out.println("final class " + className + " {");
+            out.println();
+            out.println("    private " + className + "() {");
+            out.println("    }");
+            out.println();
+            out.println("    static void defineStates(" + machineType + " machine, de.core_concepts.statemachine.StateConfigurer" + generics
+                    + " state) {");
+            if (verifyInitialAndFinalState) {
+                writeStateCheck(out, "getInitialState", stateType, declaration.initialState());
+                writeStateCheck(out, "getFinalState", stateType, declaration.finalState());
+            }
+            for (DefineState state : states) {
+                out.print("        state.withId(" + stateType + "." + state.id() + ")");
+                if (!state.onEntryAction().isEmpty()) {
+                    out.print(".onEntryAction(de.core_concepts.statemachine.Action.of(machine::" + state.onEntryAction() + "))");
+                }
+                if (!state.exitValidator().isEmpty()) {
+                    out.print(".exitValidator(de.core_concepts.statemachine.Action.of(machine::" + state.exitValidator() + "))");
+                }
+                out.println(".add();");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    static void defineTransitions(" + machineType + " machine, de.core_concepts.statemachine.TransitionConfigurer"
+                    + generics + " transition) {");
+            for (DefineTransition transition : transitions) {
+                out.print("        transition.from(" + Arrays.stream(transition.from()).map(from -> stateType + "." + from)
+                        .collect(Collectors.joining(", ")) + ")");
+                out.print(".to(" + stateType + "." + transition.to() + ")");
+                if (!transition.onEvent().isEmpty()) {
+                    out.print(".onEvent(" + eventType + "." + transition.onEvent() + ")");
+                }
+                List<TypeMirror> errors = errors(transition);
+                if (!errors.isEmpty()) {
+                    out.print(".onError(" + processingEnv.getTypeUtils().erasure(errors.get(0)) + ".class)");
+                }
+                if (!transition.when().isEmpty()) {
+                    out.print(".when(machine::" + transition.when() + ")");
+                }
+                if (transition.priority() != 0) {
+                    out.print(".priority(" + transition.priority() + ")");
+                }
+                if (!transition.action().isEmpty()) {
+                    out.print(".action(de.core_concepts.statemachine.Action.of(machine::" + transition.action() + "))");
+                }
+                out.println(".add();");
+            }
+            out.println("    }");
+            out.println("}");
+            out.flush();
+        }
+
+        private void writeStateCheck(PrintWriter out, String method, String stateType, String declared) {
+            out.println("        if (machine." + method + "() != " + stateType + "." + declared + ") {");
+            out.println("            throw new " + CONFIGURATION_EXCEPTION + "(\"" + method + " of " + machine.getSimpleName()
+                    + " returns \" + machine." + method + "() + \", but @GenerateStatemachine declares " + declared + ".\");");
+            out.println("        }");
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package de.core_concepts.statemachine.processor;
+
+import de.core_concepts.statemachine.AbstractStatemachine;
+import de.core_concepts.statemachine.ConfigurationException;
+import de.core_concepts.statemachine.Statemachine;
+import org.apache.commons.lang.Validate;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeThat;
+
+public class StatemachineProcessorTest {
+
+    private static final String TYPES =
+            "package sample;\n" +
+            "public class Door {\n" +
+            "    public DoorState state = DoorState.INITIAL;\n" +
+            "    public String log = \"\";\n" +
+            "}\n";
+    private static final String STATES = "package sample; public enum DoorState { INITIAL, OPEN, CLOSED, LOCKED, FINAL }\n";
+    private static final String EVENTS = "package sample; public enum DoorEvent { OPEN, CLOSE, LOCK }\n";
+
+    private JavaCompiler compiler;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+    private Map<String, ByteArrayOutputStream> sources;
+    private Map<String, ByteArrayOutputStream> classes;
+
+    @Before
+    public void setUp() {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        assumeThat("Tests require a JDK", compiler, notNullValue());
+        diagnostics = new DiagnosticCollector<>();
+        sources = new HashMap<>();
+        classes = new HashMap<>();
+    }
+
+    @Test
+    public void testValidStatemachine_GeneratesWorkingConfiguration() throws Exception {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\", onEntryAction = \"opened\")\n" +
+                "@DefineState(id = \"CLOSED\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"OPEN\", onEvent = \"OPEN\")\n" +
+                "@DefineTransition(from = \"OPEN\", to = \"CLOSED\", onEvent = \"CLOSE\", action = \"closing\")\n" +
+                "@DefineTransition(from = \"CLOSED\", to = \"OPEN\", onEvent = \"OPEN\", when = \"unlocked\")\n" +
+                "@DefineTransition(from = \"CLOSED\", to = \"FINAL\", onEvent = \"OPEN\", when = \"locked\")\n",
+                ""));
+
+        assertThat(errors().toString(), success, is(true));
+        assertThat(sources, hasKey("sample.DoorStatemachineConfiguration"));
+
+        ClassLoader classLoader = load();
+        Statemachine statemachine = (Statemachine) classLoader.loadClass("sample.DoorStatemachine").newInstance();
+        Object door = classLoader.loadClass("sample.Door").newInstance();
+        statemachine.sendEvent("OPEN", door);
+        statemachine.sendEvent("CLOSE", door);
+        statemachine.sendEvent("OPEN", door);
+
+        assertThat(statemachine.getCurrentState(door).toString(), is("OPEN"));
+        assertThat(door.getClass().getField("log").get(door), is("opened,closing,opened,"));
+    }
+
+    @Test
+    public void testUnknownState_FailsCompilation() {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"AJAR\", onEvent = \"OPEN\")\n",
+                ""));
+
+        assertThat(success, is(false));
+        assertThat(errors(), hasItem(containsString("State with name AJAR not found")));
+    }
+
+    @Test
+    public void testUnknownEvent_FailsCompilation() {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"OPEN\", onEvent = \"KNOCK\")\n",
+                ""));
+
+        assertThat(success, is(false));
+        assertThat(errors(), hasItem(containsString("Unknown event KNOCK")));
+    }
+
+    @Test
+    public void testUnguardedTransitionsOnSameEvent_FailCompilation() {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\")\n" +
+                "@DefineState(id = \"CLOSED\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"OPEN\", onEvent = \"OPEN\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"CLOSED\", onEvent = \"OPEN\")\n",
+                ""));
+
+        assertThat(success, is(false));
+        assertThat(errors(), hasItem(containsString("Ambiguous transitions from INITIAL on event OPEN with priority 0")));
+    }
+
+    @Test
+    public void testGuardWithWrongSignature_FailsCompilation() {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"OPEN\", onEvent = \"OPEN\", when = \"allowed\")\n",
+                "    private boolean allowed(Context<Door> context) { return true; }\n"));
+
+        assertThat(success, is(false));
+        assertThat(errors(), hasItem(containsString("No method boolean allowed(Context)")));
+    }
+
+    @Test
+    public void testEventAndError_FailCompilation() {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"OPEN\", onEvent = \"OPEN\", onError = IllegalStateException.class)\n",
+                ""));
+
+        assertThat(success, is(false));
+        assertThat(errors(), hasItem(containsString("Both onError and onEvent were configured")));
+    }
+
+    @Test
+    public void testTransitionToInitialState_FailsCompilation() {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"OPEN\", onEvent = \"OPEN\")\n" +
+                "@DefineTransition(from = \"OPEN\", to = \"INITIAL\", onEvent = \"CLOSE\")\n",
+                ""));
+
+        assertThat(success, is(false));
+        assertThat(errors(), hasItem(containsString("Can not transit to the initial state")));
+    }
+
+    @Test
+    public void testTransitionsOfEqualPriority_KeepDeclarationOrder() throws Exception {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\")\n" +
+                "@DefineState(id = \"CLOSED\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"CLOSED\", onEvent = \"CLOSE\")\n" +
+                "@DefineTransition(from = {\"OPEN\", \"CLOSED\"}, to = \"FINAL\", onEvent = \"LOCK\", when = \"first\")\n" +
+                "@DefineTransition(from = \"CLOSED\", to = \"OPEN\", onEvent = \"LOCK\", when = \"second\")\n",
+                "    boolean first(Context<Door> context) { context.getObject().log += \"first,\"; return true; }\n" +
+                "    boolean second(Context<Door> context) { context.getObject().log += \"second,\"; return false; }\n"));
+
+        assertThat(errors().toString(), success, is(true));
+        ClassLoader classLoader = load();
+        Statemachine statemachine = (Statemachine) classLoader.loadClass("sample.DoorStatemachine").newInstance();
+        Object door = classLoader.loadClass("sample.Door").newInstance();
+        statemachine.sendEvent("CLOSE", door);
+        statemachine.sendEvent("LOCK", door);
+
+        assertThat(statemachine.getCurrentState(door).toString(), is("FINAL"));
+        assertThat(door.getClass().getField("log").get(door), is("first,second,"));
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void testFinalStateDifferentFromGetFinalState_FailsInitialisation() throws Exception {
+        boolean success = compile(machine(
+                "@DefineState(id = \"OPEN\")\n" +
+                "@DefineTransition(from = \"INITIAL\", to = \"OPEN\", onEvent = \"OPEN\")\n",
+                "").replace("finalState = \"FINAL\"", "finalState = \"LOCKED\""));
+
+        assertThat(errors().toString(), success, is(true));
+        load().loadClass("sample.DoorStatemachine").newInstance();
+    }
+
+    private static String machine(String annotations, String members) {
+        return "package sample;\n" +
+                "import de.core_concepts.statemachine.*;\n" +
+                "import de.core_concepts.statemachine.processor.*;\n" +
+                "@GenerateStatemachine(initialState = \"INITIAL\", finalState = \"FINAL\")\n" +
+                annotations +
+                "public class DoorStatemachine extends AbstractStatemachine<DoorState, DoorEvent, Door> {\n" +
+                "    public DoorStatemachine() {\n" +
+                "        super(DoorState.class, DoorEvent.class, Door.class);\n" +
+                "        initStateMachine();\n" +
+                "    }\n" +
+                "    protected void defineStates(StateConfigurer<DoorState, DoorEvent, Door> state) {\n" +
+                "        DoorStatemachineConfiguration.defineStates(this, state);\n" +
+                "    }\n" +
+                "    protected void defineTransitions(TransitionConfigurer<DoorState, DoorEvent, Door> transition) {\n" +
+                "        DoorStatemachineConfiguration.defineTransitions(this, transition);\n" +
+                "    }\n" +
+                "    protected void defineGenericActions(GenericActionConfigurer<Door> genericAction) {\n" +
+                "        genericAction.on(LifecycleEvent.SUCCESSFUL_STATE_CHANGE).execute(Action.of(context -> context.getObject().state =\n" +
+                "                (DoorState) context.getDataFor(LifecycleEvent.SUCCESSFUL_STATE_CHANGE).get().getToState())).add();\n" +
+                "    }\n" +
+                "    void opened(Context<Door> context) { context.getObject().log += \"opened,\"; }\n" +
+                "    void closing(Context<Door> context) { context.getObject().log += \"closing,\"; }\n" +
+                "    boolean unlocked(Context<Door> context) { return true; }\n" +
+                "    boolean locked(Context<Door> context) { return false; }\n" +
+                members +
+                "    protected void setCurrentState(Door door, DoorState state) { door.state = state; }\n" +
+                "    public DoorState getCurrentState(Object door) { return ((Door) door).state; }\n" +
+                "    public DoorEvent getEventFromString(String event) { return DoorEvent.valueOf(event); }\n" +
+                "    public DoorState getStateFromString(String state) { return DoorState.valueOf(state); }\n" +
+                "    protected DoorState getInitialState() { return DoorState.INITIAL; }\n" +
+                "    protected DoorState getFinalState() { return DoorState.FINAL; }\n" +
+                "}\n";
+    }
+
+    private boolean compile(String machine) {
+        List<JavaFileObject> sources = Arrays.asList(source("sample.Door", TYPES), source("sample.DoorState", STATES),
+                source("sample.DoorEvent", EVENTS), source("sample.DoorStatemachine", machine));
+        List<String> options = Arrays.asList("-classpath", classpath(AbstractStatemachine.class, GenerateStatemachine.class,
+                Validate.class, LoggerFactory.class));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, new InMemoryFileManager(), diagnostics, options, null, sources);
+        task.setProcessors(Collections.singletonList(new StatemachineProcessor()));
+        return task.call();
+    }
+
+    private List<String> errors() {
+        return diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(Locale.ENGLISH))
+                .collect(Collectors.toList());
+    }
+
+    private ClassLoader load() {
+        return new ClassLoader(getClass().getClassLoader()) {
+            private final Map<String, Class<?>> defined = new HashMap<>();
+
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classes.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defined.computeIfAbsent(name, key -> defineClass(name, bytes.toByteArray(), 0, bytes.size()));
+            }
+        };
+    }
+
+    private static String classpath(Class<?>... classes) {
+        return Stream.of(classes).map(type -> {
+            try {
+                return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            } catch (URISyntaxException e) {
+                throw new IllegalStateException(e);
+            }
+        }).collect(Collectors.joining(File.pathSeparator));
+    }
+
+    private static JavaFileObject source(String name, String content) {
+        return new SimpleJavaFileObject(URI.create("string:///" + name.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    /**
+     * Keeps generated sources and class files in memory, both keyed by the name of their class.
+     */
+    private class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private InMemoryFileManager() {
+            super(compiler.getStandardFileManager(null, Locale.ENGLISH, null));
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                private ByteArrayOutputStream bytes;
+
+                @Override
+                public OutputStream openOutputStream() {
+                    bytes = new ByteArrayOutputStream();
+                    (kind == Kind.CLASS ? classes : sources).put(className, bytes);
+                    return bytes;
+                }
+
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return bytes.toString();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package de.core_concepts.statemachine.reactive;
+
+
+import de.core_concepts.statemachine.BatchEvent;
+import de.core_concepts.statemachine.LifecycleEvent;
+import de.core_concepts.statemachine.StateChange;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The outcome of a single event processed by a StatemachineFlowProcessor: the state change of its object, along with the lifecycle
+ * events UNKNOWN_EVENT, VALIDATION_ERROR and PROCESSING_ERROR, if they occurred while processing it.
+ */
+public final class DispatchSignal {
+
+    private final BatchEvent batchEvent;
+    private final StateChange<?> stateChange;
+    private final Map<LifecycleEvent<?>, Object> lifecycleEvents;
+    private final RuntimeException error;
+
+    DispatchSignal(BatchEvent batchEvent, StateChange<?> stateChange, Map<LifecycleEvent<?>, Object> lifecycleEvents,
+                   RuntimeException error) {
+        this.batchEvent = batchEvent;
+        this.stateChange = stateChange;
+        this.lifecycleEvents = Collections.unmodifiableMap(lifecycleEvents);
+        this.error = error;
+    }
+
+    public Object getEvent() {
+        return batchEvent.getEvent();
+    }
+
+    public Object getObject() {
+        return batchEvent.getObject();
+    }
+
+    public Object getEventData() {
+        return batchEvent.getEventData();
+    }
+
+    /**
+     * @return The state of the object before the event and after it and all transitions following it were processed.
+     */
+    public StateChange<?> getStateChange() {
+        return stateChange;
+    }
+
+    /**
+     * @return True if the object is in another state than before the event.
+     */
+    public boolean isStateChanged() {
+        return !Objects.equals(stateChange.getFromState(), stateChange.getToState());
+    }
+
+    /**
+     * @return The lifecycle events UNKNOWN_EVENT, VALIDATION_ERROR and PROCESSING_ERROR which occurred, in the order they occurred, each
+     * mapped to the data it put on the Context.
+     */
+    public Map<LifecycleEvent<?>, Object> getLifecycleEvents() {
+        return lifecycleEvents;
+    }
+
+    public boolean hasLifecycleEvent(LifecycleEvent<?> lifecycleEvent) {
+        return lifecycleEvents.containsKey(lifecycleEvent);
+    }
+
+    /**
+     * @return The exception the statemachine threw while processing the event, if any. Exceptions handled by the statemachine are
+     * reported as PROCESSING_ERROR instead.
+     */
+    public Optional<RuntimeException> getError() {
+        return Optional.ofNullable(error);
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchSignal(event=" + getEvent() + ", object=" + getObject() + ", fromState=" + stateChange.getFromState()
+                + ", toState=" + stateChange.getToState() + ", lifecycleEvents=" + lifecycleEvents.keySet() + ", error=" + error + ")";
+    }
+}
@@ -0,0 +1,213 @@
+package de.core_concepts.statemachine.reactive;
+
+
+import de.core_concepts.statemachine.AbstractStatemachine;
+import de.core_concepts.statemachine.BatchEvent;
+import de.core_concepts.statemachine.Context;
+import de.core_concepts.statemachine.LifecycleEvent;
+import de.core_concepts.statemachine.LifecycleListener;
+import de.core_concepts.statemachine.StateChange;
+import org.apache.commons.lang.Validate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a stream of events through a statemachine and publishes the outcome of each, see {@link DispatchSignal}. It subscribes to a
+ * publisher of events, each along with its object and optional event data, and is subscribed to by a single subscriber of the
+ * outcomes. Use org.reactivestreams.FlowAdapters in order to connect it to Reactive Streams publishers and subscribers.
+ * <p>
+ * Every event results in exactly one signal, so the demand of the subscriber is passed on to the publisher as it is. Nothing is
+ * buffered in between: each event is processed synchronously on the thread which delivers it, and its signal is emitted right
+ * afterwards. If the subscriber cancels, the subscription to the publisher is cancelled as well.
+ * <p>
+ * A processor can be subscribed to a single publisher only.
+ *
+ * @param <O> The object type of the statemachine.
+ */
+public class StatemachineFlowProcessor<O> implements Flow.Processor<BatchEvent, DispatchSignal> {
+
+    private final AbstractStatemachine<?, ?, O> statemachine;
+    private final LifecycleListener<O> lifecycleListener = this::recordLifecycleEvent;
+    /* The signal of the event currently processed by this thread */
+    private final ThreadLocal<Map<LifecycleEvent<?>, Object>> currentLifecycleEvents = new ThreadLocal<>();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super DispatchSignal> downstream;
+    /* Demand and cancellation of the subscriber, which are passed on to the publisher one call at a time */
+    private final AtomicLong pendingDemand = new AtomicLong();
+    private final AtomicInteger forwarding = new AtomicInteger();
+    private volatile boolean cancelled;
+    /* How the publisher terminated, if it did before the subscriber subscribed */
+    private boolean completed;
+    private Throwable failure;
+    private boolean terminated;
+
+    /**
+     * @param statemachine The statemachine which processes the events.
+     */
+    public StatemachineFlowProcessor(AbstractStatemachine<?, ?, O> statemachine) {
+        Validate.notNull(statemachine, "statemachine can not be null.");
+        this.statemachine = statemachine;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super DispatchSignal> subscriber) {
+        // Rule 1.9 of Reactive Streams requires a NullPointerException
+        Objects.requireNonNull(subscriber, "subscriber can not be null.");
+        synchronized (this) {
+            if (downstream != null) {
+                subscriber.onSubscribe(new CancelledSubscription());
+                subscriber.onError(new IllegalStateException("The processor supports a single subscriber only."));
+                return;
+            }
+            downstream = subscriber;
+        }
+        subscriber.onSubscribe(new DownstreamSubscription());
+        synchronized (this) {
+            if (completed || failure != null) {
+                terminate();
+            }
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        // Rule 2.13 of Reactive Streams requires a NullPointerException for null signals
+        Objects.requireNonNull(subscription, "subscription can not be null.");
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        statemachine.addLifecycleListener(lifecycleListener);
+        upstream = subscription;
+        forwardDemand();
+    }
+
+    @Override
+    public void onNext(BatchEvent batchEvent) {
+        Objects.requireNonNull(batchEvent, "batchEvent can not be null.");
+        if (cancelled) {
+            return;
+        }
+        Map<LifecycleEvent<?>, Object> lifecycleEvents = new LinkedHashMap<>();
+        Object object = batchEvent.getObject();
+        Object fromState = statemachine.getCurrentState(object);
+        RuntimeException error = null;
+        currentLifecycleEvents.set(lifecycleEvents);
+        try {
+            statemachine.sendEvent(batchEvent.getEvent(), object, batchEvent.getEventData());
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            currentLifecycleEvents.remove();
+        }
+        StateChange<?> stateChange = new StateChange<>(fromState, statemachine.getCurrentState(object));
+        downstream.onNext(new DispatchSignal(batchEvent, stateChange, lifecycleEvents, error));
+    }
+
+    /**
+     * Records the lifecycle events of the event processed by this thread. Events queued by its actions for other objects are processed
+     * within the same call to sendEvent, so they are attributed to it as well.
+     */
+    private void recordLifecycleEvent(LifecycleEvent<?> event, Context<O> context) {
+        Map<LifecycleEvent<?>, Object> lifecycleEvents = currentLifecycleEvents.get();
+        if (lifecycleEvents != null && (event == LifecycleEvent.UNKNOWN_EVENT || event == LifecycleEvent.VALIDATION_ERROR
+                || event == LifecycleEvent.PROCESSING_ERROR)) {
+            lifecycleEvents.put(event, context.getDataFor(event).orElse(null));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable, "throwable can not be null.");
+        synchronized (this) {
+            failure = throwable;
+            if (downstream != null) {
+                terminate();
+            }
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            completed = true;
+            if (downstream != null) {
+                terminate();
+            }
+        }
+    }
+
+    private void terminate() {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        statemachine.removeLifecycleListener(lifecycleListener);
+        if (failure != null) {
+            downstream.onError(failure);
+        } else {
+            downstream.onComplete();
+        }
+    }
+
+    /**
+     * Passes the demand and cancellation of the subscriber on to the publisher. Only one thread forwards at a time, so that the
+     * publisher's subscription is called serially, even if the subscriber requests while the publisher subscribes.
+     */
+    private void forwardDemand() {
+        if (forwarding.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                if (cancelled) {
+                    subscription.cancel();
+                    statemachine.removeLifecycleListener(lifecycleListener);
+                } else {
+                    long demand = pendingDemand.getAndSet(0);
+                    if (demand > 0) {
+                        subscription.request(demand);
+                    }
+                }
+            }
+        } while (forwarding.decrementAndGet() != 0);
+    }
+
+    private final class DownstreamSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                downstream.onError(new IllegalArgumentException("The number of requested signals must be positive, but was " + n + "."));
+                return;
+            }
+            pendingDemand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            forwardDemand();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            forwardDemand();
+        }
+    }
+
+    private static final class CancelledSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package de.core_concepts.statemachine.reactive;
+
+import de.core_concepts.statemachine.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CountDownLatch;
+
+import static de.core_concepts.statemachine.reactive.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.reactive.TestEvent.EVENT2;
+import static de.core_concepts.statemachine.reactive.TestState.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests the class {@link StatemachineFlowProcessor}
+ */
+public class StatemachineFlowProcessorTest {
+
+    @Test
+    public void testDemand_Is_Propagated_To_Publisher() throws Exception {
+        List<TestObject> objects = List.of(new TestObject(), new TestObject(), new TestObject());
+        TestPublisher publisher = new TestPublisher(objects);
+        TestSubscriber subscriber = new TestSubscriber();
+        StatemachineFlowProcessor<TestObject> processor = new StatemachineFlowProcessor<>(new TestSm());
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        assertThat(publisher.requested, is(0L));
+        subscriber.subscription.request(2);
+
+        assertThat(publisher.requested, is(2L));
+        assertThat(subscriber.signals.size(), is(2));
+        assertThat(objects.get(1).getState(), is(STATE2));
+        assertThat(objects.get(2).getState(), is(STATE1));
+        assertThat(subscriber.signals.get(0).getStateChange().getFromState(), is((Object) STATE1));
+        assertThat(subscriber.signals.get(0).getStateChange().getToState(), is((Object) STATE2));
+        assertThat(subscriber.signals.get(0).isStateChanged(), is(true));
+
+        subscriber.subscription.request(5);
+
+        assertThat(publisher.requested, is(7L));
+        assertThat(subscriber.signals.size(), is(3));
+        assertThat(objects.get(2).getState(), is(STATE2));
+        assertThat(subscriber.completed, is(true));
+    }
+
+    @Test
+    public void testLifecycle_Events_Are_Signalled() throws Exception {
+        TestObject object = new TestObject();
+        TestSubscriber subscriber = new TestSubscriber();
+        StatemachineFlowProcessor<TestObject> processor = new StatemachineFlowProcessor<>(new TestSm());
+        new TestPublisher(List.of(new BatchEvent(EVENT2, object), new BatchEvent(EVENT1, object))).subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertThat(subscriber.signals.size(), is(2));
+        DispatchSignal unknown = subscriber.signals.get(0);
+        assertThat(unknown.hasLifecycleEvent(LifecycleEvent.UNKNOWN_EVENT), is(true));
+        assertThat(unknown.isStateChanged(), is(false));
+        assertThat(unknown.getEvent(), is((Object) EVENT2));
+        DispatchSignal changed = subscriber.signals.get(1);
+        assertThat(changed.getLifecycleEvents().isEmpty(), is(true));
+        assertThat(changed.getError().isPresent(), is(false));
+        assertThat(object.getState(), is(STATE2));
+    }
+
+    @Test
+    public void testCancel_Cancels_Publisher() throws Exception {
+        TestPublisher publisher = new TestPublisher(List.of(new TestObject(), new TestObject()));
+        TestSubscriber subscriber = new TestSubscriber() {
+            @Override
+            public void onNext(DispatchSignal item) {
+                super.onNext(item);
+                subscription.cancel();
+            }
+        };
+        StatemachineFlowProcessor<TestObject> processor = new StatemachineFlowProcessor<>(new TestSm());
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+
+        assertThat(publisher.cancelled, is(true));
+        assertThat(subscriber.signals.size(), is(1));
+    }
+
+    @Test
+    public void testInvalid_Request_Signals_Error() throws Exception {
+        TestPublisher publisher = new TestPublisher(List.of(new TestObject()));
+        TestSubscriber subscriber = new TestSubscriber();
+        StatemachineFlowProcessor<TestObject> processor = new StatemachineFlowProcessor<>(new TestSm());
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+        assertThat(publisher.cancelled, is(true));
+    }
+
+    @Test
+    public void testSecond_Subscriber_Is_Rejected() throws Exception {
+        StatemachineFlowProcessor<TestObject> processor = new StatemachineFlowProcessor<>(new TestSm());
+        processor.subscribe(new TestSubscriber());
+        TestSubscriber second = new TestSubscriber();
+
+        processor.subscribe(second);
+
+        assertThat(second.error, is(instanceOf(IllegalStateException.class)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testOnNext_Null_Throws_NullPointerException() throws Exception {
+        new StatemachineFlowProcessor<>(new TestSm()).onNext(null);
+    }
+
+    @Test
+    public void testSubmissionPublisher() throws Exception {
+        List<TestObject> objects = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        TestSubscriber subscriber = new TestSubscriber() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                super.onSubscribe(subscription);
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onComplete() {
+                super.onComplete();
+                done.countDown();
+            }
+        };
+        StatemachineFlowProcessor<TestObject> processor = new StatemachineFlowProcessor<>(new TestSm());
+        processor.subscribe(subscriber);
+        try (SubmissionPublisher<BatchEvent> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (int i = 0; i < 100; i++) {
+                TestObject object = new TestObject();
+                objects.add(object);
+                publisher.submit(new BatchEvent(EVENT1, object));
+            }
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(subscriber.signals.size(), is(100));
+        objects.forEach(object -> assertThat(object.getState(), is(STATE2)));
+    }
+
+    /**
+     * Emits the given events synchronously as they are requested and records the demand.
+     */
+    private static class TestPublisher implements Flow.Publisher<BatchEvent> {
+
+        private final List<BatchEvent> events = new ArrayList<>();
+        private long requested;
+        private boolean cancelled;
+        private int next;
+        private boolean emitting;
+
+        private TestPublisher(List<?> eventsOrObjects) {
+            eventsOrObjects.forEach(item -> events.add(item instanceof BatchEvent ? (BatchEvent) item : new BatchEvent(EVENT1, item)));
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super BatchEvent> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (!cancelled && next < events.size() && next < requested) {
+                        subscriber.onNext(events.get(next++));
+                    }
+                    emitting = false;
+                    if (!cancelled && next == events.size()) {
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static class TestSubscriber implements Flow.Subscriber<DispatchSignal> {
+
+        protected Flow.Subscription subscription;
+        private final List<DispatchSignal> signals = new ArrayList<>();
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(DispatchSignal item) {
+            signals.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static class TestSm extends AbstractStatemachine<TestState, TestEvent, TestObject> {
+
+        private TestSm() {
+            super(TestState.class, TestEvent.class, TestObject.class);
+            initStateMachine();
+        }
+
+        @Override
+        protected void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+            state.withId(STATE1).add();
+            state.withId(STATE2).add();
+        }
+
+        @Override
+        protected void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+            transition.from(STATE1).to(STATE2).onEvent(EVENT1).add();
+        }
+
+        @Override
+        protected void defineGenericActions(GenericActionConfigurer<TestObject> genericActionConfigurer) {
+            genericActionConfigurer.on(LifecycleEvent.SUCCESSFUL_STATE_CHANGE)
+                    .execute(Action.of(context -> context.getDataFor(LifecycleEvent.SUCCESSFUL_STATE_CHANGE)
+                            .ifPresent(stateChange -> setCurrentState(context.getObject(), (TestState) stateChange.getToState()))))
+                    .add();
+        }
+
+        @Override
+        public Object getCurrentState(Object object) {
+            return ((TestObject) object).getState();
+        }
+
+        @Override
+        protected void setCurrentState(TestObject object, TestState state) {
+            object.setState(state);
+        }
+
+        @Override
+        public TestState getStateFromString(String stateName) {
+            return TestState.valueOf(stateName);
+        }
+
+        @Override
+        public TestEvent getEventFromString(String eventName) {
+            return TestEvent.valueOf(eventName);
+        }
+
+        @Override
+        protected TestState getFinalState() {
+            return END;
+        }
+
+        @Override
+        protected TestState getInitialState() {
+            return START;
+        }
+    }
+}
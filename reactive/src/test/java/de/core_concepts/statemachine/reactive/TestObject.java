@@ -0,0 +1,22 @@
+package de.core_concepts.statemachine.reactive;
+
+/**
+ * Object type for the statemachines of this module's tests
+ */
+public class TestObject {
+
+    private volatile TestState state = TestState.STATE1;
+
+    public TestState getState() {
+        return state;
+    }
+
+    public void setState(TestState state) {
+        this.state = state;
+    }
+
+    @Override
+    public String toString() {
+        return "TestObject(state=" + state + ")";
+    }
+}
@@ -0,0 +1,9 @@
+package de.core_concepts.statemachine.reactive;
+
+
+/**
+ * State Enum for the statemachines of this module's tests
+ */
+public enum TestState {
+    START, STATE1, STATE2, END
+}
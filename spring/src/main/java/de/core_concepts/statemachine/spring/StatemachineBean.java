@@ -2,14 +2,17 @@ package de.core_concepts.statemachine.spring;
 
 
 import de.core_concepts.statemachine.AbstractStatemachine;
+import de.core_concepts.statemachine.StatemachineDefinition;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.NestedTransactionNotSupportedException;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import javax.annotation.PostConstruct;
 
+import static org.springframework.transaction.TransactionDefinition.PROPAGATION_NESTED;
 import static org.springframework.transaction.TransactionDefinition.PROPAGATION_REQUIRES_NEW;
 
 /**
@@ -22,6 +25,7 @@ import static org.springframework.transaction.TransactionDefinition.PROPAGATION_
 public abstract class StatemachineBean<S, E, O> extends AbstractStatemachine<S, E, O> {
 
     static final ThreadLocal<TransactionStatus> currentTransaction = new ThreadLocal<>();
+    static final ThreadLocal<TransactionStatus> currentBatchTransaction = new ThreadLocal<>();
 
     /**
      * Use this to obtain regular Action beans using a component name.
@@ -32,6 +36,9 @@ public abstract class StatemachineBean<S, E, O> extends AbstractStatemachine<S,
     @Autowired(required = false)
     private PlatformTransactionManager transactionManager;
 
+    /* Set once the transaction manager refused a nested transaction */
+    private volatile boolean nestedTransactionsUnsupported;
+
     /**
      * @param stateType  The class object for the state type S.
      * @param eventType  The class object for the event type E.
@@ -43,26 +50,112 @@ public abstract class StatemachineBean<S, E, O> extends AbstractStatemachine<S,
 
     @PostConstruct
     public final void init() {
-        initStateMachine();
+        StatemachineDefinition<S, E, O> sharedDefinition = getSharedDefinition();
+        if (sharedDefinition != null) {
+            initStateMachine(sharedDefinition);
+        } else {
+            initStateMachine();
+        }
+    }
+
+    /**
+     * Hook method which allows beans to share the definition of another statemachine instead of building their own, e.g. if there are
+     * many beans for the same statemachine which only differ in their configuration.
+     *
+     * @return The definition this bean should use, or null if it should build its own. Returns null by default.
+     */
+    protected StatemachineDefinition<S, E, O> getSharedDefinition() {
+        return null;
     }
 
+    /**
+     * Creates a new transaction. Within a batch transaction the transaction is nested, so that a failed object only rolls back its own
+     * work. If the PlatformTransactionManager doesn't support savepoints, a new transaction is created instead, for this and all
+     * following objects.
+     */
     @Override
     protected final void createTransaction() {
-        if (transactionManager != null && currentTransaction.get() == null) {
+        if (transactionManager != null && getCurrentTransaction() == null) {
+            if (getCurrentBatchTransaction() != null && !nestedTransactionsUnsupported) {
+                try {
+                    log.debug("Creating new nested transaction.");
+                    setCurrentTransaction(transactionManager.getTransaction(new DefaultTransactionDefinition(PROPAGATION_NESTED)));
+                    return;
+                } catch (NestedTransactionNotSupportedException e) {
+                    log.warn("The transaction manager doesn't support nested transactions. Objects of a batch get new transactions "
+                            + "instead.", e);
+                    nestedTransactionsUnsupported = true;
+                }
+            }
             log.debug("Creating new transaction.");
-            currentTransaction.set(transactionManager.getTransaction(new DefaultTransactionDefinition(PROPAGATION_REQUIRES_NEW)));
+            setCurrentTransaction(transactionManager.getTransaction(new DefaultTransactionDefinition(PROPAGATION_REQUIRES_NEW)));
         }
     }
 
     @Override
     protected final void closeTransaction(boolean rollback) {
-        TransactionStatus transactionStatus = currentTransaction.get();
+        close(getCurrentTransaction(), false, rollback);
+    }
+
+    @Override
+    protected final void createBatchTransaction() {
+        if (transactionManager != null && getCurrentBatchTransaction() == null) {
+            log.debug("Creating new batch transaction.");
+            setCurrentBatchTransaction(transactionManager.getTransaction(new DefaultTransactionDefinition(PROPAGATION_REQUIRES_NEW)));
+        }
+    }
+
+    @Override
+    protected final void closeBatchTransaction(boolean rollback) {
+        close(getCurrentBatchTransaction(), true, rollback);
+    }
+
+    /**
+     * Hook method which provides the transaction of the current dispatch. Together with the other accessors of the current
+     * transactions, it allows subclasses to keep the transactions elsewhere than in a ThreadLocal, e.g. in a scope of the dispatch.
+     *
+     * @return The transaction of the current dispatch, or null if there is none.
+     */
+    protected TransactionStatus getCurrentTransaction() {
+        return currentTransaction.get();
+    }
+
+    /**
+     * @param transactionStatus The transaction of the current dispatch, or null if it was closed.
+     */
+    protected void setCurrentTransaction(TransactionStatus transactionStatus) {
+        if (transactionStatus == null) {
+            currentTransaction.remove();
+        } else {
+            currentTransaction.set(transactionStatus);
+        }
+    }
+
+    /**
+     * @return The transaction of the current batch, or null if there is none.
+     */
+    protected TransactionStatus getCurrentBatchTransaction() {
+        return currentBatchTransaction.get();
+    }
+
+    /**
+     * @param transactionStatus The transaction of the current batch, or null if it was closed.
+     */
+    protected void setCurrentBatchTransaction(TransactionStatus transactionStatus) {
+        if (transactionStatus == null) {
+            currentBatchTransaction.remove();
+        } else {
+            currentBatchTransaction.set(transactionStatus);
+        }
+    }
+
+    private void close(TransactionStatus transactionStatus, boolean batch, boolean rollback) {
         if (transactionManager == null || transactionStatus == null) {
             return;
         }
         if (transactionStatus.isCompleted()) {
             log.debug("Transaction is already completed. Removing it.");
-            currentTransaction.remove();
+            remove(batch);
             return;
         }
         try {
@@ -77,8 +170,16 @@ public abstract class StatemachineBean<S, E, O> extends AbstractStatemachine<S,
             log.error("Exception during commit or rollback.");
             throw e;
         } finally {
-            log.debug("Removing transaction from thread local.");
-            currentTransaction.remove();
+            log.debug("Removing transaction.");
+            remove(batch);
+        }
+    }
+
+    private void remove(boolean batch) {
+        if (batch) {
+            setCurrentBatchTransaction(null);
+        } else {
+            setCurrentTransaction(null);
         }
     }
 }
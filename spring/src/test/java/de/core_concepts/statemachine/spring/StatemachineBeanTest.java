@@ -8,6 +8,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.transaction.NestedTransactionNotSupportedException;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
@@ -21,6 +22,7 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.transaction.TransactionDefinition.PROPAGATION_NESTED;
 import static org.springframework.transaction.TransactionDefinition.PROPAGATION_REQUIRES_NEW;
 
 /**
@@ -42,6 +44,7 @@ public class StatemachineBeanTest {
     @Before
     public void setUp() throws Exception {
         TestSm.currentTransaction.set(null);
+        TestSm.currentBatchTransaction.set(null);
     }
 
     @Test
@@ -145,6 +148,57 @@ public class StatemachineBeanTest {
         testee.closeTransaction(true);
     }
 
+    @Test
+    public void testCreateTransaction_WithinBatchTransaction_IsNested() throws Exception {
+        TestSm.currentBatchTransaction.set(mock(TransactionStatus.class));
+        when(transactionManager.getTransaction(new DefaultTransactionDefinition(PROPAGATION_NESTED)))
+                .thenReturn(mock(TransactionStatus.class));
+
+        testee.createTransaction();
+
+        assertThat(TestSm.currentTransaction.get(), is(notNullValue()));
+        verify(transactionManager).getTransaction(new DefaultTransactionDefinition(PROPAGATION_NESTED));
+    }
+
+    @Test
+    public void testCreateTransaction_WithinBatchTransaction_WithoutSavepoints_RequiresNew() throws Exception {
+        TestSm.currentBatchTransaction.set(mock(TransactionStatus.class));
+        when(transactionManager.getTransaction(new DefaultTransactionDefinition(PROPAGATION_NESTED)))
+                .thenThrow(new NestedTransactionNotSupportedException("JpaDialect does not support savepoints"));
+        when(transactionManager.getTransaction(new DefaultTransactionDefinition(PROPAGATION_REQUIRES_NEW)))
+                .thenReturn(mock(TransactionStatus.class));
+
+        testee.createTransaction();
+        TestSm.currentTransaction.set(null);
+        testee.createTransaction();
+
+        assertThat(TestSm.currentTransaction.get(), is(notNullValue()));
+        verify(transactionManager).getTransaction(new DefaultTransactionDefinition(PROPAGATION_NESTED));
+        verify(transactionManager, times(2)).getTransaction(new DefaultTransactionDefinition(PROPAGATION_REQUIRES_NEW));
+    }
+
+    @Test
+    public void testCreateBatchTransaction() throws Exception {
+        when(transactionManager.getTransaction(new DefaultTransactionDefinition(PROPAGATION_REQUIRES_NEW)))
+                .thenReturn(mock(TransactionStatus.class));
+
+        testee.createBatchTransaction();
+
+        assertThat(TestSm.currentBatchTransaction.get(), is(notNullValue()));
+        assertThat(TestSm.currentTransaction.get(), is(nullValue()));
+    }
+
+    @Test
+    public void testCloseBatchTransaction_Commit() throws Exception {
+        final SimpleTransactionStatus transactionStatus = new SimpleTransactionStatus();
+        TestSm.currentBatchTransaction.set(transactionStatus);
+
+        testee.closeBatchTransaction(false);
+
+        assertThat(TestSm.currentBatchTransaction.get(), is(nullValue()));
+        verify(transactionManager).commit(transactionStatus);
+    }
+
     @Test
     public void testInit_IsPostConstruct() throws Exception {
         final Method initMethod = ReflectionUtils.findMethod(StatemachineBean.class, "init");
@@ -161,4 +215,18 @@ public class StatemachineBeanTest {
         verify(testee).defineTransitions(any());
         verify(testee).defineGenericActions(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInit_UsesSharedDefinition() throws Exception {
+        TestSm template = new TestSm();
+        template.init();
+        doReturn(template.getDefinition()).when(testee).getSharedDefinition();
+
+        testee.init();
+
+        assertThat(testee.getDefinition(), is(sameInstance(template.getDefinition())));
+        verify(testee, never()).defineStates(any());
+        verify(testee, never()).defineTransitions(any());
+        verify(testee, never()).defineGenericActions(any());
+    }
+}
@@ -0,0 +1,108 @@
+package de.core_concepts.statemachine.virtual;
+
+
+import de.core_concepts.statemachine.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * The state of a dispatch which is bound to a ScopedValue instead of ThreadLocals. Unlike a ThreadLocal, it is released as soon as the
+ * dispatch completed, so that nothing of a dispatch is kept per thread. This matters when running a virtual thread per event, as there
+ * may be millions of them.
+ * <p>
+ * A scope is started by the dispatching methods of ScopedStatemachine and ScopedStatemachineBean, and for every task run by a
+ * VirtualThreadExecutor. Events which are sent while the thread already runs a scope, e.g. by actions, share it.
+ */
+public final class DispatchScope {
+
+    private static final ScopedValue<DispatchScope> CURRENT = ScopedValue.newInstance();
+
+    private final Map<Object, Object> values = new HashMap<>(4);
+    private Context<?> context;
+    /* The Contexts of the dispatches which the current one is nested in, e.g. by an action sending an event to another statemachine */
+    private final List<Context<?>> outerContexts = new ArrayList<>(2);
+
+    private DispatchScope() {
+    }
+
+    /**
+     * Provides the Context of the dispatch running on the current thread to code which doesn't receive it as a parameter, e.g.
+     * services called by actions.
+     *
+     * @return The Context of the current dispatch, or an empty Optional if the thread isn't dispatching within a scope.
+     */
+    public static Optional<Context<?>> currentContext() {
+        return CURRENT.isBound() ? Optional.ofNullable(CURRENT.get().context) : Optional.empty();
+    }
+
+    /**
+     * @return The scope of the current thread, or null if there is none.
+     */
+    static DispatchScope current() {
+        return CURRENT.orElse(null);
+    }
+
+    /**
+     * Runs the dispatch within a new scope, unless the current thread already runs one.
+     */
+    static void run(Runnable dispatch) {
+        if (CURRENT.isBound()) {
+            dispatch.run();
+        } else {
+            ScopedValue.where(CURRENT, new DispatchScope()).run(dispatch);
+        }
+    }
+
+    /**
+     * Runs the dispatch within a new scope, unless the current thread already runs one.
+     *
+     * @return The result of the dispatch.
+     */
+    static <T> T call(Supplier<T> dispatch) {
+        if (CURRENT.isBound()) {
+            return dispatch.get();
+        }
+        return ScopedValue.where(CURRENT, new DispatchScope()).get(dispatch);
+    }
+
+    /**
+     * Makes the Context available by {@link #currentContext()}, if the current thread runs a scope, until it is released.
+     */
+    static void bind(Context<?> context) {
+        if (CURRENT.isBound()) {
+            DispatchScope scope = CURRENT.get();
+            scope.outerContexts.add(scope.context);
+            scope.context = context;
+        }
+    }
+
+    /**
+     * Makes the Context which was bound before the last call to bind available again, i.e. the one of the outer dispatch, if any.
+     */
+    static void release() {
+        if (CURRENT.isBound()) {
+            DispatchScope scope = CURRENT.get();
+            scope.context = scope.outerContexts.isEmpty() ? null : scope.outerContexts.remove(scope.outerContexts.size() - 1);
+        }
+    }
+
+    Object get(Object key) {
+        return values.get(key);
+    }
+
+    /**
+     * @param value The value to be kept for the rest of the dispatch, or null in order to remove the key.
+     */
+    void put(Object key, Object value) {
+        if (value == null) {
+            values.remove(key);
+        } else {
+            values.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package de.core_concepts.statemachine.virtual;
+
+
+import de.core_concepts.statemachine.AbstractStatemachine;
+import de.core_concepts.statemachine.BatchEvent;
+import de.core_concepts.statemachine.BatchResult;
+import de.core_concepts.statemachine.Context;
+
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+/**
+ * A statemachine for virtual threads. The Context of a dispatch is not bound to the thread, but to a DispatchScope, which is
+ * released when the dispatch completed. Code which doesn't receive the Context as a parameter obtains it by
+ * {@link DispatchScope#currentContext()}. Events sent by sendEventAsync and proceedAsync are processed by a virtual thread each.
+ * <p>
+ * The statemachine still keeps a small ThreadLocal per thread, which queues events sent by actions until the current dispatch
+ * completed. Prefer blocking actions over AsyncActions, as blocking a virtual thread is cheap.
+ *
+ * @param <S> The type defining the states the Statemachine knows of.
+ * @param <E> The type defining the events the Statemachine listens to.
+ * @param <O> The object type which is put on the context for actions to work with.
+ */
+public abstract class ScopedStatemachine<S, E, O> extends AbstractStatemachine<S, E, O> {
+
+    /**
+     * @param stateType  The class object for the state type S.
+     * @param eventType  The class object for the event type E.
+     * @param objectType The class object for the object type O.
+     */
+    protected ScopedStatemachine(Class<S> stateType, Class<E> eventType, Class<O> objectType) {
+        super(stateType, eventType, objectType);
+    }
+
+    @Override
+    public void sendEvent(Object event, Object object, Object eventData) {
+        DispatchScope.run(() -> super.sendEvent(event, object, eventData));
+    }
+
+    @Override
+    public void proceed(Object object) {
+        DispatchScope.run(() -> super.proceed(object));
+    }
+
+    @Override
+    public BatchResult sendEvents(Object event, Collection<?> objects) {
+        return DispatchScope.call(() -> super.sendEvents(event, objects));
+    }
+
+    @Override
+    public BatchResult sendEvents(Collection<BatchEvent> events) {
+        return DispatchScope.call(() -> super.sendEvents(events));
+    }
+
+    /**
+     * The Context is bound to the DispatchScope instead.
+     */
+    @Override
+    protected boolean isThreadBoundContextEnabled() {
+        return false;
+    }
+
+    @Override
+    protected void contextBound(Context<O> currentContext) {
+        DispatchScope.bind(currentContext);
+    }
+
+    @Override
+    protected void contextReleased(Context<O> currentContext) {
+        DispatchScope.release();
+    }
+
+    /**
+     * Blocking a virtual thread is cheap, so asynchronous dispatches run on a single thread within their DispatchScope.
+     */
+    @Override
+    protected boolean isNonBlockingDispatchEnabled() {
+        return false;
+    }
+
+    /**
+     * @return {@link VirtualThreadExecutor#getDefault()}
+     */
+    @Override
+    protected Executor getAsyncExecutor() {
+        return VirtualThreadExecutor.getDefault();
+    }
+}
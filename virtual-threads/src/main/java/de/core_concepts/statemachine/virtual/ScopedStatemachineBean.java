@@ -0,0 +1,121 @@
+package de.core_concepts.statemachine.virtual;
+
+
+import de.core_concepts.statemachine.BatchEvent;
+import de.core_concepts.statemachine.BatchResult;
+import de.core_concepts.statemachine.Context;
+import de.core_concepts.statemachine.spring.StatemachineBean;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+/**
+ * A StatemachineBean for virtual threads. Like ScopedStatemachine, it binds the Context of a dispatch to a DispatchScope, and also the
+ * status of its transaction and of the transaction of a batch. Dispatches which run outside of a scope, e.g. those of a BulkProcessor
+ * on a platform thread pool, keep them in ThreadLocals as StatemachineBean does.
+ * <p>
+ * The PlatformTransactionManager still binds the resources of a transaction to the thread, but only while the transaction is open.
+ *
+ * @param <S> The type defining the states the Statemachine knows of.
+ * @param <E> The type defining the events the Statemachine listens to.
+ * @param <O> The object type which is put on the context for actions to work with.
+ */
+@Component
+public abstract class ScopedStatemachineBean<S, E, O> extends StatemachineBean<S, E, O> {
+
+    /* The keys of the transactions within the DispatchScope */
+    private static final Object TRANSACTION = new Object();
+    private static final Object BATCH_TRANSACTION = new Object();
+
+    /**
+     * @param stateType  The class object for the state type S.
+     * @param eventType  The class object for the event type E.
+     * @param objectType The class object for the object type O.
+     */
+    protected ScopedStatemachineBean(Class<S> stateType, Class<E> eventType, Class<O> objectType) {
+        super(stateType, eventType, objectType);
+    }
+
+    @Override
+    public void sendEvent(Object event, Object object, Object eventData) {
+        DispatchScope.run(() -> super.sendEvent(event, object, eventData));
+    }
+
+    @Override
+    public void proceed(Object object) {
+        DispatchScope.run(() -> super.proceed(object));
+    }
+
+    @Override
+    public BatchResult sendEvents(Object event, Collection<?> objects) {
+        return DispatchScope.call(() -> super.sendEvents(event, objects));
+    }
+
+    @Override
+    public BatchResult sendEvents(Collection<BatchEvent> events) {
+        return DispatchScope.call(() -> super.sendEvents(events));
+    }
+
+    @Override
+    protected boolean isThreadBoundContextEnabled() {
+        return false;
+    }
+
+    @Override
+    protected void contextBound(Context<O> currentContext) {
+        DispatchScope.bind(currentContext);
+    }
+
+    @Override
+    protected void contextReleased(Context<O> currentContext) {
+        DispatchScope.release();
+    }
+
+    /**
+     * Blocking a virtual thread is cheap, so asynchronous dispatches run on a single thread within their DispatchScope, which
+     * keeps their transaction.
+     */
+    @Override
+    protected boolean isNonBlockingDispatchEnabled() {
+        return false;
+    }
+
+    @Override
+    protected Executor getAsyncExecutor() {
+        return VirtualThreadExecutor.getDefault();
+    }
+
+    @Override
+    protected TransactionStatus getCurrentTransaction() {
+        DispatchScope scope = DispatchScope.current();
+        return scope != null ? (TransactionStatus) scope.get(TRANSACTION) : super.getCurrentTransaction();
+    }
+
+    @Override
+    protected void setCurrentTransaction(TransactionStatus transactionStatus) {
+        DispatchScope scope = DispatchScope.current();
+        if (scope != null) {
+            scope.put(TRANSACTION, transactionStatus);
+        } else {
+            super.setCurrentTransaction(transactionStatus);
+        }
+    }
+
+    @Override
+    protected TransactionStatus getCurrentBatchTransaction() {
+        DispatchScope scope = DispatchScope.current();
+        return scope != null ? (TransactionStatus) scope.get(BATCH_TRANSACTION) : super.getCurrentBatchTransaction();
+    }
+
+    @Override
+    protected void setCurrentBatchTransaction(TransactionStatus transactionStatus) {
+        DispatchScope scope = DispatchScope.current();
+        if (scope != null) {
+            scope.put(BATCH_TRANSACTION, transactionStatus);
+        } else {
+            super.setCurrentBatchTransaction(transactionStatus);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package de.core_concepts.statemachine.virtual;
+
+
+import org.apache.commons.lang.Validate;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An Executor which starts a new virtual thread for every task, each running in its own DispatchScope. Use it for
+ * {@link de.core_concepts.statemachine.AbstractStatemachine#getAsyncExecutor()} or a BulkProcessor, so that each event is processed by
+ * a thread of its own. Actions may block, e.g. on JDBC calls, without a thread pool having to be sized for the number of concurrent
+ * events.
+ * <p>
+ * Virtual threads are cheap, but the resources actions use, like database connections, are not. Bound the number of concurrent events,
+ * e.g. by {@link de.core_concepts.statemachine.BulkProcessor#withMaxInFlight(int)}.
+ */
+public final class VirtualThreadExecutor implements Executor {
+
+    private static final VirtualThreadExecutor DEFAULT = new VirtualThreadExecutor("statemachine-");
+
+    private final ThreadFactory threadFactory;
+
+    /**
+     * @param namePrefix The prefix of the names of the threads, which are numbered consecutively.
+     */
+    public VirtualThreadExecutor(String namePrefix) {
+        Validate.notNull(namePrefix, "namePrefix can not be null.");
+        this.threadFactory = Thread.ofVirtual().name(namePrefix, 0).factory();
+    }
+
+    /**
+     * @return An executor whose threads are named statemachine-0, statemachine-1 and so on.
+     */
+    public static VirtualThreadExecutor getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Validate.notNull(command, "command can not be null.");
+        threadFactory.newThread(() -> DispatchScope.run(command)).start();
+    }
+}
@@ -0,0 +1,140 @@
+package de.core_concepts.statemachine.virtual;
+
+import de.core_concepts.statemachine.*;
+import de.core_concepts.statemachine.spring.StatemachineBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.core_concepts.statemachine.virtual.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.virtual.TestState.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests the class {@link ScopedStatemachineBean}
+ */
+public class ScopedStatemachineBeanTest {
+
+    private final List<String> transactionLog = new ArrayList<>();
+    private final List<TransactionStatus> transactionsSeenByActions = new ArrayList<>();
+    private TestScopedSmBean testee;
+
+    @Before
+    public void setUp() throws Exception {
+        testee = new TestScopedSmBean();
+        Field field = ReflectionUtils.findField(StatemachineBean.class, "transactionManager");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, testee, new RecordingTransactionManager());
+        testee.init();
+    }
+
+    @Test
+    public void testSendEvent_Keeps_Transaction_In_Scope() throws Exception {
+        TestObject object = new TestObject();
+
+        testee.sendEvent(EVENT1, object);
+
+        assertThat(object.getState(), is(STATE2));
+        assertThat(transactionsSeenByActions.get(0), is(notNullValue()));
+        assertThat(testee.getCurrentTransaction(), is(nullValue()));
+        assertThat(transactionLog, is(Arrays.asList("begin " + TransactionDefinition.PROPAGATION_REQUIRES_NEW, "commit")));
+    }
+
+    @Test
+    public void testSendEvents_Nests_Transactions_In_Batch_Transaction() throws Exception {
+        BatchResult result = testee.sendEvents(EVENT1, Arrays.asList(new TestObject(), new TestObject()));
+
+        assertThat(result.getSucceededCount(), is(2));
+        assertThat(transactionLog.get(0), is("begin " + TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        assertThat(transactionLog.get(1), is("begin " + TransactionDefinition.PROPAGATION_NESTED));
+        assertThat(transactionLog.get(transactionLog.size() - 1), is("commit"));
+        assertThat(testee.getCurrentBatchTransaction(), is(nullValue()));
+    }
+
+    private class RecordingTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            transactionLog.add("begin " + definition.getPropagationBehavior());
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            transactionLog.add("commit");
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            transactionLog.add("rollback");
+        }
+    }
+
+    private class TestScopedSmBean extends ScopedStatemachineBean<TestState, TestEvent, TestObject> {
+
+        private TestScopedSmBean() {
+            super(TestState.class, TestEvent.class, TestObject.class);
+        }
+
+        @Override
+        protected void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+            state.withId(STATE1).add();
+            state.withId(STATE2).add();
+        }
+
+        @Override
+        protected void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+            transition.from(STATE1).to(STATE2).onEvent(EVENT1)
+                    .action(Action.of(context -> transactionsSeenByActions.add(getCurrentTransaction())))
+                    .add();
+        }
+
+        @Override
+        protected void defineGenericActions(GenericActionConfigurer<TestObject> genericActionConfigurer) {
+            genericActionConfigurer.on(LifecycleEvent.SUCCESSFUL_STATE_CHANGE)
+                    .execute(Action.of(context -> context.getDataFor(LifecycleEvent.SUCCESSFUL_STATE_CHANGE)
+                            .ifPresent(stateChange -> setCurrentState(context.getObject(), (TestState) stateChange.getToState()))))
+                    .add();
+        }
+
+        @Override
+        public Object getCurrentState(Object object) {
+            return ((TestObject) object).getState();
+        }
+
+        @Override
+        protected void setCurrentState(TestObject object, TestState state) {
+            object.setState(state);
+        }
+
+        @Override
+        public TestState getStateFromString(String stateName) {
+            return TestState.valueOf(stateName);
+        }
+
+        @Override
+        public TestEvent getEventFromString(String eventName) {
+            return TestEvent.valueOf(eventName);
+        }
+
+        @Override
+        protected TestState getFinalState() {
+            return END;
+        }
+
+        @Override
+        protected TestState getInitialState() {
+            return START;
+        }
+    }
+}
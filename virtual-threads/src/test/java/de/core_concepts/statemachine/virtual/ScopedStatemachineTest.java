@@ -0,0 +1,141 @@
+package de.core_concepts.statemachine.virtual;
+
+import de.core_concepts.statemachine.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static de.core_concepts.statemachine.virtual.TestEvent.EVENT1;
+import static de.core_concepts.statemachine.virtual.TestState.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests the class {@link ScopedStatemachine}
+ */
+public class ScopedStatemachineTest {
+
+    private final List<Optional<Context<?>>> contexts = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    @Test
+    public void testSendEvent_Binds_Context_To_Scope() throws Exception {
+        TestObject object = new TestObject();
+
+        new TestScopedSm().sendEvent(EVENT1, object);
+
+        assertThat(object.getState(), is(STATE2));
+        assertThat(contexts.get(0).get().getObject(), is(sameInstance((Object) object)));
+        assertThat(DispatchScope.currentContext().isPresent(), is(false));
+    }
+
+    @Test
+    public void testSendEvent_Nested_Dispatch_Restores_Outer_Context() throws Exception {
+        TestObject object = new TestObject();
+
+        new TestScopedSm(new TestScopedSm()).sendEvent(EVENT1, object);
+
+        assertThat(contexts.size(), is(2));
+        assertThat(contexts.get(1).get().getObject(), is(sameInstance((Object) object)));
+        assertThat(DispatchScope.currentContext().isPresent(), is(false));
+    }
+
+    @Test
+    public void testSendEventAsync_Runs_On_Virtual_Thread() throws Exception {
+        TestObject object = new TestObject();
+
+        StateChange<?> stateChange = new TestScopedSm().sendEventAsync(EVENT1, object).get(5, TimeUnit.SECONDS);
+
+        assertThat(stateChange.getToState(), is((Object) STATE2));
+        assertThat(threads.get(0).isVirtual(), is(true));
+        assertThat(contexts.get(0).isPresent(), is(true));
+    }
+
+    @Test
+    public void testBulkProcessor_With_VirtualThreadExecutor() throws Exception {
+        List<TestObject> objects = IntStream.range(0, 1000).mapToObj(i -> new TestObject()).toList();
+
+        BatchResult result = new BulkProcessor<>(new TestScopedSm(), VirtualThreadExecutor.getDefault()).withMaxInFlight(100)
+                .process(EVENT1, objects.stream());
+
+        assertThat(result.getSucceededCount(), is(1000));
+        objects.forEach(object -> assertThat(object.getState(), is(STATE2)));
+    }
+
+    private class TestScopedSm extends ScopedStatemachine<TestState, TestEvent, TestObject> {
+
+        /* A statemachine which is sent an event by the action, before it records the Context */
+        private final TestScopedSm nested;
+
+        private TestScopedSm() {
+            this(null);
+        }
+
+        private TestScopedSm(TestScopedSm nested) {
+            super(TestState.class, TestEvent.class, TestObject.class);
+            this.nested = nested;
+            initStateMachine();
+        }
+
+        @Override
+        protected void defineStates(StateConfigurer<TestState, TestEvent, TestObject> state) {
+            state.withId(STATE1).add();
+            state.withId(STATE2).add();
+        }
+
+        @Override
+        protected void defineTransitions(TransitionConfigurer<TestState, TestEvent, TestObject> transition) {
+            transition.from(STATE1).to(STATE2).onEvent(EVENT1).action(Action.of(context -> {
+                if (nested != null) {
+                    nested.sendEvent(EVENT1, new TestObject());
+                }
+                synchronized (contexts) {
+                    contexts.add(DispatchScope.currentContext());
+                    threads.add(Thread.currentThread());
+                }
+            })).add();
+        }
+
+        @Override
+        protected void defineGenericActions(GenericActionConfigurer<TestObject> genericActionConfigurer) {
+            genericActionConfigurer.on(LifecycleEvent.SUCCESSFUL_STATE_CHANGE)
+                    .execute(Action.of(context -> context.getDataFor(LifecycleEvent.SUCCESSFUL_STATE_CHANGE)
+                            .ifPresent(stateChange -> setCurrentState(context.getObject(), (TestState) stateChange.getToState()))))
+                    .add();
+        }
+
+        @Override
+        public Object getCurrentState(Object object) {
+            return ((TestObject) object).getState();
+        }
+
+        @Override
+        protected void setCurrentState(TestObject object, TestState state) {
+            object.setState(state);
+        }
+
+        @Override
+        public TestState getStateFromString(String stateName) {
+            return TestState.valueOf(stateName);
+        }
+
+        @Override
+        public TestEvent getEventFromString(String eventName) {
+            return TestEvent.valueOf(eventName);
+        }
+
+        @Override
+        protected TestState getFinalState() {
+            return END;
+        }
+
+        @Override
+        protected TestState getInitialState() {
+            return START;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package de.core_concepts.statemachine.virtual;
+
+
+/**
+ * Event Enum for the statemachines of this module's tests
+ */
+public enum TestEvent {
+    EVENT1
+}